@@ -0,0 +1,174 @@
+package Proiect.MDS.web.benchmarks;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.FastProductExtractor;
+import Proiect.MDS.web.shopScraping.JsonStateProductExtractor;
+import Proiect.MDS.web.shopScraping.ProductPageReader;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.SelectorProductExtractor;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the product extraction hot paths over saved product pages ({@code src/jmh/resources/fixtures}).
+ * Every benchmark works on a document that is parsed once in {@link #setUp()}, except {@link #parse()}, which
+ * measures the parse itself for reference.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec}; the gc profiler is enabled by default, so the results include
+ * the allocation rate per operation ({@code gc.alloc.rate.norm}), i.e. per page.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+    private static final String PRODUCT_URL = "https://www.auchan.ro/mazare-extrafina-bonduelle-400-g/p";
+
+    @Param({"auchan-product.html"})
+    public String fixture;
+
+    private String html;
+    private Document doc;
+    private Elements price;
+    private ProductScraper productScraper;
+    private SelectorProductExtractor selectorExtractor;
+    private FastProductExtractor fastExtractor;
+    private JsonStateProductExtractor stateExtractor;
+    private byte[] bytes;
+    private ProductPageReader pageReader;
+
+    @Setup
+    public void setUp() {
+        html = loadFixture(fixture);
+        doc = Jsoup.parse(html, PRODUCT_URL);
+        price = ShopScraper.getAuchanProductPrice(doc);
+        productScraper = new ProductScraper();
+        selectorExtractor = new SelectorProductExtractor();
+        fastExtractor = new FastProductExtractor();
+        stateExtractor = new JsonStateProductExtractor(selectorExtractor);
+        Optional<Product> expected = selectorExtractor.extract(doc, PRODUCT_URL);
+        if (expected.isEmpty()) {
+            throw new IllegalStateException("No product found in fixture " + fixture);
+        }
+        if (!expected.toString().equals(fastExtractor.extract(doc, PRODUCT_URL).toString())) {
+            throw new IllegalStateException("The extractors disagree on fixture " + fixture);
+        }
+        if (!expected.toString().equals(stateExtractor.extract(doc, PRODUCT_URL).toString())) {
+            throw new IllegalStateException("The embedded state disagrees with the markup on fixture " + fixture);
+        }
+        bytes = html.getBytes(StandardCharsets.UTF_8);
+        pageReader = new ProductPageReader();
+        try {
+            if (!expected.toString().equals(streamingExtraction().toString())) {
+                throw new IllegalStateException("The streaming extraction disagrees on fixture " + fixture);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a saved page from the classpath.
+     *
+     * @param name the file name in the fixtures directory
+     * @return the HTML of the page
+     */
+    static String loadFixture(String name) {
+        try (InputStream in = ExtractionBenchmark.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, PRODUCT_URL);
+    }
+
+    @Benchmark
+    public Elements category() {
+        return ShopScraper.getAuchanProductCategory(doc);
+    }
+
+    @Benchmark
+    public Elements name() {
+        return ShopScraper.getAuchanProductName(doc);
+    }
+
+    @Benchmark
+    public Elements price() {
+        return ShopScraper.getAuchanProductPrice(doc);
+    }
+
+    @Benchmark
+    public Elements properties() {
+        return ShopScraper.getAuchanProductProperties(doc);
+    }
+
+    @Benchmark
+    public String priceToString() {
+        return ShopScraper.getAuchanProductPriceToString(price);
+    }
+
+    @Benchmark
+    public Optional<Product> productDetails() {
+        return productScraper.getProductDetails(doc, PRODUCT_URL);
+    }
+
+    @Benchmark
+    public Optional<Product> selectorExtractor() {
+        return selectorExtractor.extract(doc, PRODUCT_URL);
+    }
+
+    @Benchmark
+    public Optional<Product> fastExtractor() {
+        return fastExtractor.extract(doc, PRODUCT_URL);
+    }
+
+    @Benchmark
+    public Optional<Product> stateExtractor() {
+        return stateExtractor.extract(doc, PRODUCT_URL);
+    }
+
+    /**
+     * Reads and parses the page up to the product blocks and extracts it, to compare with {@link #parse()}
+     * followed by {@link #fastExtractor()}.
+     */
+    @Benchmark
+    public Optional<Product> streamingExtraction() throws IOException {
+        Document blocks = pageReader.read(new ByteArrayInputStream(bytes), PRODUCT_URL);
+        return fastExtractor.extract(blocks, PRODUCT_URL);
+    }
+
+    @Benchmark
+    public boolean isValidURL() {
+        return ShopScraper.isValidURL(PRODUCT_URL);
+    }
+}
@@ -56,11 +56,9 @@ public class RecipeController {
     public String getById(Model model, @PathVariable(name = "id") Integer id) {
         Recipe recipe = service.getRecipeById(id);
         model.addAttribute("recipe", recipe);
-        String[] ingredients = recipe.getProducts().split(", ");
-
         List<Product> products = new ArrayList<>();
 
-        for (String ingredient : ingredients) {
+        for (String ingredient : recipe.ingredientTokens()) {
             ProductTableOperations pto = new ProductTableOperations(new Database("jdbc:mysql://localhost/dbProducts", "root", "2875"));
             Product newProduct = pto.getProductByCriteria(ingredient);
             products.add(newProduct);
@@ -0,0 +1,214 @@
+package Proiect.MDS.web.database;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.AppLogger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind sink that decouples the crawler from the database.
+ * <p>
+ * Products are put in a bounded queue; when the queue is full the crawler threads block until the writer
+ * catches up. A single background thread takes up to {@code batchSize} products at a time, waiting at most
+ * {@code flushInterval} for a batch to fill, and writes them with
+ * {@link ProductTableOperations#writeBatch(List, List)}: one JDBC batch per statement type and one commit
+ * per batch instead of one autocommitted round trip per product.
+ * <p>
+ * {@link #close()} stops accepting products and waits until everything queued has been written. The writer
+ * thread is not a daemon, so a sink that is never closed keeps the JVM alive instead of losing products.
+ */
+public class BatchingProductSink implements ProductSink {
+    private static final Logger LOGGER = new AppLogger(BatchingProductSink.class).getLogger();
+
+    private final ProductTableOperations pto;
+    private final BlockingQueue<Write> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Set<String> pendingInserts = ConcurrentHashMap.newKeySet();
+    private final Thread writer;
+    private final Object writtenLock = new Object();
+    private long queuedCount;
+    private long writtenCount;
+    private volatile boolean closed;
+
+    /**
+     * Creates the sink and starts its writer thread.
+     *
+     * @param pto           the product table operations used for the writes, on a {@link Database} of their own:
+     *                      the batches are transactions, which would take in the statements of any other user
+     *                      of the connection
+     * @param capacity      the maximum number of products waiting to be written
+     * @param batchSize     the maximum number of products written in one batch
+     * @param flushInterval the maximum time a product waits for its batch to fill
+     */
+    public BatchingProductSink(ProductTableOperations pto, int capacity, int batchSize, Duration flushInterval) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("capacity and batchSize must be at least 1");
+        }
+        this.pto = pto;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.writer = new Thread(this::writeLoop, "product-writer");
+        this.writer.start();
+    }
+
+    @Override
+    public boolean insert(Product product) {
+        if (!pendingInserts.add(product.getName())) {
+            return false;
+        }
+        enqueue(new Write(product, false));
+        return true;
+    }
+
+    @Override
+    public void update(Product product) {
+        enqueue(new Write(product, true));
+    }
+
+    @Override
+    public void flush() {
+        synchronized (writtenLock) {
+            long target = queuedCount;
+            boolean interrupted = false;
+            while (writtenCount < target && writer.isAlive()) {
+                try {
+                    writtenLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of products waiting to be written
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Puts a write in the queue, blocking while the queue is full. An interrupt does not drop the product:
+     * the put is retried and the interrupt flag restored afterwards.
+     */
+    private void enqueue(Write write) {
+        if (closed) {
+            throw new IllegalStateException("The product sink is closed");
+        }
+        synchronized (writtenLock) {
+            queuedCount++;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(write);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes batches until the sink is closed and the queue is drained.
+     */
+    private void writeLoop() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                // the writer is only stopped through close(), so keep draining
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        // A put that passed the closed check just before close() may have landed after the last poll.
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Waits for the first write, then keeps collecting until the batch is full or the flush interval
+     * since the first write has passed.
+     */
+    private void collectBatch(List<Write> batch) throws InterruptedException {
+        Write first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || closed) {
+                return;
+            }
+            Write next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Write> batch) {
+        List<Product> inserts = new ArrayList<>();
+        List<Product> updates = new ArrayList<>();
+        for (Write write : batch) {
+            (write.isUpdate() ? updates : inserts).add(write.product());
+        }
+        try {
+            pto.writeBatch(inserts, updates);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Failed to write a batch of " + batch.size() + " products");
+        } finally {
+            inserts.forEach(product -> pendingInserts.remove(product.getName()));
+            synchronized (writtenLock) {
+                writtenCount += batch.size();
+                writtenLock.notifyAll();
+            }
+        }
+    }
+
+    private record Write(Product product, boolean isUpdate) {
+    }
+}
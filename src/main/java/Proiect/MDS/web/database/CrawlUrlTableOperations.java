@@ -0,0 +1,91 @@
+package Proiect.MDS.web.database;
+
+import Proiect.MDS.web.database.logging.DatabaseLogger;
+import Proiect.MDS.web.models.CrawlUrl;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static Proiect.MDS.web.models.CrawlUrl.buildCrawlUrl;
+
+/**
+ * This class handles operations related to the crawl_urls table, which stores the freshness
+ * information used by the incremental recrawl.
+ */
+public class CrawlUrlTableOperations {
+    protected static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS crawl_urls (
+                url VARCHAR(512) PRIMARY KEY,
+                product_name VARCHAR(255),
+                sitemap_lastmod DATETIME,
+                last_crawled DATETIME NOT NULL
+            );
+            """;
+    private static final DatabaseLogger LOGGER = new DatabaseLogger(CrawlUrlTableOperations.class);
+    private static final String UPSERT_SQL = """
+            INSERT INTO crawl_urls (url, product_name, sitemap_lastmod, last_crawled) VALUES (?, ?, ?, NOW())
+            ON DUPLICATE KEY UPDATE product_name = COALESCE(VALUES(product_name), product_name),
+            sitemap_lastmod = VALUES(sitemap_lastmod), last_crawled = NOW();
+            """;
+    private final Database database;
+
+    /**
+     * Constructor initializes the database connection.
+     *
+     * @param database Database object.
+     */
+    public CrawlUrlTableOperations(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Records that a URL was crawled now.
+     *
+     * @param url                 The crawled URL.
+     * @param productName         The name of the product found at the URL, or null if none was found.
+     * @param sitemapLastModified The {@code <lastmod>} reported by the sitemap, or null if unknown.
+     */
+    public void recordCrawl(String url, String productName, LocalDateTime sitemapLastModified) {
+        try (PreparedStatement pstmt = database.connection.prepareStatement(UPSERT_SQL)) {
+            pstmt.setString(1, url);
+            pstmt.setString(2, productName);
+            if (sitemapLastModified != null) {
+                pstmt.setTimestamp(3, Timestamp.valueOf(sitemapLastModified));
+            } else {
+                pstmt.setNull(3, Types.TIMESTAMP);
+            }
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("recordCrawl " + url, e);
+        }
+    }
+
+    /**
+     * Retrieves the freshness information of every known URL.
+     *
+     * @return A map from URL to its freshness information.
+     */
+    public Map<String, CrawlUrl> getAllCrawlUrls() {
+        Map<String, CrawlUrl> crawlUrls = new HashMap<>();
+        String query = "SELECT * FROM crawl_urls";
+
+        try (Statement stmt = database.connection.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+
+            while (rs.next()) {
+                CrawlUrl crawlUrl = buildCrawlUrl(rs);
+                crawlUrls.put(crawlUrl.getUrl(), crawlUrl);
+            }
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation(query, e);
+        }
+        return crawlUrls;
+    }
+}
@@ -8,6 +8,9 @@ import java.sql.*;
 
 public class Database {
     private static final DatabaseLogger LOGGER = new DatabaseLogger(Database.class);
+    private static final int DUPLICATE_COLUMN_ERROR = 1060;
+    // the same error on H2, used for the local runs of the distributed crawl
+    private static final int H2_DUPLICATE_COLUMN_ERROR = 42121;
     Connection connection;
     private Statement stmt;
 
@@ -17,12 +20,35 @@ public class Database {
             stmt = connection.createStatement();
             stmt.execute(ProductTableOperations.CREATE_TABLE_SQL);
             stmt.execute(RecipeTableOperations.CREATE_TABLE_SQL);
-            LOGGER.logSuccessfulOperation("Connection to the MySQL database and creation of the 'products' and 'recipes' tables");
+            stmt.execute(CrawlUrlTableOperations.CREATE_TABLE_SQL);
+            stmt.execute(FailedUrlTableOperations.CREATE_TABLE_SQL);
+            stmt.execute(FrontierTableOperations.CREATE_TABLE_SQL);
+            for (String migration : ProductTableOperations.MIGRATIONS_SQL) {
+                migrate(migration);
+            }
+            LOGGER.logSuccessfulOperation("Connection to the MySQL database and creation of the 'products', 'recipes', 'crawl_urls', 'failed_urls' and 'crawl_frontier' tables");
         } catch (SQLException e) {
             LOGGER.logDatabaseConnectionError(e);
         }
     }
 
+    /**
+     * Applies a schema migration that adds a column. A table that already has the column was created
+     * by the current version or migrated before, so the duplicate column error is ignored.
+     *
+     * @param sql the ALTER TABLE statement
+     * @throws SQLException if the migration fails for another reason
+     */
+    private void migrate(String sql) throws SQLException {
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != DUPLICATE_COLUMN_ERROR && e.getErrorCode() != H2_DUPLICATE_COLUMN_ERROR) {
+                throw e;
+            }
+        }
+    }
+
     public void closeConnection() {
         try {
             if (stmt != null) {
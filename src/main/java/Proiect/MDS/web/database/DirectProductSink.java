@@ -0,0 +1,38 @@
+package Proiect.MDS.web.database;
+
+import Proiect.MDS.web.models.Product;
+
+/**
+ * Sink that writes every product immediately, with one statement per product.
+ */
+public class DirectProductSink implements ProductSink {
+    private final ProductTableOperations pto;
+
+    /**
+     * @param pto the product table operations used for the writes
+     */
+    public DirectProductSink(ProductTableOperations pto) {
+        this.pto = pto;
+    }
+
+    @Override
+    public boolean insert(Product product) {
+        pto.insertProduct(product);
+        return true;
+    }
+
+    @Override
+    public void update(Product product) {
+        pto.updateProduct(product);
+    }
+
+    @Override
+    public void flush() {
+        // every product is already written
+    }
+
+    @Override
+    public void close() {
+        // nothing is buffered
+    }
+}
@@ -0,0 +1,108 @@
+package Proiect.MDS.web.database;
+
+import Proiect.MDS.web.database.logging.DatabaseLogger;
+import Proiect.MDS.web.models.FailedUrl;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static Proiect.MDS.web.models.FailedUrl.buildFailedUrl;
+
+/**
+ * This class handles operations related to the failed_urls table, the durable dead-letter queue of the
+ * URLs the crawler failed to fetch, so they are retried after a restart instead of waiting for the next full crawl.
+ */
+public class FailedUrlTableOperations {
+    protected static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS failed_urls (
+                url VARCHAR(512) PRIMARY KEY,
+                error_class VARCHAR(255) NOT NULL,
+                error_message VARCHAR(1024),
+                attempts INT NOT NULL,
+                first_failed DATETIME NOT NULL,
+                last_failed DATETIME NOT NULL,
+                next_attempt DATETIME NOT NULL,
+                INDEX idx_failed_urls_next_attempt (next_attempt)
+            );
+            """;
+    private static final DatabaseLogger LOGGER = new DatabaseLogger(FailedUrlTableOperations.class);
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+    private static final String UPSERT_SQL = """
+            INSERT INTO failed_urls (url, error_class, error_message, attempts, first_failed, last_failed, next_attempt)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE error_class = VALUES(error_class), error_message = VALUES(error_message),
+            attempts = VALUES(attempts), last_failed = VALUES(last_failed), next_attempt = VALUES(next_attempt);
+            """;
+    private static final String DELETE_SQL = "DELETE FROM failed_urls WHERE url = ?";
+    private final Database database;
+
+    /**
+     * Constructor initializes the database connection.
+     *
+     * @param database Database object.
+     */
+    public FailedUrlTableOperations(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Inserts a failed URL, or replaces the error, the attempt count and the schedule of a URL that failed before.
+     *
+     * @param failedUrl The failed URL.
+     */
+    public void upsertFailedUrl(FailedUrl failedUrl) {
+        try (PreparedStatement pstmt = database.connection.prepareStatement(UPSERT_SQL)) {
+            String message = failedUrl.getErrorMessage();
+            pstmt.setString(1, failedUrl.getUrl());
+            pstmt.setString(2, failedUrl.getErrorClass());
+            pstmt.setString(3, message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH));
+            pstmt.setInt(4, failedUrl.getAttempts());
+            pstmt.setTimestamp(5, Timestamp.valueOf(failedUrl.getFirstFailed()));
+            pstmt.setTimestamp(6, Timestamp.valueOf(failedUrl.getLastFailed()));
+            pstmt.setTimestamp(7, Timestamp.valueOf(failedUrl.getNextAttempt()));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("upsertFailedUrl " + failedUrl.getUrl(), e);
+        }
+    }
+
+    /**
+     * Removes a URL that was fetched successfully.
+     *
+     * @param url The URL.
+     */
+    public void deleteFailedUrl(String url) {
+        try (PreparedStatement pstmt = database.connection.prepareStatement(DELETE_SQL)) {
+            pstmt.setString(1, url);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("deleteFailedUrl " + url, e);
+        }
+    }
+
+    /**
+     * Retrieves every failed URL, the parked ones included.
+     *
+     * @return The failed URLs.
+     */
+    public List<FailedUrl> getAllFailedUrls() {
+        List<FailedUrl> failedUrls = new ArrayList<>();
+        String query = "SELECT * FROM failed_urls";
+
+        try (Statement stmt = database.connection.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+
+            while (rs.next()) {
+                failedUrls.add(buildFailedUrl(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation(query, e);
+        }
+        return failedUrls;
+    }
+}
@@ -0,0 +1,278 @@
+package Proiect.MDS.web.database;
+
+import Proiect.MDS.web.database.logging.DatabaseLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class handles operations related to the crawl_frontier table, the URL frontier shared by the crawler
+ * processes of a distributed crawl.
+ * <p>
+ * Every URL of a crawl is a row that goes from PENDING to LEASED, when a process claims it for a limited time, and
+ * to DONE once the process has handled it. Claims lock the rows they read with {@code FOR UPDATE SKIP LOCKED}, so
+ * processes claiming at the same time get disjoint batches without waiting for each other, and a LEASED row whose
+ * lease expired (its process died or hung) is claimed again like a pending one. A URL is claimed at most
+ * {@code maxClaims} times: a URL whose last lease expired too is taken to bring down the processes that fetch it,
+ * and goes from LEASED to FAILED instead of being claimed again, so it cannot keep the crawl from finishing. All the
+ * times come from the database clock, so the processes do not need synchronized clocks.
+ * <p>
+ * The claims are transactions, so the table needs a {@link Database} of its own rather than the connection
+ * the crawl writes the products through. Works on MySQL 8 and on H2 in MySQL mode.
+ */
+public class FrontierTableOperations {
+    protected static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS crawl_frontier (
+                crawl_id VARCHAR(64) NOT NULL,
+                url VARCHAR(512) NOT NULL,
+                sitemap_lastmod DATETIME,
+                status VARCHAR(16) NOT NULL,
+                lease_owner VARCHAR(128),
+                lease_expires DATETIME,
+                claims INT NOT NULL DEFAULT 0,
+                PRIMARY KEY (crawl_id, url),
+                INDEX idx_crawl_frontier_status (crawl_id, status, lease_expires)
+            );
+            """;
+    private static final DatabaseLogger LOGGER = new DatabaseLogger(FrontierTableOperations.class);
+    private static final String ENQUEUE_SQL = """
+            INSERT IGNORE INTO crawl_frontier (crawl_id, url, sitemap_lastmod, status) VALUES (?, ?, ?, 'PENDING');
+            """;
+    // no ORDER BY: H2 would sort before skipping the locked rows and return an empty batch
+    private static final String CLAIM_SQL = """
+            SELECT url, sitemap_lastmod FROM crawl_frontier
+            WHERE crawl_id = ? AND (status = 'PENDING' OR (status = 'LEASED' AND lease_expires < NOW())) AND claims < ?
+            LIMIT ? FOR UPDATE SKIP LOCKED;
+            """;
+    private static final String EXHAUSTED_SQL = """
+            SELECT url FROM crawl_frontier
+            WHERE crawl_id = ? AND status = 'LEASED' AND lease_expires < NOW() AND claims >= ?
+            LIMIT ? FOR UPDATE SKIP LOCKED;
+            """;
+    private static final String FAIL_SQL = """
+            UPDATE crawl_frontier SET status = 'FAILED', lease_expires = NULL WHERE crawl_id = ? AND url = ?;
+            """;
+    private static final String LEASE_SQL = """
+            UPDATE crawl_frontier SET status = 'LEASED', lease_owner = ?,
+            lease_expires = TIMESTAMPADD(SECOND, ?, NOW()), claims = claims + 1 WHERE crawl_id = ? AND url = ?;
+            """;
+    private static final String COMPLETE_SQL = """
+            UPDATE crawl_frontier SET status = 'DONE', lease_expires = NULL
+            WHERE crawl_id = ? AND url = ? AND status = 'LEASED' AND lease_owner = ?;
+            """;
+    private static final String COUNT_UNFINISHED_SQL = """
+            SELECT COUNT(*) FROM crawl_frontier WHERE crawl_id = ? AND status IN ('PENDING', 'LEASED');
+            """;
+    private final Database database;
+
+    /**
+     * A URL of the frontier.
+     *
+     * @param url                 the canonical URL
+     * @param sitemapLastModified the {@code <lastmod>} the sitemap reported for the URL, or null
+     */
+    public record FrontierUrl(String url, LocalDateTime sitemapLastModified) {
+    }
+
+    /**
+     * Constructor initializes the database connection.
+     *
+     * @param database Database object, not shared with other table operations.
+     */
+    public FrontierTableOperations(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Adds URLs to the frontier of a crawl as pending, in a single batch. URLs already in the frontier, added by
+     * this process or another one, are left as they are.
+     *
+     * @param crawlId The crawl the URLs belong to.
+     * @param urls    The URLs to add.
+     */
+    public void enqueue(String crawlId, Collection<FrontierUrl> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = database.connection.prepareStatement(ENQUEUE_SQL)) {
+            for (FrontierUrl url : urls) {
+                pstmt.setString(1, crawlId);
+                pstmt.setString(2, url.url());
+                if (url.sitemapLastModified() != null) {
+                    pstmt.setTimestamp(3, Timestamp.valueOf(url.sitemapLastModified()));
+                } else {
+                    pstmt.setNull(3, Types.TIMESTAMP);
+                }
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("enqueue " + urls.size() + " URLs of crawl " + crawlId, e);
+        }
+    }
+
+    /**
+     * Claims up to {@code limit} pending URLs, or URLs whose lease expired, for a limited time. The rows locked by
+     * the claims of other processes are skipped, so concurrent claims never return the same URL. URLs claimed
+     * {@code maxClaims} times already are left to {@link #failExhausted(String, int, int)}.
+     *
+     * @param crawlId       The crawl to claim URLs from.
+     * @param owner         The process claiming the URLs.
+     * @param limit         The largest number of URLs to claim.
+     * @param leaseDuration How long the URLs stay leased to the owner.
+     * @param maxClaims     The number of times a URL is claimed at most.
+     * @return The claimed URLs, empty if none is available or the claim failed.
+     */
+    public List<FrontierUrl> claim(String crawlId, String owner, int limit, Duration leaseDuration, int maxClaims) {
+        List<FrontierUrl> claimed = new ArrayList<>(limit);
+        Connection connection = database.connection;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(CLAIM_SQL)) {
+                    pstmt.setString(1, crawlId);
+                    pstmt.setInt(2, maxClaims);
+                    pstmt.setInt(3, limit);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Timestamp lastModified = rs.getTimestamp("sitemap_lastmod");
+                            claimed.add(new FrontierUrl(rs.getString("url"), lastModified == null ? null : lastModified.toLocalDateTime()));
+                        }
+                    }
+                }
+                if (!claimed.isEmpty()) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(LEASE_SQL)) {
+                        for (FrontierUrl url : claimed) {
+                            pstmt.setString(1, owner);
+                            pstmt.setLong(2, leaseDuration.toSeconds());
+                            pstmt.setString(3, crawlId);
+                            pstmt.setString(4, url.url());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                connection.commit();
+                return claimed;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("claim URLs of crawl " + crawlId + " for " + owner, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Marks up to {@code limit} URLs as failed: those claimed {@code maxClaims} times whose last lease expired
+     * without the URL being done. The rows locked by the claims of other processes are skipped.
+     *
+     * @param crawlId   The crawl the URLs belong to.
+     * @param maxClaims The number of times a URL is claimed at most.
+     * @param limit     The largest number of URLs to mark.
+     * @return The URLs marked as failed, empty if there is none or the update failed.
+     */
+    public List<String> failExhausted(String crawlId, int maxClaims, int limit) {
+        List<String> exhausted = new ArrayList<>();
+        Connection connection = database.connection;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(EXHAUSTED_SQL)) {
+                    pstmt.setString(1, crawlId);
+                    pstmt.setInt(2, maxClaims);
+                    pstmt.setInt(3, limit);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            exhausted.add(rs.getString("url"));
+                        }
+                    }
+                }
+                if (!exhausted.isEmpty()) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(FAIL_SQL)) {
+                        for (String url : exhausted) {
+                            pstmt.setString(1, crawlId);
+                            pstmt.setString(2, url);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                connection.commit();
+                return exhausted;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("fail the exhausted URLs of crawl " + crawlId, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Marks leased URLs as done, in a single batch. A URL whose lease expired and was claimed by another process
+     * in the meantime is left to that process.
+     *
+     * @param crawlId The crawl the URLs belong to.
+     * @param owner   The process the URLs are leased to.
+     * @param urls    The URLs handled by the owner.
+     * @return The number of URLs marked as done, or -1 if the batch failed and should be written again.
+     */
+    public int complete(String crawlId, String owner, Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return 0;
+        }
+        try (PreparedStatement pstmt = database.connection.prepareStatement(COMPLETE_SQL)) {
+            for (String url : urls) {
+                pstmt.setString(1, crawlId);
+                pstmt.setString(2, url);
+                pstmt.setString(3, owner);
+                pstmt.addBatch();
+            }
+            int completed = 0;
+            for (int count : pstmt.executeBatch()) {
+                completed += Math.max(count, 0);
+            }
+            return completed;
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation("complete " + urls.size() + " URLs of crawl " + crawlId + " for " + owner, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Counts the URLs of a crawl that are neither done nor failed yet, pending or leased.
+     *
+     * @param crawlId The crawl.
+     * @return The number of unfinished URLs, or -1 if they could not be counted.
+     */
+    public int countUnfinished(String crawlId) {
+        try (PreparedStatement pstmt = database.connection.prepareStatement(COUNT_UNFINISHED_SQL)) {
+            pstmt.setString(1, crawlId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            LOGGER.logFailedOperation(COUNT_UNFINISHED_SQL, e);
+            return -1;
+        }
+    }
+}
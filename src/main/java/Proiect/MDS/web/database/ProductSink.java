@@ -0,0 +1,38 @@
+package Proiect.MDS.web.database;
+
+import Proiect.MDS.web.models.Product;
+
+/**
+ * Destination of the products written by the crawlers.
+ * <p>
+ * {@link DirectProductSink} writes every product immediately, {@link BatchingProductSink} queues them and
+ * writes them in JDBC batches from a background thread.
+ */
+public interface ProductSink extends AutoCloseable {
+
+    /**
+     * Inserts a new product.
+     *
+     * @param product the product to insert
+     * @return false if a product with the same name is already waiting to be inserted, true otherwise
+     */
+    boolean insert(Product product);
+
+    /**
+     * Updates an existing product, identified by its id.
+     *
+     * @param product the product to update
+     */
+    void update(Product product);
+
+    /**
+     * Waits until every product handed to the sink so far is written.
+     */
+    void flush();
+
+    /**
+     * Writes the remaining products and releases the sink; no product can be added afterwards.
+     */
+    @Override
+    void close();
+}
@@ -4,11 +4,14 @@ package Proiect.MDS.web.database;
 import Proiect.MDS.web.database.logging.ProductLogger;
 import Proiect.MDS.web.models.Product;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static Proiect.MDS.web.models.Product.buildProduct;
@@ -37,9 +40,15 @@ public class ProductTableOperations {
                 salt DECIMAL(10, 2),
                 fiber DECIMAL(10, 2),
                 proteins DECIMAL(10, 2),
-                last_modified DATETIME
+                last_modified DATETIME,
+                content_hash CHAR(64),
+                last_seen DATETIME
             );
             """;
+    // Columns added after the first release, applied to tables created by older versions.
+    protected static final List<String> MIGRATIONS_SQL = List.of(
+            "ALTER TABLE products ADD COLUMN content_hash CHAR(64);",
+            "ALTER TABLE products ADD COLUMN last_seen DATETIME;");
     private static final ProductLogger LOGGER = new ProductLogger(ProductTableOperations.class);
     private static final String INSERT_SQL = """
             INSERT INTO products (name, category, price,
@@ -47,7 +56,8 @@ public class ProductTableOperations {
             shelf_life, ingredients, kcal_per_100g,
             kj_per_100g, fats, saturated_fats,
             carbohydrates, sugars, salt,
-            fiber, proteins, last_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW());
+            fiber, proteins, content_hash,
+            last_modified, last_seen) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW());
             """;
     private static final String UPDATE_SQL = """
             UPDATE products SET
@@ -56,8 +66,14 @@ public class ProductTableOperations {
             shelf_life = ?, ingredients = ?, kcal_per_100g = ?,
             kj_per_100g = ?, fats = ?, saturated_fats = ?,
             carbohydrates = ?, sugars = ?, salt = ?,
-            fiber = ?, proteins = ?, last_modified = NOW() WHERE id = ?;
+            fiber = ?, proteins = ?, content_hash = ?,
+            last_modified = NOW(), last_seen = NOW() WHERE id = ?;
             """;
+    private static final String UPDATE_PRICE_SQL = """
+            UPDATE products SET price = ?, content_hash = NULL, last_modified = NOW() WHERE id = ?;
+            """;
+    private static final String TOUCH_SQL = "UPDATE products SET last_seen = NOW() WHERE id IN (%s);";
+    private static final int TOUCH_CHUNK_SIZE = 1000;
     private final Database database;
 
 
@@ -101,6 +117,131 @@ public class ProductTableOperations {
         }
     }
 
+    /**
+     * Writes a batch of products in a single transaction: the inserts and the updates are each sent as one
+     * JDBC batch and committed together. If the batch fails it is rolled back and the products are written
+     * one by one, so a single bad row does not lose the others.
+     * <p>
+     * The transaction is on the connection of the {@link Database} these operations were created with, so the
+     * Database must not be shared with other threads writing at the same time: their statements would join the
+     * transaction and be rolled back with a failed batch.
+     *
+     * @param inserts The products to be inserted.
+     * @param updates The products to be updated, identified by their id.
+     */
+    public void writeBatch(List<Product> inserts, List<Product> updates) {
+        Connection connection = database.connection;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                executeBatch(INSERT_SQL, inserts, false);
+                executeBatch(UPDATE_SQL, updates, true);
+                connection.commit();
+                LOGGER.logBatchWrite(inserts.size(), updates.size());
+                return;
+            } catch (SQLException e) {
+                connection.rollback();
+                LOGGER.logBatchError(inserts.size(), updates.size(), e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LOGGER.logBatchError(inserts.size(), updates.size(), e);
+        }
+        inserts.forEach(this::insertProduct);
+        updates.forEach(this::updateProduct);
+    }
+
+    /**
+     * Executes a SQL update query (insert or update) for every product as a single JDBC batch.
+     *
+     * @param sql      The SQL query to be executed.
+     * @param products The products for which the query will be executed.
+     * @param isUpdate A flag indicating whether the query is an update operation.
+     * @throws SQLException If an error occurs while executing the batch.
+     */
+    private void executeBatch(String sql, List<Product> products, boolean isUpdate) throws SQLException {
+        if (products.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = database.connection.prepareStatement(sql)) {
+            for (Product product : products) {
+                product.setProduct(pstmt, isUpdate);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Writes the new prices of existing products as a single JDBC batch in one transaction, without rewriting
+     * their other columns. The content hash is cleared rather than recomputed: the products come from the table,
+     * where the nutrition values are rounded to two decimals, so their hash would not match the one the next full
+     * crawl computes from the page, and the old hash no longer describes the row. Without a hash the next full
+     * crawl rewrites the product, even if the price went back to the one it was crawled with.
+     * <p>
+     * Like {@link #writeBatch(List, List)}, the transaction needs a {@link Database} not shared with other
+     * threads writing at the same time.
+     *
+     * @param products The products with their new price, identified by their id.
+     * @return The number of prices written, 0 if the batch failed and was rolled back.
+     */
+    public int updatePrices(List<Product> products) {
+        if (products.isEmpty()) {
+            return 0;
+        }
+        Connection connection = database.connection;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(UPDATE_PRICE_SQL)) {
+                for (Product product : products) {
+                    pstmt.setBigDecimal(1, product.getPrice());
+                    pstmt.setInt(2, product.getId());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                connection.commit();
+                LOGGER.logPriceUpdate(products.size());
+                return products.size();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LOGGER.logPriceUpdateError(products.size(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Marks products as seen by the crawler without rewriting them, by setting their last_seen timestamp.
+     * The ids are sent in chunks of {@value #TOUCH_CHUNK_SIZE}, one statement per chunk.
+     *
+     * @param ids The ids of the products that were seen unchanged.
+     * @return The number of rows touched.
+     */
+    public int touchProducts(Collection<Integer> ids) {
+        List<Integer> idList = new ArrayList<>(ids);
+        int touched = 0;
+        for (int start = 0; start < idList.size(); start += TOUCH_CHUNK_SIZE) {
+            List<Integer> chunk = idList.subList(start, Math.min(idList.size(), start + TOUCH_CHUNK_SIZE));
+            String sql = String.format(TOUCH_SQL, String.join(", ", Collections.nCopies(chunk.size(), "?")));
+            try (PreparedStatement pstmt = database.connection.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 1, chunk.get(i));
+                }
+                touched += pstmt.executeUpdate();
+            } catch (SQLException e) {
+                LOGGER.logQueryError(sql, e);
+            }
+        }
+        return touched;
+    }
+
     /**
      * Executes a SQL update query (insert or update).
      * This method uses a PreparedStatement to execute the SQL query.
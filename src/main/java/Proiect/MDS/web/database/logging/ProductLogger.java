@@ -29,6 +29,23 @@ public class ProductLogger extends AppLogger {
         logProductOperationError("Error updating product: ", product, e);
     }
 
+    public void logBatchWrite(int inserts, int updates) {
+        getLogger().log(Level.INFO, "Product batch written: {0} inserted, {1} updated", new Object[]{inserts, updates});
+    }
+
+    public void logBatchError(int inserts, int updates, SQLException e) {
+        getLogger().log(Level.SEVERE, e, () -> "Error writing product batch of " + inserts + " inserts and " + updates
+                + " updates, writing the products one by one");
+    }
+
+    public void logPriceUpdate(int updates) {
+        getLogger().log(Level.INFO, "Product prices updated: {0}", updates);
+    }
+
+    public void logPriceUpdateError(int updates, SQLException e) {
+        getLogger().log(Level.SEVERE, e, () -> "Error updating the prices of " + updates + " products");
+    }
+
     public void logQueryError(String query, SQLException e) {
         getLogger().log(Level.SEVERE, e, () -> "Error executing query: " + query);
     }
@@ -0,0 +1,99 @@
+package Proiect.MDS.web.models;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Freshness information the crawler keeps for a single product URL: the {@code <lastmod>} the sitemap
+ * reported the last time the URL was crawled and the moment we crawled it.
+ */
+public class CrawlUrl {
+    private final String url;
+    private final String productName;
+    private final LocalDateTime sitemapLastModified;
+    private final LocalDateTime lastCrawled;
+
+    /**
+     * Builder class for a CrawlUrl object.
+     */
+    private CrawlUrl(Builder builder) {
+        this.url = builder.url;
+        this.productName = builder.productName;
+        this.sitemapLastModified = builder.sitemapLastModified;
+        this.lastCrawled = builder.lastCrawled;
+    }
+
+    // Getters
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public LocalDateTime getSitemapLastModified() {
+        return sitemapLastModified;
+    }
+
+    public LocalDateTime getLastCrawled() {
+        return lastCrawled;
+    }
+
+    public static CrawlUrl buildCrawlUrl(ResultSet rs) throws SQLException {
+        return new CrawlUrl.Builder()
+                .url(rs.getString("url"))
+                .productName(rs.getString("product_name"))
+                .sitemapLastModified(toLocalDateTime(rs.getTimestamp("sitemap_lastmod")))
+                .lastCrawled(toLocalDateTime(rs.getTimestamp("last_crawled")))
+                .build();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlUrl{" +
+                "url='" + url + '\'' +
+                ", productName='" + productName + '\'' +
+                ", sitemapLastModified=" + sitemapLastModified +
+                ", lastCrawled=" + lastCrawled +
+                '}';
+    }
+
+    public static class Builder {
+        private String url;
+        private String productName;
+        private LocalDateTime sitemapLastModified;
+        private LocalDateTime lastCrawled;
+
+        public Builder url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder productName(String productName) {
+            this.productName = productName;
+            return this;
+        }
+
+        public Builder sitemapLastModified(LocalDateTime sitemapLastModified) {
+            this.sitemapLastModified = sitemapLastModified;
+            return this;
+        }
+
+        public Builder lastCrawled(LocalDateTime lastCrawled) {
+            this.lastCrawled = lastCrawled;
+            return this;
+        }
+
+        public CrawlUrl build() {
+            return new CrawlUrl(this);
+        }
+    }
+}
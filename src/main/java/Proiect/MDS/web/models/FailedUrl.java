@@ -0,0 +1,141 @@
+package Proiect.MDS.web.models;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * A URL the crawler failed to fetch or parse, kept in the dead-letter queue until a retry succeeds:
+ * the class and message of the last error, how many attempts failed and when the next one is due.
+ */
+public class FailedUrl {
+    private final String url;
+    private final String errorClass;
+    private final String errorMessage;
+    private final int attempts;
+    private final LocalDateTime firstFailed;
+    private final LocalDateTime lastFailed;
+    private final LocalDateTime nextAttempt;
+
+    /**
+     * Builder class for a FailedUrl object.
+     */
+    private FailedUrl(Builder builder) {
+        this.url = builder.url;
+        this.errorClass = builder.errorClass;
+        this.errorMessage = builder.errorMessage;
+        this.attempts = builder.attempts;
+        this.firstFailed = builder.firstFailed;
+        this.lastFailed = builder.lastFailed;
+        this.nextAttempt = builder.nextAttempt;
+    }
+
+    // Getters
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getErrorClass() {
+        return errorClass;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public LocalDateTime getFirstFailed() {
+        return firstFailed;
+    }
+
+    public LocalDateTime getLastFailed() {
+        return lastFailed;
+    }
+
+    public LocalDateTime getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public static FailedUrl buildFailedUrl(ResultSet rs) throws SQLException {
+        return new FailedUrl.Builder()
+                .url(rs.getString("url"))
+                .errorClass(rs.getString("error_class"))
+                .errorMessage(rs.getString("error_message"))
+                .attempts(rs.getInt("attempts"))
+                .firstFailed(toLocalDateTime(rs.getTimestamp("first_failed")))
+                .lastFailed(toLocalDateTime(rs.getTimestamp("last_failed")))
+                .nextAttempt(toLocalDateTime(rs.getTimestamp("next_attempt")))
+                .build();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    @Override
+    public String toString() {
+        return "FailedUrl{" +
+                "url='" + url + '\'' +
+                ", errorClass='" + errorClass + '\'' +
+                ", errorMessage='" + errorMessage + '\'' +
+                ", attempts=" + attempts +
+                ", firstFailed=" + firstFailed +
+                ", lastFailed=" + lastFailed +
+                ", nextAttempt=" + nextAttempt +
+                '}';
+    }
+
+    public static class Builder {
+        private String url;
+        private String errorClass;
+        private String errorMessage;
+        private int attempts;
+        private LocalDateTime firstFailed;
+        private LocalDateTime lastFailed;
+        private LocalDateTime nextAttempt;
+
+        public Builder url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder errorClass(String errorClass) {
+            this.errorClass = errorClass;
+            return this;
+        }
+
+        public Builder errorMessage(String errorMessage) {
+            this.errorMessage = errorMessage;
+            return this;
+        }
+
+        public Builder attempts(int attempts) {
+            this.attempts = attempts;
+            return this;
+        }
+
+        public Builder firstFailed(LocalDateTime firstFailed) {
+            this.firstFailed = firstFailed;
+            return this;
+        }
+
+        public Builder lastFailed(LocalDateTime lastFailed) {
+            this.lastFailed = lastFailed;
+            return this;
+        }
+
+        public Builder nextAttempt(LocalDateTime nextAttempt) {
+            this.nextAttempt = nextAttempt;
+            return this;
+        }
+
+        public FailedUrl build() {
+            return new FailedUrl(this);
+        }
+    }
+}
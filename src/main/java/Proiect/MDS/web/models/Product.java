@@ -5,10 +5,14 @@ import lombok.Builder;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 public class Product {
     private int id;
@@ -31,6 +35,7 @@ public class Product {
     private BigDecimal proteins;
     private LocalDateTime lastModified;
     private String speciality;
+    private String contentHash;
 
 
     /**
@@ -57,6 +62,7 @@ public class Product {
         this.proteins = builder.proteins;
         this.lastModified = builder.lastModified;
         this.speciality = builder.speciality;
+        this.contentHash = builder.contentHash;
     }
 
 
@@ -249,6 +255,43 @@ public class Product {
         this.speciality = speciality;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Computes a SHA-256 fingerprint of the scraped fields stored in the products table.
+     * Decimal values are normalized first, so 12.5 and 12.50 give the same fingerprint.
+     *
+     * @return the fingerprint as 64 hexadecimal characters
+     */
+    public String computeContentHash() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        Object[] fields = {name, category, price, productType, storageConditions, weight, shelfLife, ingredients,
+                kcalPer100g, kjPer100g, fats, saturatedFats, carbohydrates, sugars, salt, fiber, proteins};
+        for (Object field : fields) {
+            if (field == null) {
+                digest.update((byte) 0);
+            } else {
+                String value = field instanceof BigDecimal decimal ? decimal.stripTrailingZeros().toPlainString() : field.toString();
+                digest.update((byte) 1);
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            // Field separator, so moving text from one field to the next changes the fingerprint.
+            digest.update((byte) 0x1f);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
     public void setProduct(PreparedStatement pstmt, boolean isUpdate) throws SQLException {
         pstmt.setString(1, this.getName());
         pstmt.setString(2, this.getCategory());
@@ -267,8 +310,9 @@ public class Product {
         pstmt.setBigDecimal(15, this.getSalt());
         pstmt.setBigDecimal(16, this.getFiber());
         pstmt.setBigDecimal(17, this.getProteins());
+        pstmt.setString(18, this.computeContentHash());
         if (isUpdate) {
-            pstmt.setInt(18, this.getId());
+            pstmt.setInt(19, this.getId());
         }
     }
 
@@ -293,6 +337,7 @@ public class Product {
                 .fiber(rs.getBigDecimal("fiber"))
                 .proteins(rs.getBigDecimal("proteins"))
                 .lastModified(rs.getTimestamp("last_modified").toLocalDateTime())
+                .contentHash(rs.getString("content_hash"))
                 .build();
     }
 
@@ -372,6 +417,7 @@ public class Product {
         private BigDecimal proteins;
         private LocalDateTime lastModified;
         private String speciality;
+        private String contentHash;
 
         public Builder id(int id) {
             this.id = id;
@@ -473,6 +519,11 @@ public class Product {
             return this;
         }
 
+        public Builder contentHash(String contentHash) {
+            this.contentHash = contentHash;
+            return this;
+        }
+
         public Product build() {
             return new Product(this);
         }
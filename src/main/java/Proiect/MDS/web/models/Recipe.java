@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 
 @Data
@@ -92,6 +93,23 @@ public class Recipe {
         this.products = products;
     }
 
+    /**
+     * Splits the products of the recipe into the ingredient names the recipe is priced from, e.g.
+     * {@code "Lapte, Faina, Oua"} into {@code [Lapte, Faina, Oua]}. The names are separated by a comma and a
+     * space, since a comma alone is the decimal separator of names like {@code "Lapte 3,5%"}.
+     *
+     * @return the trimmed ingredient names, without the empty ones
+     */
+    public List<String> ingredientTokens() {
+        if (products == null) {
+            return List.of();
+        }
+        return Arrays.stream(products.split(", "))
+                .map(String::trim)
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
 
     // The builder class
     public static class Builder {
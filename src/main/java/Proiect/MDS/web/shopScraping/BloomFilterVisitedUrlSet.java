@@ -0,0 +1,108 @@
+package Proiect.MDS.web.shopScraping;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate visited set backed by a Bloom filter with a fixed memory budget.
+ * <p>
+ * The filter is sized from the expected number of URLs and the accepted false positive rate, e.g. a
+ * million URLs at 1% take about 1.2 MB. It never forgets a URL, but may report an unseen URL as seen,
+ * in which case the crawler skips it; use it when memory matters more than completeness. Bits are set
+ * with compare-and-set, so the filter is lock-free.
+ */
+public class BloomFilterVisitedUrlSet implements VisitedUrlSet {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * @param expectedSize      the number of URLs the filter is sized for
+     * @param falsePositiveRate the accepted probability of reporting an unseen URL as seen, e.g. 0.01
+     */
+    public BloomFilterVisitedUrlSet(long expectedSize, double falsePositiveRate) {
+        if (expectedSize < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedSize must be positive and falsePositiveRate between 0 and 1");
+        }
+        long optimalBits = (long) Math.ceil(-expectedSize * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, (optimalBits + Long.SIZE - 1) / Long.SIZE);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedSize * Math.log(2)));
+    }
+
+    @Override
+    public boolean add(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            changed |= setBit(indexOf(fingerprint, i));
+        }
+        if (changed) {
+            size.incrementAndGet();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        for (int i = 0; i < hashCount; i++) {
+            long index = indexOf(fingerprint, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return bitCount / Byte.SIZE;
+    }
+
+    /**
+     * @return the false positive rate expected at the current number of URLs
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * size() / bitCount), hashCount);
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilterVisitedUrlSet{size=" + size() + ", memoryBytes=" + memoryBytes()
+                + ", hashCount=" + hashCount + ", expectedFalsePositiveRate=" + expectedFalsePositiveRate() + '}';
+    }
+
+    /**
+     * Double hashing (Kirsch-Mitzenmacher): the i-th index is {@code h1 + i * h2}, with both halves
+     * taken from the 64-bit fingerprint.
+     */
+    private long indexOf(long fingerprint, int i) {
+        long h1 = fingerprint & 0xffffffffL;
+        long h2 = (fingerprint >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, bitCount);
+    }
+
+    /**
+     * @return true if the bit was not set before
+     */
+    private boolean setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        return true;
+    }
+}
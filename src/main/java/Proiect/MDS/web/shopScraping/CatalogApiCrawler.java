@@ -0,0 +1,481 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.database.ProductSink;
+import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Variant of {@link ProductCrawler} that reads the catalog from the VTEX search API instead of scraping one HTML
+ * page per product.
+ * <p>
+ * Every department the HTML crawl starts from ({@code https://www.auchan.ro/bacanie/c}) is listed through
+ * {@code /api/catalog_system/pub/products/search/bacanie?_from=N&_to=M}, which returns up to
+ * {@value #MAX_PAGE_SIZE} products per request as a JSON array. The pages of a department are requested by
+ * {@code parallelism} workers; the first page that comes back short marks the end of the department. The products
+ * are stream-parsed with Jackson into {@link Product.Builder} (name, deepest category, price of the first offer and
+ * the specifications, which the API lists as top-level arrays) and written through the same persistence path as the
+ * HTML crawl.
+ * <p>
+ * The API does not page past {@value #MAX_RESULT_WINDOW} results, so a larger department is truncated and a
+ * warning is logged.
+ * <p>
+ * {@link #refreshPrices()} is the fast refresh tier for the products already in the table: it pages through the same
+ * API but only reads the name and the price of every product, and writes the prices that changed with one narrow
+ * update. It costs one request per {@code pageSize} products instead of one page per product, so the prices can be
+ * refreshed several times a day while the full crawl, for the fields that almost never change, runs rarely.
+ */
+public class CatalogApiCrawler extends ProductCrawler {
+    private static final Logger LOGGER = new AppLogger(CatalogApiCrawler.class).getLogger();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final String SEARCH_PATH = "/api/catalog_system/pub/products/search/";
+    public static final int MAX_PAGE_SIZE = 50;
+    static final int MAX_RESULT_WINDOW = 2500;
+
+    private final int pageSize;
+    private final int parallelism;
+    private final AtomicInteger productCount = new AtomicInteger();
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations, used to look up existing products
+     * @param pageFetcher    the fetcher used to call the API
+     * @param productSink    the sink the new and changed products are written to
+     * @param pageSize       the number of products requested per call, at most {@value #MAX_PAGE_SIZE}
+     * @param parallelism    the number of calls running at the same time
+     */
+    public CatalogApiCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                             PageFetcher pageFetcher, ProductSink productSink, int pageSize, int parallelism) {
+        super(shopScraper, productScraper, pto, pageFetcher, productSink);
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Reads every department of the shop through the search API.
+     */
+    @Override
+    public void getProductsAuchan() {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, catalogThreadFactory());
+        try {
+            for (String startUrl : getCrawlingURLs()) {
+                crawlDepartment(executor, startUrl, this::readPage);
+            }
+            flushWrites();
+            LOGGER.log(Level.INFO, "Catalog crawl finished, products read: {0}", productCount.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Catalog crawl interrupted after {0} products", productCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Refreshes the prices of the products already in the table from the search API, reading only the name and the
+     * price of every product. The changed prices are written in one batch; the products that are not in the table
+     * yet are left to the full crawl.
+     *
+     * @return the number of prices that changed
+     */
+    public int refreshPrices() {
+        Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, catalogThreadFactory());
+        try {
+            for (String startUrl : getCrawlingURLs()) {
+                crawlDepartment(executor, startUrl, url -> readPricePage(url, prices));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Price refresh interrupted after {0} prices, nothing was written", prices.size());
+            return 0;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Product> changed = new ArrayList<>();
+        List<Product> known = getProductTable().getAllProducts();
+        for (Product product : known) {
+            BigDecimal price = prices.get(product.getName());
+            if (price != null && (product.getPrice() == null || price.compareTo(product.getPrice()) != 0)) {
+                product.setPrice(price);
+                changed.add(product);
+            }
+        }
+        getProductTable().updatePrices(changed);
+        LOGGER.log(Level.INFO, "Price refresh finished, prices read: {0}, known products: {1}, prices changed: {2}",
+                new Object[]{prices.size(), known.size(), changed.size()});
+        return changed.size();
+    }
+
+    /**
+     * @return the number of products read from the API by the last crawls
+     */
+    public int getProductCount() {
+        return productCount.get();
+    }
+
+    /**
+     * Reads the pages of a department with {@code parallelism} workers, until a page comes back short.
+     *
+     * @param executor   the worker pool
+     * @param startUrl   the category page of the department, e.g. {@code https://www.auchan.ro/bacanie/c}
+     * @param pageReader reads a page and returns the number of products in it
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers
+     */
+    private void crawlDepartment(ExecutorService executor, String startUrl, ToIntFunction<String> pageReader)
+            throws InterruptedException {
+        String searchUrl = searchUrl(startUrl);
+        System.out.println("Processing department: " + searchUrl);
+        AtomicInteger nextPage = new AtomicInteger();
+        // number of results of the department, known once a short page is read
+        AtomicInteger end = new AtomicInteger(MAX_RESULT_WINDOW);
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(() -> {
+                int from;
+                while ((from = nextPage.getAndIncrement() * pageSize) < end.get()) {
+                    int to = Math.min(from + pageSize, MAX_RESULT_WINDOW) - 1;
+                    int read = pageReader.applyAsInt(searchUrl + "?_from=" + from + "&_to=" + to);
+                    if (read < to - from + 1) {
+                        end.accumulateAndGet(from + read, Math::min);
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> worker : executor.invokeAll(workers)) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.SEVERE, e.getCause(), () -> "An error occurred while reading the department: " + searchUrl);
+            }
+        }
+        if (end.get() >= MAX_RESULT_WINDOW) {
+            LOGGER.log(Level.WARNING, "Department {0} has more than {1} products, only the first ones were read",
+                    new Object[]{searchUrl, MAX_RESULT_WINDOW});
+        }
+    }
+
+    /**
+     * Fetches a URL from the dead-letter queue again. A search API page is read and its products persisted again,
+     * whether it failed during a full crawl or a price refresh; any other URL is a product page.
+     *
+     * @param url the URL that failed before
+     * @throws IOException if the URL fails again
+     */
+    @Override
+    public void retryFailedUrl(String url) throws IOException {
+        if (isSearchPage(url)) {
+            readAndPersistPage(url);
+        } else {
+            super.retryFailedUrl(url);
+        }
+    }
+
+    /**
+     * @param url a URL from the dead-letter queue
+     * @return true if the URL is a page of the search API rather than a product page
+     */
+    public static boolean isSearchPage(String url) {
+        return url.contains(SEARCH_PATH);
+    }
+
+    /**
+     * Calls the API for one page of products and persists them. A page that cannot be read goes to the
+     * dead-letter queue, which reads it again later.
+     *
+     * @param url the URL of the page
+     * @return the number of products in the page, or the page size if the page could not be read
+     */
+    private int readPage(String url) {
+        try {
+            int read = readAndPersistPage(url);
+            resolveFailure(url);
+            return read;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while fetching {0}: {1}", new String[]{url, e.getMessage()});
+            recordFailure(url, e);
+            // a failed page does not end the department
+            return pageSize;
+        }
+    }
+
+    /**
+     * @param url the URL of the page
+     * @return the number of products in the page
+     * @throws IOException if the page cannot be fetched or read
+     */
+    private int readAndPersistPage(String url) throws IOException {
+        List<Product> products = new ArrayList<>(pageSize);
+        int read;
+        try (InputStream body = getPageFetcher().openResource(url)) {
+            read = readProducts(body, products);
+        }
+        for (Product product : products) {
+            try {
+                persistProduct(product);
+            } catch (Exception ex) {
+                LOGGER.log(Level.SEVERE, ex, () -> "An error occurred while processing the product: " + product.getName());
+            }
+        }
+        productCount.addAndGet(products.size());
+        return read;
+    }
+
+    /**
+     * Calls the API for one page of products and keeps their prices. A page that cannot be read goes to the
+     * dead-letter queue, whose retry reads the whole page, prices included.
+     *
+     * @param url    the URL of the page
+     * @param prices the map the price of every product is added to, by product name
+     * @return the number of products in the page
+     */
+    private int readPricePage(String url, Map<String, BigDecimal> prices) {
+        try (InputStream body = getPageFetcher().openResource(url)) {
+            return readPrices(body, prices);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while fetching {0}: {1}", new String[]{url, e.getMessage()});
+            recordFailure(url, e);
+            // a failed page does not end the department
+            return pageSize;
+        }
+    }
+
+    /**
+     * @param startUrl the category page of a department, e.g. {@code https://www.auchan.ro/bacanie/c}
+     * @return the search URL of the department, e.g. {@code https://www.auchan.ro/api/catalog_system/pub/products/search/bacanie}
+     */
+    static String searchUrl(String startUrl) {
+        String department = startUrl.endsWith("/c") ? startUrl.substring(0, startUrl.length() - 2) : startUrl;
+        int slash = department.lastIndexOf('/');
+        return department.substring(0, slash) + SEARCH_PATH + department.substring(slash + 1);
+    }
+
+    /**
+     * Reads a page of the search API.
+     *
+     * @param body     the JSON array returned by the API
+     * @param products the list the products with a name and a price are added to
+     * @return the number of entries in the page, including the ones without a name or a price
+     * @throws IOException if the body cannot be read or is not a JSON array
+     */
+    static int readProducts(InputStream body, List<Product> products) throws IOException {
+        int read = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "The search result is not an array");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "A search result is not an object");
+                }
+                read++;
+                Product product = readProduct(parser);
+                if (product != null) {
+                    products.add(product);
+                }
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads only the names and the prices of a page of the search API, skipping the specifications.
+     *
+     * @param body   the JSON array returned by the API
+     * @param prices the map the price of every product with a name and a price is added to, by product name
+     * @return the number of entries in the page, including the ones without a name or a price
+     * @throws IOException if the body cannot be read or is not a JSON array
+     */
+    static int readPrices(InputStream body, Map<String, BigDecimal> prices) throws IOException {
+        int read = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "The search result is not an array");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "A search result is not an object");
+                }
+                read++;
+                String name = null;
+                BigDecimal price = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if (field.equals("productName")) {
+                        name = parser.getValueAsString();
+                    } else if (field.equals("items")) {
+                        price = readFirstOfferPrice(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (name != null && price != null) {
+                    prices.put(name, JsonStateProductExtractor.displayPrice(price));
+                }
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads one product of the search result, positioned on its start.
+     *
+     * @return the product, or null if it has no name or no price
+     */
+    private static Product readProduct(JsonParser parser) throws IOException {
+        Product.Builder builder = new Product.Builder();
+        String name = null;
+        BigDecimal price = null;
+        List<String> categories = List.of();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            BiConsumer<Product.Builder, String> setter = SelectorProductExtractor.PROPERTY_SETTERS.get(field);
+            if (field.equals("productName")) {
+                name = parser.getValueAsString();
+            } else if (field.equals("categories")) {
+                categories = readStrings(parser);
+            } else if (field.equals("items")) {
+                price = readFirstOfferPrice(parser);
+            } else if (setter != null && token == JsonToken.START_ARRAY) {
+                List<String> values = readStrings(parser);
+                if (!values.isEmpty()) {
+                    setter.accept(builder, values.get(0));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (name == null || price == null) {
+            LOGGER.log(Level.WARNING, "No name or price found for catalog product: " + name);
+            return null;
+        }
+        return builder.name(name)
+                .category(JsonStateProductExtractor.categoryLevel(categories))
+                .price(JsonStateProductExtractor.displayPrice(price))
+                .build();
+    }
+
+    /**
+     * Reads {@code items[0].sellers[0].commertialOffer.Price}, positioned on the start of the items array.
+     */
+    private static BigDecimal readFirstOfferPrice(JsonParser parser) throws IOException {
+        BigDecimal price = null;
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (price != null || token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && field.equals("sellers")) {
+                    price = readFirstSellerPrice(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return price;
+    }
+
+    private static BigDecimal readFirstSellerPrice(JsonParser parser) throws IOException {
+        BigDecimal price = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (price != null || token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("commertialOffer")) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String offerField = parser.getCurrentName();
+                        if (parser.nextToken().isNumeric() && offerField.equals("Price")) {
+                            price = parser.getDecimalValue();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return price;
+    }
+
+    /**
+     * Reads the scalar values of an array, positioned on its start.
+     */
+    private static List<String> readStrings(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return List.of();
+        }
+        List<String> values = new ArrayList<>(3);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isScalarValue()) {
+                values.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Creates daemon worker threads named {@code catalog-N}.
+     *
+     * @return the thread factory
+     */
+    private static ThreadFactory catalogThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "catalog-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
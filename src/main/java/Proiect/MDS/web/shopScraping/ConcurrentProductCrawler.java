@@ -0,0 +1,236 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.ProductSink;
+import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.shopScraping.fetch.FetchedPage;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import org.javatuples.Pair;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Concurrent variant of {@link ProductCrawler}.
+ * <p>
+ * URLs are kept in a thread-safe {@link CrawlFrontier} and fetched by a pool of worker threads,
+ * with at most {@code maxInFlight} pages being processed at once. The requests per host are limited by the
+ * {@link Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter} of the page fetcher. The depth semantics are the same as in the sequential
+ * crawl: the category start pages have depth 1 and every product page found on a page of depth
+ * {@code n} is queued with depth {@code n + 1}.
+ * <p>
+ * When a {@link FrontierJournal} is given, the frontier is journaled and a crawl that was interrupted
+ * resumes with the URLs it had not completed; the journal is cleared once a crawl runs to the end.
+ */
+public class ConcurrentProductCrawler extends ProductCrawler {
+    private static final Logger LOGGER = new AppLogger(ConcurrentProductCrawler.class).getLogger();
+    private static final long SHUTDOWN_TIMEOUT_MINUTES = 5;
+
+    private final int maxInFlight;
+    private final FrontierJournal journal;
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param maxInFlight    the maximum number of pages processed at the same time
+     */
+    public ConcurrentProductCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                                    int maxInFlight) {
+        this(shopScraper, productScraper, pto, maxInFlight, null);
+    }
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param maxInFlight    the maximum number of pages processed at the same time
+     * @param journal        the journal used to persist the frontier, or null to keep it in memory only
+     */
+    public ConcurrentProductCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                                    int maxInFlight, FrontierJournal journal) {
+        this(shopScraper, productScraper, pto, ShopScraper.getPageFetcher(), new DirectProductSink(pto),
+                maxInFlight, journal);
+    }
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param pageFetcher    the fetcher used to download every page
+     * @param productSink    the sink the new and changed products are written to
+     * @param maxInFlight    the maximum number of pages processed at the same time
+     * @param journal        the journal used to persist the frontier, or null to keep it in memory only
+     */
+    public ConcurrentProductCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                                    PageFetcher pageFetcher, ProductSink productSink, int maxInFlight,
+                                    FrontierJournal journal) {
+        super(shopScraper, productScraper, pto, pageFetcher, productSink);
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.maxInFlight = maxInFlight;
+        this.journal = journal;
+    }
+
+    /**
+     * Method to start the concurrent product crawling process.
+     */
+    @Override
+    public void getProductsAuchan() {
+        CrawlFrontier frontier = initializeFrontier();
+        startCrawling(frontier);
+    }
+
+    /**
+     * Initializes the frontier with the start URLs. With a journal, the frontier first restores the
+     * state of an interrupted run, so start URLs that were already completed are not queued again.
+     *
+     * @return a frontier containing the start URLs at depth level 1
+     */
+    private CrawlFrontier initializeFrontier() {
+        CrawlFrontier frontier = journal == null ? new CrawlFrontier() : new CrawlFrontier(journal);
+        getCrawlingURLs().forEach(url -> frontier.offer(1, url));
+        return frontier;
+    }
+
+    /**
+     * Takes URLs from the frontier and hands them to the worker threads until the frontier is drained.
+     *
+     * @param frontier the URL frontier
+     */
+    private void startCrawling(CrawlFrontier frontier) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService executor = Executors.newCachedThreadPool(crawlerThreadFactory());
+        try {
+            Pair<Integer, String> urlPair;
+            while ((urlPair = frontier.take()) != null) {
+                inFlight.acquire();
+                Pair<Integer, String> current = urlPair;
+                executor.execute(() -> {
+                    boolean processed = false;
+                    try {
+                        processed = processURL(frontier, current);
+                    } finally {
+                        inFlight.release();
+                        if (processed) {
+                            frontier.done(current);
+                        } else {
+                            frontier.abandon(current);
+                        }
+                    }
+                });
+            }
+            flushWrites();
+            LOGGER.log(Level.INFO, "Concurrent crawl finished, seen URLs: {0}", frontier.getSeenURLs());
+            LOGGER.log(Level.INFO, "Fetcher state: {0}", getPageFetcher());
+            if (journal != null && frontier.abandoned() > 0) {
+                // the journal keeps them pending for the next run
+                LOGGER.log(Level.WARNING, "{0} pages could not be fetched and are left for the next run", frontier.abandoned());
+            } else if (journal != null) {
+                journal.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Concurrent crawl interrupted with {0} URLs left", frontier.pending());
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    /**
+     * Fetches a page, processes it if it is a product page and queues the product links it contains.
+     * The page is downloaded once: the same document is used for the breadcrumb check, the product
+     * extraction and the link discovery. A product page that was not modified since the last crawl is
+     * not extracted again, but its links are still followed.
+     * <p>
+     * A page that cannot be fetched is not done: it stays pending in the journal, so a resumed crawl fetches it
+     * again along with the pages below it, and a product page is also sent to the dead-letter queue.
+     *
+     * @param frontier the URL frontier
+     * @param urlPair  the depth level and URL
+     * @return true if the page was processed, false if it could not be fetched
+     */
+    private boolean processURL(CrawlFrontier frontier, Pair<Integer, String> urlPair) {
+        String url = urlPair.getValue1();
+        try {
+            if (!ShopScraper.isValidURL(url)) {
+                return true;
+            }
+            FetchedPage page = fetchPage(url);
+            Document doc = page.getDocument();
+            if (isProductPage(url)) {
+                resolveFailure(url);
+                if (!ShopScraper.checkATagsForHref(doc)) {
+                    return true;
+                }
+                if (!page.isNotModified()) {
+                    processProduct(doc, url);
+                }
+            }
+            queueProductLinks(frontier, urlPair.getValue0(), doc.select("a[href]"));
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while fetching {0}: {1}", new String[]{url, e.getMessage()});
+            if (isProductPage(url)) {
+                recordFailure(url, e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Adds every unseen product link of a page to the frontier, one level deeper than the page.
+     * The links are deduplicated on their canonical form.
+     *
+     * @param frontier   the URL frontier
+     * @param depthLevel the depth level of the page the links were found on
+     * @param links      the links of the page
+     */
+    private void queueProductLinks(CrawlFrontier frontier, int depthLevel, Elements links) {
+        canonicalLinks(links).stream()
+                .filter(absHref -> UrlCanonicalizer.classify(absHref) == UrlCanonicalizer.Kind.PRODUCT)
+                .filter(absHref -> !frontier.isSeen(absHref))
+                .forEach(absHref -> frontier.offer(depthLevel + 1, absHref));
+    }
+
+    /**
+     * Waits for the running workers to finish and stops the pool.
+     *
+     * @param executor the worker pool
+     */
+    private void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates daemon worker threads named {@code crawler-N}.
+     *
+     * @return the thread factory
+     */
+    private static ThreadFactory crawlerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "crawler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
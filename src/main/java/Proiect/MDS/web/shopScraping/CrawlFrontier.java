@@ -0,0 +1,200 @@
+package Proiect.MDS.web.shopScraping;
+
+import org.javatuples.Pair;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Thread-safe URL frontier used by the concurrent crawl mode.
+ * <p>
+ * Entries are {@code Pair<Integer, String>} (depth level, URL), exactly like the queue used by
+ * {@link ProductCrawler}. URLs are handed out in BFS order: an entry is only returned once every
+ * entry of a lower depth level has been taken. Each URL is accepted at most once; the URLs seen so far
+ * are kept in a pluggable {@link VisitedUrlSet}.
+ * <p>
+ * The frontier also tracks the work that is still pending (queued or being processed), so
+ * workers can tell when the crawl is finished: {@link #take()} returns {@code null} once the
+ * queue is empty and every taken entry has been marked as {@link #done(Pair) done}.
+ * <p>
+ * When created with a {@link FrontierJournal}, every queued and completed URL is journaled and the
+ * frontier starts from the state a previous, interrupted run left behind.
+ */
+public class CrawlFrontier {
+    private final Map<Integer, Queue<Pair<Integer, String>>> levels = new TreeMap<>();
+    private final VisitedUrlSet seenURLs;
+    private final FrontierJournal journal;
+    private int queued;
+    private int pending;
+    private int abandoned;
+
+    /**
+     * Creates an in-memory frontier that remembers URL fingerprints.
+     */
+    public CrawlFrontier() {
+        this(new FingerprintVisitedUrlSet(), null);
+    }
+
+    /**
+     * Creates a frontier backed by a journal that remembers URL fingerprints.
+     *
+     * @param journal the journal to restore from and write to
+     */
+    public CrawlFrontier(FrontierJournal journal) {
+        this(new FingerprintVisitedUrlSet(), journal);
+    }
+
+    /**
+     * Creates a frontier with the given visited set, optionally backed by a journal. With a journal, the
+     * URLs of a previous run are restored: completed URLs are marked as seen and URLs that were queued but
+     * not completed are queued again.
+     *
+     * @param seenURLs the set used to remember the URLs seen so far
+     * @param journal  the journal to restore from and write to, or null
+     */
+    public CrawlFrontier(VisitedUrlSet seenURLs, FrontierJournal journal) {
+        this.seenURLs = seenURLs;
+        this.journal = journal;
+        if (journal == null) {
+            return;
+        }
+        journal.getCompletedURLs().forEach(seenURLs::add);
+        for (Pair<Integer, String> urlPair : journal.getPendingEntries()) {
+            if (seenURLs.add(urlPair.getValue1())) {
+                enqueue(urlPair);
+            }
+        }
+    }
+
+    /**
+     * Adds a URL to the frontier if it has not been seen before.
+     *
+     * @param depthLevel the depth level of the URL
+     * @param url        the URL to add
+     * @return true if the URL was added, false if it was already seen
+     */
+    public boolean offer(int depthLevel, String url) {
+        if (!seenURLs.add(url)) {
+            return false;
+        }
+        if (journal != null) {
+            journal.recordQueued(depthLevel, url);
+        }
+        enqueue(new Pair<>(depthLevel, url));
+        return true;
+    }
+
+    private synchronized void enqueue(Pair<Integer, String> urlPair) {
+        levels.computeIfAbsent(urlPair.getValue0(), level -> new ArrayDeque<>()).add(urlPair);
+        queued++;
+        pending++;
+        notifyAll();
+    }
+
+    /**
+     * Marks a URL as seen without queueing it, so later offers of the same URL are ignored.
+     *
+     * @param url the URL to mark
+     * @return true if the URL had not been seen before
+     */
+    public boolean markSeen(String url) {
+        return seenURLs.add(url);
+    }
+
+    /**
+     * Checks whether a URL was already offered or marked as seen.
+     *
+     * @param url the URL to check
+     * @return true if the URL was seen
+     */
+    public boolean isSeen(String url) {
+        return seenURLs.contains(url);
+    }
+
+    /**
+     * Takes the next URL with the lowest depth level, waiting while the queue is empty but
+     * other entries are still being processed (they may add new URLs).
+     *
+     * @return the next (depth level, URL) pair, or null if the crawl is finished
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized Pair<Integer, String> take() throws InterruptedException {
+        while (queued == 0) {
+            if (pending == 0) {
+                return null;
+            }
+            wait();
+        }
+        for (Queue<Pair<Integer, String>> level : levels.values()) {
+            Pair<Integer, String> urlPair = level.poll();
+            if (urlPair != null) {
+                queued--;
+                return urlPair;
+            }
+        }
+        throw new IllegalStateException("Frontier queue count is out of sync");
+    }
+
+    /**
+     * Marks a previously taken entry as fully processed. The journal is written outside the frontier monitor,
+     * so a checkpoint it triggers does not stall the other workers.
+     *
+     * @param urlPair the entry returned by {@link #take()}
+     */
+    public void done(Pair<Integer, String> urlPair) {
+        if (journal != null) {
+            journal.recordDone(urlPair.getValue1());
+        }
+        release();
+    }
+
+    /**
+     * Gives up on a previously taken entry that could not be processed. The entry stays pending in the journal,
+     * so a resumed crawl fetches it again.
+     *
+     * @param urlPair the entry returned by {@link #take()}
+     */
+    public void abandon(Pair<Integer, String> urlPair) {
+        synchronized (this) {
+            abandoned++;
+        }
+        release();
+    }
+
+    private synchronized void release() {
+        pending--;
+        if (pending == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the set of URLs seen so far, with its memory statistics
+     */
+    public VisitedUrlSet getSeenURLs() {
+        return seenURLs;
+    }
+
+    /**
+     * @return the number of URLs waiting in the queue
+     */
+    public synchronized int size() {
+        return queued;
+    }
+
+    /**
+     * @return the number of taken URLs that could not be processed
+     */
+    public synchronized int abandoned() {
+        return abandoned;
+    }
+
+    /**
+     * @return the number of URLs queued or still being processed
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+}
@@ -0,0 +1,266 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.database.FailedUrlTableOperations;
+import Proiect.MDS.web.models.FailedUrl;
+import Proiect.MDS.web.shopScraping.fetch.CircuitOpenException;
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable dead-letter queue of the product URLs the crawlers failed to fetch, with scheduled retries.
+ * <p>
+ * Every failure is written to the failed_urls table with its error class and attempt count, so a URL is not lost
+ * until the next full crawl, nor after a restart. A background scheduler retries the due URLs with exponential
+ * backoff ({@code baseDelay}, doubling per attempt up to {@code maxDelay}) and equal jitter (half the delay is
+ * random), so URLs that failed together during an outage do not all come back at the same moment. After
+ * {@code maxAttempts} failed attempts a URL is parked: it stays in the table for inspection but is not retried.
+ * <p>
+ * A fetch refused by an open circuit ({@link CircuitOpenException}) never reached the shop, so it does not count as
+ * an attempt: the URL is simply rescheduled for when the circuit lets requests through again. Recovering from a
+ * transient outage therefore costs one fetch per failed URL.
+ */
+public class DeadLetterQueue implements AutoCloseable {
+    private static final Logger LOGGER = new AppLogger(DeadLetterQueue.class).getLogger();
+    private static final int DEFAULT_MAX_ATTEMPTS = 6;
+    private static final Duration DEFAULT_BASE_DELAY = Duration.ofMinutes(1);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofHours(6);
+
+    private final FailedUrlTableOperations failedUrlTable;
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Random random;
+    private final Map<String, FailedUrl> failedUrls = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Retries a failed URL.
+     */
+    @FunctionalInterface
+    public interface Retrier {
+        /**
+         * @param url the URL to fetch and process again
+         * @throws IOException if the URL fails again
+         */
+        void retry(String url) throws IOException;
+    }
+
+    /**
+     * Creates a queue that retries a URL up to 6 times, from one minute to six hours apart.
+     *
+     * @param failedUrlTable the failed_urls table operations
+     */
+    public DeadLetterQueue(FailedUrlTableOperations failedUrlTable) {
+        this(failedUrlTable, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, new Random());
+    }
+
+    /**
+     * Loads the URLs that failed in earlier runs from the table.
+     *
+     * @param failedUrlTable the failed_urls table operations
+     * @param maxAttempts    the number of failed attempts after which a URL is parked
+     * @param baseDelay      the delay before the first retry, before jitter
+     * @param maxDelay       the longest delay between two retries, before jitter
+     * @param random         the source of the jitter
+     */
+    public DeadLetterQueue(FailedUrlTableOperations failedUrlTable, int maxAttempts, Duration baseDelay, Duration maxDelay,
+                           Random random) {
+        if (maxAttempts < 1 || baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+            throw new IllegalArgumentException("Expected maxAttempts >= 1 and 0 <= baseDelay <= maxDelay");
+        }
+        this.failedUrlTable = failedUrlTable;
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.random = random;
+        failedUrlTable.getAllFailedUrls().forEach(failedUrl -> failedUrls.put(failedUrl.getUrl(), failedUrl));
+    }
+
+    /**
+     * Records a failure that happened now.
+     *
+     * @param url   the URL that failed
+     * @param error the error
+     * @return the failed URL, with its next attempt
+     */
+    public FailedUrl recordFailure(String url, Exception error) {
+        return recordFailure(url, error, LocalDateTime.now(RecrawlPlanner.CRAWL_ZONE));
+    }
+
+    /**
+     * Records a failure and schedules the next attempt.
+     *
+     * @param url   the URL that failed
+     * @param error the error
+     * @param now   the current time in the crawl zone
+     * @return the failed URL, with its next attempt
+     */
+    public FailedUrl recordFailure(String url, Exception error, LocalDateTime now) {
+        FailedUrl failedUrl = failedUrls.compute(url, (key, previous) -> {
+            int attempts = previous == null ? 0 : previous.getAttempts();
+            Duration delay;
+            if (error instanceof CircuitOpenException circuitOpen) {
+                delay = circuitOpen.getRetryAfter();
+            } else {
+                attempts++;
+                delay = backoff(attempts);
+            }
+            return new FailedUrl.Builder()
+                    .url(url)
+                    .errorClass(error.getClass().getName())
+                    .errorMessage(describe(error))
+                    .attempts(attempts)
+                    .firstFailed(previous == null ? now : previous.getFirstFailed())
+                    .lastFailed(now)
+                    .nextAttempt(now.plus(delay))
+                    .build();
+        });
+        failedUrlTable.upsertFailedUrl(failedUrl);
+        if (failedUrl.getAttempts() >= maxAttempts) {
+            LOGGER.log(Level.SEVERE, "Parking {0} after {1} failed attempts: {2}",
+                    new Object[]{url, failedUrl.getAttempts(), failedUrl.getErrorMessage()});
+        } else {
+            LOGGER.log(Level.WARNING, "{0} failed ({1}), attempt {2}, next retry at {3}",
+                    new Object[]{url, failedUrl.getErrorMessage(), failedUrl.getAttempts(), failedUrl.getNextAttempt()});
+        }
+        return failedUrl;
+    }
+
+    /**
+     * Removes a URL from the queue once it was fetched successfully. Cheap for the URLs that never failed.
+     *
+     * @param url the URL
+     */
+    public void resolve(String url) {
+        if (failedUrls.remove(url) != null) {
+            failedUrlTable.deleteFailedUrl(url);
+        }
+    }
+
+    /**
+     * Retries every URL whose next attempt is due and that is not parked, the longest waiting first.
+     *
+     * @param now     the current time in the crawl zone
+     * @param retrier fetches and processes a URL again
+     * @return the number of URLs that were retried successfully
+     */
+    public int retryDue(LocalDateTime now, Retrier retrier) {
+        List<FailedUrl> due = failedUrls.values().stream()
+                .filter(failedUrl -> failedUrl.getAttempts() < maxAttempts && !failedUrl.getNextAttempt().isAfter(now))
+                .sorted(Comparator.comparing(FailedUrl::getNextAttempt))
+                .toList();
+        int recovered = 0;
+        for (FailedUrl failedUrl : due) {
+            try {
+                retrier.retry(failedUrl.getUrl());
+                resolve(failedUrl.getUrl());
+                recovered++;
+            } catch (IOException | RuntimeException e) {
+                recordFailure(failedUrl.getUrl(), e, now);
+            }
+        }
+        if (!due.isEmpty()) {
+            LOGGER.log(Level.INFO, "Retried {0} failed URLs, {1} recovered, {2} still failing",
+                    new Object[]{due.size(), recovered, failedUrls.size()});
+        }
+        return recovered;
+    }
+
+    /**
+     * Starts retrying the due URLs in the background.
+     *
+     * @param retrier      fetches and processes a URL again
+     * @param pollInterval how often the due URLs are looked up
+     */
+    public synchronized void start(Retrier retrier, Duration pollInterval) {
+        if (scheduler != null) {
+            throw new IllegalStateException("The retries are already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dead-letter-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> retryDue(LocalDateTime.now(RecrawlPlanner.CRAWL_ZONE), retrier),
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background retries, waiting for a running round to finish.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /**
+     * @param url a URL
+     * @return the failure record of the URL, or null if it is not in the queue
+     */
+    public FailedUrl getFailedUrl(String url) {
+        return failedUrls.get(url);
+    }
+
+    /**
+     * @return the number of URLs in the queue, the parked ones included
+     */
+    public int size() {
+        return failedUrls.size();
+    }
+
+    /**
+     * @return the number of URLs that are not retried anymore
+     */
+    public long getParkedCount() {
+        return failedUrls.values().stream().filter(failedUrl -> failedUrl.getAttempts() >= maxAttempts).count();
+    }
+
+    /**
+     * @param attempts the number of failed attempts so far, at least 1
+     * @return the delay before the next attempt: between half and all of {@code baseDelay * 2^(attempts - 1)},
+     * capped at {@code maxDelay}
+     */
+    Duration backoff(int attempts) {
+        long exponential = baseDelay.toMillis() << Math.min(attempts - 1, 30);
+        long capped = exponential < 0 ? maxDelay.toMillis() : Math.min(maxDelay.toMillis(), exponential);
+        long half = capped / 2;
+        return Duration.ofMillis(half + (long) (random.nextDouble() * (capped - half)));
+    }
+
+    private static String describe(Exception error) {
+        if (error instanceof HttpStatusException status) {
+            return "HTTP " + status.getStatusCode() + " " + status.getMessage();
+        }
+        return error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+    }
+
+    @Override
+    public String toString() {
+        return "DeadLetterQueue{failed=" + failedUrls.size() + ", parked=" + getParkedCount() + '}';
+    }
+}
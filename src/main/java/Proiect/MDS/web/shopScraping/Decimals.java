@@ -0,0 +1,77 @@
+package Proiect.MDS.web.shopScraping;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses the decimal numbers of product pages without going through a regex or a character array copy.
+ */
+final class Decimals {
+    // 18 digits always fit in a long
+    private static final int MAX_FAST_DIGITS = 18;
+
+    private Decimals() {
+    }
+
+    /**
+     * Parses a plain decimal number such as {@code 12.49} or {@code -0.5} straight into its unscaled value and scale.
+     * Anything else (exponents, more than 18 digits, malformed values) is handed to {@link BigDecimal#BigDecimal(String)},
+     * so the result, including its scale, and the exceptions are always the same as with the constructor.
+     *
+     * @param value the number
+     * @return the parsed number
+     * @throws NumberFormatException if the value is not a valid number
+     */
+    static BigDecimal parse(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_FAST_DIGITS) {
+                    return new BigDecimal(value.toString());
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return new BigDecimal(value.toString());
+            }
+        }
+        if (digits == 0) {
+            return new BigDecimal(value.toString());
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    /**
+     * Checks whether a price fragment of a product page is made only of digits and commas, like {@code "12"}, {@code ","}
+     * or {@code "12,49"}; the same check as {@code text.matches("[0-9,]+")}.
+     *
+     * @param text the text of the price element
+     * @return true if the text is a non-empty sequence of digits and commas
+     */
+    static boolean isPriceFragment(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && c != ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
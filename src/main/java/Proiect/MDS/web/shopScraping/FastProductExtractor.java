@@ -0,0 +1,135 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.models.Product;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.QueryParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Extracts the product details in a single walk over the document, with the selectors of {@link ShopScraper}
+ * compiled once into Jsoup {@link Evaluator}s instead of being parsed again by every {@code doc.select(...)}.
+ * <p>
+ * The walk collects the category links, the first span of the brand container, the price fragments and the
+ * specification values in document order, so the result is the same {@link Product} as the one of the
+ * {@link SelectorProductExtractor}. The price is checked and assembled without regular expressions and the
+ * numbers are parsed by {@link Decimals}. The content of script and style elements is not visited.
+ */
+public class FastProductExtractor implements ProductExtractor {
+    private static final Logger LOGGER = new AppLogger(FastProductExtractor.class).getLogger();
+    private static final Evaluator CATEGORY = QueryParser.parse(ShopScraper.AUCHAN_PRODUCT_CATEGORY_SELECTOR);
+    private static final Evaluator NAME_CONTAINER = QueryParser.parse(ShopScraper.AUCHAN_PRODUCT_NAME_CONTAINER_SELECTOR);
+    private static final Evaluator PRICE_CONTAINER = QueryParser.parse(ShopScraper.AUCHAN_PRODUCT_PRICE_CONTAINER_SELECTOR);
+    private static final Evaluator PROPERTIES = QueryParser.parse(ShopScraper.AUCHAN_PRODUCT_PROPERTIES_SELECTOR);
+
+    @Override
+    public Optional<Product> extract(Document doc, String urlProduct) {
+        ProductWalk walk = new ProductWalk(doc);
+        NodeTraversor.filter(walk, doc);
+
+        if (walk.name == null || walk.price.length() == 0) {
+            LOGGER.log(Level.WARNING, "No name or price found for product at URL: " + urlProduct);
+            return Optional.empty();
+        }
+
+        Product.Builder builder = new Product.Builder()
+                .name(walk.name.text())
+                .category(new Elements(walk.category).text())
+                .price(Decimals.parse(walk.price));
+
+        for (int i = 0; i < walk.propertyNames.size(); i++) {
+            BiConsumer<Product.Builder, String> setter = SelectorProductExtractor.PROPERTY_SETTERS.get(walk.propertyNames.get(i));
+            if (setter != null) {
+                setter.accept(builder, walk.propertyValues.get(i));
+            }
+        }
+
+        return Optional.of(builder.build());
+    }
+
+    /**
+     * Collects every field of the product in one pass over the document.
+     */
+    private static final class ProductWalk implements NodeFilter {
+        private final Document root;
+        private final List<Element> category = new ArrayList<>(1);
+        private final StringBuilder price = new StringBuilder(8);
+        private final List<String> propertyNames = new ArrayList<>();
+        private final List<String> propertyValues = new ArrayList<>();
+        private Element name;
+        private boolean priceComplete;
+        // depth of the outermost open name / price container, or -1 outside of them
+        private int nameContainerDepth = -1;
+        private int priceContainerDepth = -1;
+
+        private ProductWalk(Document root) {
+            this.root = root;
+        }
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (!(node instanceof Element element)) {
+                return FilterResult.CONTINUE;
+            }
+            String tag = element.normalName();
+            boolean span = tag.equals("span");
+
+            if (CATEGORY.matches(root, element)) {
+                category.add(element);
+            }
+
+            // the container itself counts as a name span, like doc.select(container).select("span")
+            if (nameContainerDepth < 0 && NAME_CONTAINER.matches(root, element)) {
+                nameContainerDepth = depth;
+            }
+            if (name == null && span && nameContainerDepth >= 0) {
+                name = element;
+            }
+
+            // only the spans inside a price container count, like "container span"
+            if (!priceComplete && span && priceContainerDepth >= 0) {
+                String text = element.text();
+                if (Decimals.isPriceFragment(text)) {
+                    for (int i = 0; i < text.length(); i++) {
+                        char c = text.charAt(i);
+                        price.append(c == ',' ? '.' : c);
+                    }
+                } else {
+                    priceComplete = true;
+                }
+            }
+            if (priceContainerDepth < 0 && PRICE_CONTAINER.matches(root, element)) {
+                priceContainerDepth = depth;
+            }
+
+            if (PROPERTIES.matches(root, element)) {
+                propertyNames.add(element.attr("data-specification-name"));
+                propertyValues.add(element.attr("data-specification-value"));
+            }
+            // their content is data, never an element
+            return tag.equals("script") || tag.equals("style") ? FilterResult.SKIP_CHILDREN : FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (depth == nameContainerDepth) {
+                nameContainerDepth = -1;
+            }
+            if (depth == priceContainerDepth) {
+                priceContainerDepth = -1;
+            }
+            return FilterResult.CONTINUE;
+        }
+    }
+}
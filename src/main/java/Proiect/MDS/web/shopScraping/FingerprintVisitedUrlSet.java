@@ -0,0 +1,149 @@
+package Proiect.MDS.web.shopScraping;
+
+/**
+ * Visited set that stores a 64-bit {@link UrlFingerprint} per URL in primitive open-addressing tables.
+ * <p>
+ * A URL costs 8 to 16 bytes (depending on the table load) instead of the 100+ bytes of a {@code String}
+ * in a {@code HashSet}. The fingerprints are spread over a fixed number of stripes, each with its own lock
+ * and linear-probing {@code long[]} table, so concurrent crawler threads rarely contend.
+ */
+public class FingerprintVisitedUrlSet implements VisitedUrlSet {
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int DEFAULT_EXPECTED_SIZE = 1 << 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Creates a set sized for {@value #DEFAULT_EXPECTED_SIZE} URLs; it grows when needed.
+     */
+    public FingerprintVisitedUrlSet() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize the number of URLs the set should hold before it has to grow
+     */
+    public FingerprintVisitedUrlSet(int expectedSize) {
+        int perStripe = Math.max(16, expectedSize / STRIPES);
+        // Smallest power of two holding perStripe entries, doubled so the table starts at most half full.
+        int stripeCapacity = Integer.highestOneBit(perStripe * 2 - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        long fingerprint = fingerprintOf(url);
+        return stripeOf(fingerprint).add(fingerprint);
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = fingerprintOf(url);
+        return stripeOf(fingerprint).contains(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.capacity() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintVisitedUrlSet{size=" + size() + ", memoryBytes=" + memoryBytes() + '}';
+    }
+
+    /**
+     * Zero marks an empty slot, so a URL whose fingerprint is zero is stored as one.
+     */
+    private static long fingerprintOf(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * The stripe is chosen from the top bits of the fingerprint, the slot from the low bits.
+     */
+    private Stripe stripeOf(long fingerprint) {
+        return stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    /**
+     * One linear-probing table, kept at most 75% full.
+     */
+    private static final class Stripe {
+        private long[] table;
+        private int size;
+
+        Stripe(int capacity) {
+            this.table = new long[capacity];
+        }
+
+        synchronized boolean add(long fingerprint) {
+            if (!insert(table, fingerprint)) {
+                return false;
+            }
+            size++;
+            if (size * 4L >= table.length * 3L) {
+                grow();
+            }
+            return true;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int slot = (int) fingerprint & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                if (table[slot] == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int capacity() {
+            return table.length;
+        }
+
+        private void grow() {
+            long[] grown = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(grown, fingerprint);
+                }
+            }
+            table = grown;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == fingerprint) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = fingerprint;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package Proiect.MDS.web.shopScraping;
+
+import org.javatuples.Pair;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable record of the crawl frontier, so a crawl interrupted by a crash or a redeploy can resume
+ * where it stopped.
+ * <p>
+ * Every queued and every completed URL is appended to {@code frontier.log}. Periodically (every
+ * {@code checkpointInterval} records or {@code checkpointPeriod}, whichever comes first) the current
+ * state is written to {@code frontier.snapshot} and the log is truncated, so recovery only has to read
+ * one snapshot plus a bounded tail of the log. Both files use one record per line:
+ * {@code Q<tab>depth<tab>url} for a queued URL and {@code D<tab>url} for a completed one.
+ * <p>
+ * The records are appended under the journal monitor, but the snapshot is written and synced outside it, so
+ * the crawl workers keep recording while a checkpoint runs: the checkpoint first moves the log aside to
+ * {@code frontier.log.1}, which recovery replays between the snapshot and the new log until the snapshot is in
+ * place. Replaying a record twice is harmless.
+ * <p>
+ * A URL that was queued but not completed before the crash is returned by {@link #getPendingEntries()}
+ * and fetched again; completed URLs are never fetched again by a resumed crawl.
+ */
+public class FrontierJournal implements Closeable {
+    private static final Logger LOGGER = new AppLogger(FrontierJournal.class).getLogger();
+    private static final String LOG_FILE = "frontier.log";
+    private static final String SNAPSHOT_FILE = "frontier.snapshot";
+    private static final String ROTATED_LOG_FILE = "frontier.log.1";
+    private static final String QUEUED = "Q";
+    private static final String DONE = "D";
+
+    private final Path directory;
+    private final int checkpointInterval;
+    private final Duration checkpointPeriod;
+    private final Map<String, Integer> pending = new LinkedHashMap<>();
+    private final Set<String> completed = new HashSet<>();
+    private BufferedWriter log;
+    private int recordsSinceCheckpoint;
+    private Instant lastCheckpoint = Instant.now();
+    private boolean checkpointing;
+    // incremented by clear(), so a checkpoint started before it does not bring the old state back
+    private int generation;
+
+    /**
+     * Opens the journal in the given directory, recovering the state of a previous run if there is one.
+     *
+     * @param directory          the directory holding the log and snapshot files
+     * @param checkpointInterval the number of records after which a checkpoint is written
+     * @param checkpointPeriod   the time after which a checkpoint is written
+     * @throws IOException if the files cannot be read or created
+     */
+    public FrontierJournal(Path directory, int checkpointInterval, Duration checkpointPeriod) throws IOException {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointPeriod = checkpointPeriod;
+        Files.createDirectories(directory);
+        recover(directory.resolve(SNAPSHOT_FILE));
+        recover(directory.resolve(ROTATED_LOG_FILE));
+        recover(directory.resolve(LOG_FILE));
+        this.log = openLog();
+        LOGGER.log(Level.INFO, "Frontier journal recovered: {0} pending, {1} completed URLs",
+                new Object[]{pending.size(), completed.size()});
+    }
+
+    /**
+     * @return true if a previous run left pending or completed URLs behind
+     */
+    public synchronized boolean hasState() {
+        return !pending.isEmpty() || !completed.isEmpty();
+    }
+
+    /**
+     * @return the URLs queued but not completed by the previous run, in the order they were queued
+     */
+    public synchronized List<Pair<Integer, String>> getPendingEntries() {
+        List<Pair<Integer, String>> entries = new ArrayList<>(pending.size());
+        pending.forEach((url, depthLevel) -> entries.add(new Pair<>(depthLevel, url)));
+        return entries;
+    }
+
+    /**
+     * @return the URLs completed so far
+     */
+    public synchronized Set<String> getCompletedURLs() {
+        return new HashSet<>(completed);
+    }
+
+    /**
+     * Checks whether a URL was already completed by this or a previous run.
+     *
+     * @param url the URL to check
+     * @return true if the URL was completed
+     */
+    public synchronized boolean isCompleted(String url) {
+        return completed.contains(url);
+    }
+
+    /**
+     * Records that a URL was added to the frontier.
+     *
+     * @param depthLevel the depth level of the URL
+     * @param url        the URL
+     */
+    public void recordQueued(int depthLevel, String url) {
+        synchronized (this) {
+            if (completed.contains(url) || pending.putIfAbsent(url, depthLevel) != null) {
+                return;
+            }
+            if (!append(QUEUED + '\t' + depthLevel + '\t' + url)) {
+                return;
+            }
+        }
+        checkpoint();
+    }
+
+    /**
+     * Records that a URL was fully processed.
+     *
+     * @param url the URL
+     */
+    public void recordDone(String url) {
+        synchronized (this) {
+            pending.remove(url);
+            if (!completed.add(url) || !append(DONE + '\t' + url)) {
+                return;
+            }
+        }
+        checkpoint();
+    }
+
+    /**
+     * Writes the current state to the snapshot file and truncates the log.
+     * The log is moved aside under the monitor; the snapshot is then written to a temporary file and synced
+     * without holding it, and moved over the old one. A crash at any point leaves a snapshot and logs that
+     * recover the state. Only one checkpoint runs at a time, a call made during another one returns at once.
+     */
+    public void checkpoint() {
+        List<String> completedSnapshot;
+        Map<String, Integer> pendingSnapshot;
+        int snapshotGeneration;
+        synchronized (this) {
+            if (checkpointing) {
+                return;
+            }
+            try {
+                rotateLog();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "An error occurred while rotating the frontier log: {0}", e.getMessage());
+                return;
+            }
+            checkpointing = true;
+            completedSnapshot = new ArrayList<>(completed);
+            pendingSnapshot = new LinkedHashMap<>(pending);
+            snapshotGeneration = generation;
+            recordsSinceCheckpoint = 0;
+            lastCheckpoint = Instant.now();
+        }
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                         Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+                for (String url : completedSnapshot) {
+                    writer.write(DONE + '\t' + url);
+                    writer.newLine();
+                }
+                for (Map.Entry<String, Integer> entry : pendingSnapshot.entrySet()) {
+                    writer.write(QUEUED + '\t' + entry.getValue() + '\t' + entry.getKey());
+                    writer.newLine();
+                }
+                writer.flush();
+                channel.force(true);
+            }
+            synchronized (this) {
+                if (generation == snapshotGeneration) {
+                    Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    Files.deleteIfExists(directory.resolve(ROTATED_LOG_FILE));
+                } else {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while writing the frontier checkpoint: {0}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                checkpointing = false;
+            }
+        }
+    }
+
+    /**
+     * Moves the records of the log to the rotated log and starts an empty log. The rotated log of a checkpoint
+     * that failed is kept and the records are added to it.
+     *
+     * @throws IOException if the files cannot be moved or written
+     */
+    private void rotateLog() throws IOException {
+        log.close();
+        Path current = directory.resolve(LOG_FILE);
+        Path rotated = directory.resolve(ROTATED_LOG_FILE);
+        try {
+            if (Files.exists(rotated)) {
+                Files.write(rotated, Files.readAllBytes(current), StandardOpenOption.APPEND);
+                Files.delete(current);
+            } else {
+                Files.move(current, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            log = openLog();
+        }
+    }
+
+    /**
+     * Deletes the journal files once a crawl has finished, so the next run starts from scratch.
+     */
+    public synchronized void clear() {
+        pending.clear();
+        completed.clear();
+        generation++;
+        try {
+            log.close();
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+            Files.deleteIfExists(directory.resolve(ROTATED_LOG_FILE));
+            Files.deleteIfExists(directory.resolve(LOG_FILE));
+            log = openLog();
+            recordsSinceCheckpoint = 0;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while clearing the frontier journal: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes the log.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while closing the frontier journal: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Appends a record to the log. The record is flushed to the operating system right away, so it survives a
+     * crash of the JVM. Called under the monitor; the checkpoint, when one is due, is left to the caller, to run
+     * once the monitor is released.
+     *
+     * @param line the record to append
+     * @return true if a checkpoint is due
+     */
+    private boolean append(String line) {
+        try {
+            log.write(line);
+            log.newLine();
+            log.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "An error occurred while writing to the frontier journal: {0}", e.getMessage());
+        }
+        recordsSinceCheckpoint++;
+        return !checkpointing && (recordsSinceCheckpoint >= checkpointInterval
+                || Duration.between(lastCheckpoint, Instant.now()).compareTo(checkpointPeriod) >= 0);
+    }
+
+    /**
+     * Replays a snapshot or log file into the in-memory state. A truncated last line, left behind by a
+     * crash in the middle of a write, is ignored.
+     *
+     * @param file the file to replay
+     * @throws IOException if the file cannot be read
+     */
+    private void recover(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length == 3 && QUEUED.equals(parts[0])) {
+                    recoverQueued(parts[1], parts[2]);
+                } else if (parts.length == 2 && DONE.equals(parts[0])) {
+                    pending.remove(parts[1]);
+                    completed.add(parts[1]);
+                }
+            }
+        }
+    }
+
+    private void recoverQueued(String depthLevel, String url) {
+        try {
+            if (!completed.contains(url)) {
+                pending.putIfAbsent(url, Integer.parseInt(depthLevel));
+            }
+        } catch (NumberFormatException e) {
+            // Malformed record from an interrupted write.
+        }
+    }
+
+    private BufferedWriter openLog() throws IOException {
+        return Files.newBufferedWriter(directory.resolve(LOG_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+}
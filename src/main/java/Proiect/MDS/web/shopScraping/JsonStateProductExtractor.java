@@ -0,0 +1,339 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.models.Product;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Extracts the product details from the catalog state that VTEX storefronts embed in the page
+ * ({@code <template data-varname="__STATE__"><script>{...}</script></template>}), instead of from the rendered markup.
+ * <p>
+ * The state is a flat map of cache entries: the product ({@code Product:sp-ID}) refers to its specifications
+ * ({@code Product:sp-ID.properties.N}) and the price is in the commercial offer of its first SKU and seller
+ * ({@code $Product:sp-ID.items(...).0.sellers.0.commertialOffer}). It is read in a single pass with the Jackson
+ * streaming parser, skipping every other entry, and the product is the one whose {@code linkText} is the slug of
+ * the page URL. The category is the third level of its deepest category path, like the breadcrumb link the
+ * selectors read.
+ * <p>
+ * A page without a usable state (missing, malformed, or without the name or the price of the product) is handed to
+ * the fallback extractor, the CSS selectors by default.
+ */
+public class JsonStateProductExtractor implements ProductExtractor {
+    private static final Logger LOGGER = new AppLogger(JsonStateProductExtractor.class).getLogger();
+    private static final Evaluator STATE_SCRIPT = QueryParser.parse("template[data-varname=__STATE__] > script");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String PRODUCT_PREFIX = "Product:";
+    private static final String OFFER_PREFIX = "$Product:";
+    private static final String OFFER_SUFFIX = ".commertialOffer";
+    private static final String PROPERTIES_INFIX = ".properties.";
+    private static final int CATEGORY_LEVEL = 3;
+
+    private final ProductExtractor fallback;
+
+    /**
+     * Creates an extractor that falls back to a {@link FastProductExtractor}.
+     */
+    public JsonStateProductExtractor() {
+        this(new FastProductExtractor());
+    }
+
+    /**
+     * @param fallback the extractor used for the pages without a usable state
+     */
+    public JsonStateProductExtractor(ProductExtractor fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Optional<Product> extract(Document doc, String urlProduct) {
+        Element script = doc.selectFirst(STATE_SCRIPT);
+        if (script == null) {
+            LOGGER.log(Level.FINE, "No embedded state found, using the selectors for product at URL: " + urlProduct);
+            return fallback.extract(doc, urlProduct);
+        }
+
+        CatalogState state;
+        try {
+            state = CatalogState.read(stateJson(script));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Malformed embedded state, using the selectors for product at URL: " + urlProduct, e);
+            return fallback.extract(doc, urlProduct);
+        }
+
+        ProductEntry product = state.product(slug(urlProduct));
+        BigDecimal price = product == null ? null : state.price(product);
+        if (product == null || product.name == null || price == null) {
+            LOGGER.log(Level.FINE, "No product or price in the embedded state, using the selectors for product at URL: " + urlProduct);
+            return fallback.extract(doc, urlProduct);
+        }
+
+        Product.Builder builder = new Product.Builder()
+                .name(product.name)
+                .category(product.category)
+                .price(price);
+
+        for (String propertyId : product.propertyIds) {
+            String[] property = state.properties.get(propertyId);
+            BiConsumer<Product.Builder, String> setter = property == null ? null : SelectorProductExtractor.PROPERTY_SETTERS.get(property[0]);
+            if (setter != null) {
+                setter.accept(builder, property[1]);
+            }
+        }
+
+        return Optional.of(builder.build());
+    }
+
+    private static String stateJson(Element script) {
+        StringBuilder json = new StringBuilder();
+        for (DataNode data : script.dataNodes()) {
+            json.append(data.getWholeData());
+        }
+        return json.toString();
+    }
+
+    /**
+     * @param urlProduct the URL of a product page, {@code https://www.auchan.ro/<slug>/p}
+     * @return the slug of the product, or null if the URL has another form
+     */
+    static String slug(String urlProduct) {
+        int end = urlProduct.indexOf('?');
+        String path = end < 0 ? urlProduct : urlProduct.substring(0, end);
+        if (!path.endsWith("/p")) {
+            return null;
+        }
+        path = path.substring(0, path.length() - 2);
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * The product entry of the state, with the references to its specifications.
+     */
+    private static final class ProductEntry {
+        private final String key;
+        private final List<String> propertyIds = new ArrayList<>();
+        private String name;
+        private String linkText;
+        private String category = "";
+
+        private ProductEntry(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The entries of the state needed to build a product: products, specifications and offer prices.
+     */
+    private static final class CatalogState {
+        private final List<ProductEntry> products = new ArrayList<>();
+        // specification id -> {name, first value}
+        private final Map<String, String[]> properties = new HashMap<>();
+        // offer id without the leading '$' -> price, in document order
+        private final Map<String, BigDecimal> offers = new LinkedHashMap<>();
+
+        private static CatalogState read(String json) throws IOException {
+            CatalogState state = new CatalogState();
+            try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "The embedded state is not an object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.getCurrentName();
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                    } else if (key.startsWith(PRODUCT_PREFIX) && key.indexOf('.') < 0) {
+                        state.products.add(readProduct(parser, key));
+                    } else if (key.startsWith(PRODUCT_PREFIX) && key.contains(PROPERTIES_INFIX)) {
+                        state.properties.put(key, readProperty(parser));
+                    } else if (key.startsWith(OFFER_PREFIX) && key.endsWith(OFFER_SUFFIX)) {
+                        BigDecimal price = readPrice(parser);
+                        if (price != null) {
+                            state.offers.put(key.substring(1), price);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            return state;
+        }
+
+        /**
+         * @param slug the slug of the page URL, or null
+         * @return the product with that slug, the first product with specifications if no slug matches, or null
+         */
+        private ProductEntry product(String slug) {
+            ProductEntry first = null;
+            for (ProductEntry product : products) {
+                if (slug != null && slug.equals(product.linkText)) {
+                    return product;
+                }
+                if (first == null && !product.propertyIds.isEmpty()) {
+                    first = product;
+                }
+            }
+            return first;
+        }
+
+        /**
+         * @return the price of the first offer of the product, with at least the two decimals shown on the page
+         */
+        private BigDecimal price(ProductEntry product) {
+            String prefix = product.key + ".items(";
+            for (Map.Entry<String, BigDecimal> offer : offers.entrySet()) {
+                if (offer.getKey().startsWith(prefix)) {
+                    return displayPrice(offer.getValue());
+                }
+            }
+            return null;
+        }
+    }
+
+    private static ProductEntry readProduct(JsonParser parser, String key) throws IOException {
+        ProductEntry product = new ProductEntry(key);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "productName" -> product.name = parser.getValueAsString();
+                case "linkText" -> product.linkText = parser.getValueAsString();
+                case "categories" -> product.category = categoryLevel(readJsonValues(parser));
+                case "properties" -> {
+                    if (token == JsonToken.START_ARRAY) {
+                        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                            if (token != JsonToken.START_OBJECT) {
+                                parser.skipChildren();
+                                continue;
+                            }
+                            String id = readStringField(parser, "id");
+                            if (id != null) {
+                                product.propertyIds.add(id);
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return product;
+    }
+
+    private static String[] readProperty(JsonParser parser) throws IOException {
+        String name = null;
+        String value = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "name" -> name = parser.getValueAsString();
+                case "values" -> {
+                    List<String> values = readJsonValues(parser);
+                    value = values.isEmpty() ? "" : values.get(0);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new String[]{name, value};
+    }
+
+    private static BigDecimal readPrice(JsonParser parser) throws IOException {
+        BigDecimal price = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("Price") && token.isNumeric()) {
+                price = parser.getDecimalValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return price;
+    }
+
+    /**
+     * Reads a {@code {"type":"json","json":[...]}} value, positioned on its start.
+     *
+     * @return the scalar values of its array
+     */
+    private static List<String> readJsonValues(JsonParser parser) throws IOException {
+        List<String> values = new ArrayList<>(1);
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return values;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("json") && token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token.isScalarValue()) {
+                        values.add(parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads an object, positioned on its start, and returns one of its string fields.
+     */
+    private static String readStringField(JsonParser parser, String name) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals(name)) {
+                value = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param price a price of the catalog, e.g. {@code 7.5}
+     * @return the price with at least the two decimals shown on the page, e.g. {@code 7.50}
+     */
+    static BigDecimal displayPrice(BigDecimal price) {
+        return price.scale() < 2 ? price.setScale(2) : price;
+    }
+
+    /**
+     * @param paths the category paths of the product, the deepest first ({@code /Bacanie/Conserve/Conserve de legume/})
+     * @return the third level of the first path, or an empty string if it is not that deep
+     */
+    static String categoryLevel(List<String> paths) {
+        if (paths.isEmpty()) {
+            return "";
+        }
+        String[] levels = paths.get(0).split("/");
+        // the path starts with a '/', so levels[0] is empty
+        return levels.length > CATEGORY_LEVEL ? levels[CATEGORY_LEVEL].trim() : "";
+    }
+}
@@ -52,6 +52,15 @@ public class LogProductDetails {
         LOGGER.log(Level.INFO, "Product updated in database: {0}", productName);
     }
 
+    /**
+     * Logs the product that was not updated because its content did not change.
+     *
+     * @param productName The name of the unchanged product.
+     */
+    public static void logProductUnchanged(String productName) {
+        LOGGER.log(Level.INFO, "Product unchanged, not rewritten: {0}", productName);
+    }
+
     /**
      * Logs the product that was not updated due to not being eligible for update.
      *
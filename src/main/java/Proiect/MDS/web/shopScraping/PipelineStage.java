@@ -0,0 +1,308 @@
+package Proiect.MDS.web.shopScraping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One stage of a crawl pipeline: a fixed number of worker threads that take items from a bounded input queue,
+ * process them and emit their results to the next stage.
+ * <p>
+ * The queues are the backpressure of the pipeline: a worker that emits to a full queue blocks until the next stage
+ * catches up, so a fast stage (e.g. the sitemap readers) never runs further ahead of a slow one (e.g. the fetchers)
+ * than the capacity of the queue between them. Every stage counts the time its workers spend working, waiting for
+ * input and blocked on output, which tells which stage is the bottleneck: it is the one whose workers are busy
+ * while the stage before it is blocked on output and the stage after it waits for input.
+ * <p>
+ * When the input of a stage is {@linkplain #close() closed} its workers drain the queue and stop, and the last one
+ * to stop closes the next stage, so closing the first stage of a pipeline shuts it down from front to back.
+ *
+ * @param <I> the type of the items the stage takes
+ * @param <O> the type of the items the stage emits
+ */
+public final class PipelineStage<I, O> {
+    private static final Logger LOGGER = new AppLogger(PipelineStage.class).getLogger();
+    // put once per worker when the input is closed
+    private static final Object END = new Object();
+
+    /**
+     * Receives the results of a stage.
+     *
+     * @param <O> the type of the results
+     */
+    @FunctionalInterface
+    public interface Emitter<O> {
+        /**
+         * Hands a result to the next stage, blocking while its queue is full.
+         *
+         * @param item the result
+         * @throws InterruptedException if the thread is interrupted while blocked
+         */
+        void emit(O item) throws InterruptedException;
+    }
+
+    /**
+     * The work of a stage.
+     *
+     * @param <I> the type of the items the stage takes
+     * @param <O> the type of the items the stage emits
+     */
+    @FunctionalInterface
+    public interface Worker<I, O> {
+        /**
+         * Processes one item, emitting any number of results.
+         *
+         * @param item    the item to process
+         * @param emitter receives the results
+         * @throws Exception if the item cannot be processed; it is logged and counted as failed
+         */
+        void process(I item, Emitter<O> emitter) throws Exception;
+    }
+
+    private final String name;
+    private final int workers;
+    private final Worker<I, O> worker;
+    private final PipelineStage<O, ?> next;
+    private final BlockingQueue<Object> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong inputWaitNanos = new AtomicLong();
+    private final AtomicLong outputBlockedNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * @param name          the name of the stage, used for its threads and its statistics
+     * @param workers       the number of worker threads
+     * @param queueCapacity the capacity of the input queue
+     * @param worker        the work of the stage
+     * @param next          the stage the results are emitted to, or null for the last stage
+     */
+    public PipelineStage(String name, int workers, int queueCapacity, Worker<I, O> worker, PipelineStage<O, ?> next) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("A stage needs at least one worker and a queue capacity of at least one");
+        }
+        this.name = name;
+        this.workers = workers;
+        this.worker = worker;
+        this.next = next;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Starts the workers of this stage and of the stages after it.
+     */
+    public void start() {
+        if (next != null) {
+            next.start();
+        }
+        startNanos = System.nanoTime();
+        running.set(workers);
+        for (int i = 1; i <= workers; i++) {
+            Thread thread = new Thread(this::work, name + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Queues an item for this stage, blocking while the queue is full.
+     *
+     * @param item the item to process
+     * @throws InterruptedException if the thread is interrupted while blocked
+     */
+    public void submit(I item) throws InterruptedException {
+        queue.put(item);
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * Closes the input of this stage: the workers stop once the queued items are processed. Must be called once,
+     * after the last {@link #submit(Object)}.
+     *
+     * @throws InterruptedException if the thread is interrupted while queueing the end markers
+     */
+    public void close() throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            queue.put(END);
+        }
+    }
+
+    /**
+     * Waits until the workers of this stage and of the stages after it have stopped.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (next != null) {
+            next.await();
+        }
+    }
+
+    /**
+     * Interrupts the workers of this stage and of the stages after it, dropping the queued items.
+     */
+    public void abort() {
+        threads.forEach(Thread::interrupt);
+        if (next != null) {
+            next.abort();
+        }
+    }
+
+    private void work() {
+        Emitter<O> emitter = this::emit;
+        try {
+            while (true) {
+                long waitStart = System.nanoTime();
+                Object item = queue.take();
+                long workStart = System.nanoTime();
+                inputWaitNanos.addAndGet(workStart - waitStart);
+                if (item == END) {
+                    break;
+                }
+                process(item, emitter);
+                busyNanos.addAndGet(System.nanoTime() - workStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Pipeline stage {0} interrupted with {1} items queued", new Object[]{name, queue.size()});
+        } finally {
+            if (running.decrementAndGet() == 0) {
+                endNanos = System.nanoTime();
+                closeNext();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process(Object item, Emitter<O> emitter) throws InterruptedException {
+        try {
+            worker.process((I) item, emitter);
+            processed.incrementAndGet();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.SEVERE, "Pipeline stage {0} failed to process {1}: {2}", new Object[]{name, item, e.getMessage()});
+        }
+    }
+
+    private void emit(O item) throws InterruptedException {
+        if (next == null) {
+            return;
+        }
+        long blockStart = System.nanoTime();
+        next.submit(item);
+        // the blocked time is counted as output, not as work
+        long blocked = System.nanoTime() - blockStart;
+        outputBlockedNanos.addAndGet(blocked);
+        busyNanos.addAndGet(-blocked);
+        emitted.incrementAndGet();
+    }
+
+    private void closeNext() {
+        if (next == null) {
+            return;
+        }
+        try {
+            next.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            next.abort();
+        }
+    }
+
+    /**
+     * @return the name of the stage
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the stage the results are emitted to, or null for the last stage
+     */
+    public PipelineStage<O, ?> getNext() {
+        return next;
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return the number of items processed without an error
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return the number of items whose processing threw an exception
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of results handed to the next stage
+     */
+    public long getEmitted() {
+        return emitted.get();
+    }
+
+    /**
+     * @return the largest number of items seen waiting in the input queue
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the total time the workers spent blocked because the queue of the next stage was full, in nanoseconds
+     */
+    public long getOutputBlockedNanos() {
+        return outputBlockedNanos.get();
+    }
+
+    /**
+     * @return the total time the workers spent waiting for input, in nanoseconds
+     */
+    public long getInputWaitNanos() {
+        return inputWaitNanos.get();
+    }
+
+    /**
+     * @return the share of the worker time spent processing items (not waiting for input nor blocked on output),
+     * between 0 and 1
+     */
+    public double getUtilization() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        long available = (end - startNanos) * workers;
+        return available <= 0 ? 0 : Math.min(1, Math.max(0, (double) busyNanos.get() / available));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[workers=%d, processed=%d, failed=%d, max queued=%d, busy=%.0f%%, input wait=%d ms, output blocked=%d ms]",
+                name, workers, processed.get(), failed.get(), maxQueueDepth.get(), 100 * getUtilization(),
+                inputWaitNanos.get() / 1_000_000, outputBlockedNanos.get() / 1_000_000);
+    }
+}
@@ -1,16 +1,19 @@
 package Proiect.MDS.web.shopScraping;
 
 import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.ProductSink;
 import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.shopScraping.fetch.FetchedPage;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
 import org.javatuples.Pair;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,19 +21,97 @@ import java.util.logging.Logger;
  * Class responsible for crawling through webpages to retrieve product data.
  */
 public class ProductCrawler {
-    private static final Set<String> visitedURLs = new HashSet<>();
     private static final Logger LOGGER = new AppLogger(ProductCrawler.class).getLogger();
+    private static final int UNCHANGED_BATCH_SIZE = 500;
     private static final String[] crawlingURLs = new String[]{"https://www.auchan.ro/brutarie-cofetarie-gastro/c", "https://www.auchan.ro/bacanie/c", "https://www.auchan.ro/lactate-carne-mezeluri---peste/c", "https://www.auchan.ro/fructe-si-legume/c"};
 
     private final ShopScraper shopScraper;
     private final ProductScraper productScraper;
     private final ProductTableOperations pto;
+    private final PageFetcher pageFetcher;
+    private final ProductSink productSink;
+    private final VisitedUrlSet visitedURLs = new FingerprintVisitedUrlSet();
+    private final Queue<Integer> unchangedProductIds = new ConcurrentLinkedQueue<>();
+    private volatile DeadLetterQueue deadLetterQueue;
 
 
     public ProductCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto) {
+        this(shopScraper, productScraper, pto, ShopScraper.getPageFetcher());
+    }
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param pageFetcher    the fetcher used to download every page
+     */
+    public ProductCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                          PageFetcher pageFetcher) {
+        this(shopScraper, productScraper, pto, pageFetcher, new DirectProductSink(pto));
+    }
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations, used to look up existing products
+     * @param pageFetcher    the fetcher used to download every page
+     * @param productSink    the sink the new and changed products are written to
+     */
+    public ProductCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                          PageFetcher pageFetcher, ProductSink productSink) {
         this.shopScraper = shopScraper;
         this.productScraper = productScraper;
         this.pto = pto;
+        this.pageFetcher = pageFetcher;
+        this.productSink = productSink;
+    }
+
+    /**
+     * Records the product URLs that fail in a dead-letter queue, so they can be retried with
+     * {@link #retryFailedUrl(String)} instead of waiting for the next full crawl.
+     *
+     * @param deadLetterQueue the queue of failed URLs, or null to only log the failures
+     */
+    public void setDeadLetterQueue(DeadLetterQueue deadLetterQueue) {
+        this.deadLetterQueue = deadLetterQueue;
+    }
+
+    /**
+     * Fetches a product URL from the dead-letter queue again and processes its product.
+     *
+     * @param url the product URL that failed before
+     * @throws IOException if the page cannot be fetched
+     */
+    public void retryFailedUrl(String url) throws IOException {
+        FetchedPage page = fetchPage(url);
+        if (!page.isNotModified() && ShopScraper.checkATagsForHref(page.getDocument())) {
+            processProduct(page.getDocument(), url);
+        }
+    }
+
+    /**
+     * Adds a product URL that could not be fetched to the dead-letter queue, if the crawler has one.
+     *
+     * @param url the product URL
+     * @param e   the error
+     */
+    void recordFailure(String url, Exception e) {
+        DeadLetterQueue queue = deadLetterQueue;
+        if (queue != null) {
+            queue.recordFailure(url, e);
+        }
+    }
+
+    /**
+     * Removes a product URL that was fetched successfully from the dead-letter queue, if it failed before.
+     *
+     * @param url the product URL
+     */
+    void resolveFailure(String url) {
+        DeadLetterQueue queue = deadLetterQueue;
+        if (queue != null) {
+            queue.resolve(url);
+        }
     }
 
     /**
@@ -39,9 +120,55 @@ public class ProductCrawler {
     public void getProductsAuchan() {
         Queue<Pair<Integer, String>> queue = initializeURLQueue();
         startCrawling(queue);
+        flushWrites();
     }
 
 
+    /**
+     * Downloads a page through the fetcher of this crawler.
+     *
+     * @param url the URL to fetch
+     * @return the HTML document
+     * @throws IOException if an I/O error occurs
+     */
+    Document fetch(String url) throws IOException {
+        return pageFetcher.fetch(url);
+    }
+
+    /**
+     * Downloads a page through the fetcher of this crawler, telling whether it changed since the last crawl.
+     *
+     * @param url the URL to fetch
+     * @return the fetched page
+     * @throws IOException if an I/O error occurs
+     */
+    FetchedPage fetchPage(String url) throws IOException {
+        return pageFetcher.fetchPage(url);
+    }
+
+    /**
+     * @return the fetcher used to download every page
+     */
+    PageFetcher getPageFetcher() {
+        return pageFetcher;
+    }
+
+    /**
+     * @return the product table operations, used to look up existing products
+     */
+    ProductTableOperations getProductTable() {
+        return pto;
+    }
+
+    /**
+     * Returns the category URLs the crawl starts from.
+     *
+     * @return the start URLs
+     */
+    static List<String> getCrawlingURLs() {
+        return List.of(crawlingURLs);
+    }
+
     /**
      * Initializes the URL queue with the start URLs.
      *
@@ -107,7 +234,7 @@ public class ProductCrawler {
         String url = urlPair.getValue1();
         if (ShopScraper.isValidURL(url)) {
             System.out.println("Processing valid URL: " + urlPair.getValue1());
-            Document doc = ShopScraper.connectToURL(url);
+            Document doc = fetch(url);
             Elements links = doc.select("a[href]");
             processLinks(queue, urlPair.getValue0(), links);
         }
@@ -123,7 +250,7 @@ public class ProductCrawler {
      * @param links      The collection of links to process.
      */
     private void processLinks(Queue<Pair<Integer, String>> queue, int depthLevel, Elements links) throws IOException {
-        for (String absHref : links.stream().map(link -> link.attr("abs:href")).toList()) {
+        for (String absHref : canonicalLinks(links)) {
             if (shouldProcessLink(absHref)) {
                 processLink(queue, depthLevel, absHref);
             }
@@ -133,56 +260,89 @@ public class ProductCrawler {
     }
 
 
+    /**
+     * Canonicalizes the links of a page, dropping the ones that are not http(s) URLs.
+     *
+     * @param links The links of a page.
+     * @return the canonical URLs of the links, in page order, with duplicates
+     */
+    static List<String> canonicalLinks(Elements links) {
+        List<String> urls = new ArrayList<>(links.size());
+        for (Element link : links) {
+            String url = UrlCanonicalizer.canonicalize(link.attr("abs:href"));
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
     /**
      * Processes a link by logging it, checking if it leads to a product page, and adding it to the visited URLs.
+     * The product page is downloaded once and the same document is used both for the check and for the extraction.
+     * A page the server reports as not modified since the last crawl is queued without being extracted again.
+     * A product page that cannot be fetched goes to the dead-letter queue and the other links are still processed.
      *
      * @param queue      The queue to which the link will be added.
      * @param depthLevel The depth level of the link in the crawl hierarchy.
      * @param absHref    The absolute URL of the link.
-     * @throws IOException If an I/O error occurs.
      */
-    private void processLink(Queue<Pair<Integer, String>> queue, int depthLevel, String absHref) throws IOException {
+    private void processLink(Queue<Pair<Integer, String>> queue, int depthLevel, String absHref) {
         System.out.println("Processing link: " + absHref);
         //logLink(depthLevel, absHref);
-        if (processIfProductPage(absHref)) {
-            processProduct(absHref);
+        Optional<FetchedPage> productPage;
+        Document doc;
+        try {
+            productPage = fetchIfProductPage(absHref);
+            doc = productPage.isPresent() ? productPage.get().getDocument() : null;
+        } catch (IOException e) {
+            handleIOException(e);
+            recordFailure(absHref, e);
+            return;
+        }
+        if (productPage.isPresent()) {
+            resolveFailure(absHref);
+            if (productPage.get().isNotModified()) {
+                System.out.println("Product not modified: " + absHref);
+            } else {
+                processProduct(doc, absHref);
+            }
             queue.add(new Pair<>(depthLevel + 1, absHref));
         }
     }
 
     /**
-     * Connects to a URL if it leads to a product page and processes it as such.
+     * Connects to a URL if it leads to a product page and returns the page if the product is relevant.
      *
      * @param absHref The absolute URL of the link.
+     * @return the product page, or empty if the URL is not a relevant product page
      * @throws IOException If an I/O error occurs.
      */
-    private boolean processIfProductPage(String absHref) throws IOException {
+    private Optional<FetchedPage> fetchIfProductPage(String absHref) throws IOException {
         System.out.println("Checking if product page: " + absHref);
         if (!isProductPage(absHref)) {
             System.out.println("Not a product page: " + absHref);
-            return false;
+            return Optional.empty();
         }
         System.out.println("Product page found: " + absHref);
-        Document doc = ShopScraper.connectToURL(absHref);
-        if (!ShopScraper.checkATagsForHref(doc)) {
+        FetchedPage page = fetchPage(absHref);
+        if (!ShopScraper.checkATagsForHref(page.getDocument())) {
             System.out.println("Useless product: " + absHref);
-            return false;
+            return Optional.empty();
         }
         System.out.println("Product found !!! " + absHref);
-        return true;
+        return Optional.of(page);
     }
 
 
     /**
-     * Determines if a URL should be processed based on its validity and visited status.
+     * Determines if a URL should be processed based on its visited status.
      *
-     * @param absHref The absolute URL to be checked.
-     * @return true if the URL is valid and has not been visited; false otherwise.
+     * @param absHref The canonical URL to be checked.
+     * @return true if the URL has not been visited; false otherwise.
      */
     private boolean shouldProcessLink(String absHref) {
-        boolean shouldProcess = ShopScraper.isValidURL(absHref) && !visitedURLs.contains(absHref);
-        visitedURLs.add(absHref);
-        return shouldProcess;
+        return visitedURLs.add(absHref);
     }
 
 
@@ -202,55 +362,119 @@ public class ProductCrawler {
      * @param absHref The absolute URL to be checked.
      * @return true if the URL is a product page; false otherwise.
      */
-    private boolean isProductPage(String absHref) {
-        return absHref.matches(".*/p#?$");
+    boolean isProductPage(String absHref) {
+        return UrlCanonicalizer.isProductPage(absHref);
     }
 
     /**
-     * Processes the product page, either updating the existing product or inserting a new one.
+     * Processes an already downloaded product page, either updating the existing product or inserting a new one.
      *
+     * @param doc     The HTML document of the product page.
      * @param absHref The absolute URL of the product page.
+     * @return the product scraped from the page, or empty if no product could be extracted
      */
-    void processProduct(String absHref) {
+    Optional<Product> processProduct(Document doc, String absHref) {
         try {
-            Optional<Product> optionalProduct = productScraper.getProductDetails(shopScraper, absHref);
-            if (optionalProduct.isPresent()) {
-                Product product = optionalProduct.get();
-                Product existingProduct = pto.getProductByName(product.getName());
-
-                if (existingProduct != null) {
-                    processExistingProduct(product, existingProduct);
-                } else {
-                    insertNewProduct(product);
-                }
-            }
+            Optional<Product> optionalProduct = productScraper.getProductDetails(doc, absHref);
+            optionalProduct.ifPresent(this::persistProduct);
+            return optionalProduct;
         } catch (Exception ex) {
             LOGGER.log(Level.SEVERE, ex, () -> "An error occurred while processing the product: " + absHref);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Extracts the product of an already downloaded page without writing it, so the extraction and the
+     * {@linkplain #persistProduct(Product) persistence} can run on different threads.
+     *
+     * @param doc     The HTML document of the product page.
+     * @param absHref The absolute URL of the product page.
+     * @return the product scraped from the page, or empty if no product could be extracted
+     */
+    Optional<Product> extractProduct(Document doc, String absHref) {
+        try {
+            return productScraper.getProductDetails(doc, absHref);
+        } catch (Exception ex) {
+            LOGGER.log(Level.SEVERE, ex, () -> "An error occurred while extracting the product: " + absHref);
+            return Optional.empty();
         }
     }
 
     /**
-     * Handles the product if it exists in the database.
+     * Writes a scraped product through the persistence path of the crawl: an existing product is updated
+     * if its content changed and marked as seen otherwise, a new product is inserted.
+     *
+     * @param product The product scraped from the shop.
+     */
+    void persistProduct(Product product) {
+        Product existingProduct = pto.getProductByName(product.getName());
+
+        if (existingProduct != null) {
+            processExistingProduct(product, existingProduct);
+        } else {
+            insertNewProduct(product);
+        }
+    }
+
+    /**
+     * Handles the product if it exists in the database. The product is only rewritten if its content
+     * fingerprint differs from the stored one; an unchanged product is just marked as seen, in bulk.
      *
      * @param product         The product fetched from the website.
      * @param existingProduct The product fetched from the database.
      */
     private void processExistingProduct(Product product, Product existingProduct) {
         try {
-            LocalDateTime lastModified = existingProduct.getLastModified();
-            LocalDateTime now = LocalDateTime.now(ZoneId.of("Europe/Paris"));
-            long hoursElapsed = Duration.between(lastModified, now).toHours();
-
-            if (hoursElapsed >= 12) {
-                updateProduct(product);
-            } else {
-                LogProductDetails.logProductNotEligibleForUpdate(product.getName());
+            if (product.computeContentHash().equals(existingProduct.getContentHash())) {
+                LogProductDetails.logProductUnchanged(product.getName());
+                markUnchanged(existingProduct.getId());
+                return;
             }
+            product.setId(existingProduct.getId());
+            updateProduct(product);
         } catch (Exception ex) {
             LOGGER.log(Level.SEVERE, ex, () -> "An error occurred while processing an existing product: " + product.getName());
         }
     }
 
+    /**
+     * Buffers the id of a product that was seen unchanged and touches the buffered products once
+     * {@value #UNCHANGED_BATCH_SIZE} of them are waiting.
+     *
+     * @param productId The id of the unchanged product.
+     */
+    private void markUnchanged(int productId) {
+        unchangedProductIds.add(productId);
+        if (unchangedProductIds.size() >= UNCHANGED_BATCH_SIZE) {
+            touchUnchangedProducts();
+        }
+    }
+
+    /**
+     * Waits until the product sink has written every product of the crawl and touches the remaining
+     * unchanged products. Called at the end of a crawl.
+     */
+    void flushWrites() {
+        productSink.flush();
+        touchUnchangedProducts();
+    }
+
+    /**
+     * Sets the last_seen timestamp of every buffered unchanged product with a single statement per chunk.
+     */
+    private void touchUnchangedProducts() {
+        List<Integer> ids = new ArrayList<>();
+        Integer id;
+        while ((id = unchangedProductIds.poll()) != null) {
+            ids.add(id);
+        }
+        if (!ids.isEmpty()) {
+            int touched = pto.touchProducts(ids);
+            LOGGER.log(Level.INFO, "Marked {0} unchanged products as seen", touched);
+        }
+    }
+
     /**
      * Inserts a new product to the database.
      *
@@ -258,8 +482,9 @@ public class ProductCrawler {
      */
     private void insertNewProduct(Product product) {
         try {
-            pto.insertProduct(product);
-            LogProductDetails.logProductInsertion(product.getName());
+            if (productSink.insert(product)) {
+                LogProductDetails.logProductInsertion(product.getName());
+            }
         } catch (Exception ex) {
             LOGGER.log(Level.SEVERE, ex, () -> "An error occurred while inserting a new product: " + product.getName());
         }
@@ -272,7 +497,7 @@ public class ProductCrawler {
      */
     private void updateProduct(Product product) {
         try {
-            pto.updateProduct(product);
+            productSink.update(product);
             LogProductDetails.logProductUpdate(product.getName());
         } catch (Exception ex) {
             LOGGER.log(Level.SEVERE, ex, () -> "An error occurred while updating a product: " + product.getName());
@@ -0,0 +1,19 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.models.Product;
+import org.jsoup.nodes.Document;
+
+import java.util.Optional;
+
+/**
+ * Extracts the product details from a downloaded product page.
+ */
+public interface ProductExtractor {
+
+    /**
+     * @param doc        the HTML document of the product page
+     * @param urlProduct the URL the document was retrieved from, used for logging
+     * @return a Product containing the product's details, or empty if the name or price is missing
+     */
+    Optional<Product> extract(Document doc, String urlProduct);
+}
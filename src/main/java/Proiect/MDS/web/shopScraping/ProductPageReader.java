@@ -0,0 +1,124 @@
+package Proiect.MDS.web.shopScraping;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads a product page incrementally and stops as soon as the blocks the extractors need have been received,
+ * so the rest of the page (related products, footer, embedded scripts) is neither downloaded nor parsed.
+ * <p>
+ * VTEX product pages show the breadcrumb, the name, the price and then the specifications table. The body is
+ * scanned for their class markers while it arrives and the reading stops at the end of the specifications table,
+ * once the name and the price have been seen. Only that prefix is parsed; Jsoup closes the elements that are
+ * still open. A page with another layout is read to the end, so it is extracted like a full page. No page is
+ * read past {@code maxBodyBytes}: the part received until then is parsed and a warning is logged.
+ */
+public class ProductPageReader {
+    private static final Logger LOGGER = new AppLogger(ProductPageReader.class).getLogger();
+    public static final int DEFAULT_MAX_BODY_BYTES = 2 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final String NAME_MARKER = "vtex-store-components-3-x-productBrand--productPage";
+    private static final String PRICE_MARKER = "vtex-product-price-1-x-currencyContainer--pdp";
+    private static final String SPECIFICATIONS_MARKER = "vtex-product-specifications-1-x-specificationsTable";
+    private static final String TABLE_END_MARKER = "</table>";
+
+    private final int maxBodyBytes;
+
+    /**
+     * Creates a reader that reads at most {@value #DEFAULT_MAX_BODY_BYTES} bytes per page.
+     */
+    public ProductPageReader() {
+        this(DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param maxBodyBytes the maximum number of bytes read from a page
+     */
+    public ProductPageReader(int maxBodyBytes) {
+        if (maxBodyBytes < 1) {
+            throw new IllegalArgumentException("maxBodyBytes must be at least 1");
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Reads the product blocks of a page and parses them. The stream is closed before returning, which aborts
+     * the download of the rest of the page. The charset is detected from the page, UTF-8 by default.
+     *
+     * @param body       the response body of the product page
+     * @param urlProduct the URL of the page, used as base URI
+     * @return the document made of the product blocks of the page
+     * @throws IOException if the body cannot be read
+     */
+    public Document read(InputStream body, String urlProduct) throws IOException {
+        byte[] buffer = new byte[Math.min(INITIAL_BUFFER_BYTES, maxBodyBytes)];
+        int length = 0;
+        ProductBlocks blocks = new ProductBlocks();
+        try (body) {
+            while (!blocks.complete) {
+                if (length == buffer.length) {
+                    if (length == maxBodyBytes) {
+                        LOGGER.log(Level.WARNING, "Product page larger than {0} bytes, extracting the first part only: {1}",
+                                new Object[]{maxBodyBytes, urlProduct});
+                        break;
+                    }
+                    buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, maxBodyBytes));
+                }
+                int read = body.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+                length = blocks.scan(buffer, length);
+            }
+        }
+        return Jsoup.parse(new ByteArrayInputStream(buffer, 0, length), null, urlProduct);
+    }
+
+    /**
+     * Follows the product blocks through the bytes received so far.
+     */
+    private static final class ProductBlocks {
+        // the markers may be split between two reads, so every scan restarts a marker length earlier
+        private static final int OVERLAP = SPECIFICATIONS_MARKER.length();
+        private int scanned;
+        private boolean name;
+        private boolean price;
+        private int specifications = -1;
+        private boolean complete;
+
+        /**
+         * @param buffer the bytes received so far
+         * @param length the number of bytes received
+         * @return the number of bytes to keep: everything, or the bytes up to the end of the specifications table
+         */
+        private int scan(byte[] buffer, int length) {
+            int from = Math.max(0, scanned - OVERLAP);
+            // the markers are ASCII, so a Latin-1 view of the bytes finds them in any ASCII-compatible charset
+            String window = new String(buffer, from, length - from, StandardCharsets.ISO_8859_1);
+            name = name || window.contains(NAME_MARKER);
+            price = price || window.contains(PRICE_MARKER);
+            if (specifications < 0 && name && price) {
+                int index = window.indexOf(SPECIFICATIONS_MARKER);
+                specifications = index < 0 ? -1 : from + index;
+            }
+            scanned = length;
+            if (specifications >= 0) {
+                int end = window.indexOf(TABLE_END_MARKER, Math.max(specifications - from, 0));
+                if (end >= 0) {
+                    complete = true;
+                    return from + end + TABLE_END_MARKER.length();
+                }
+            }
+            return length;
+        }
+    }
+}
@@ -1,18 +1,12 @@
 package Proiect.MDS.web.shopScraping;
 
 import Proiect.MDS.web.models.Product;
-
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,9 +14,9 @@ import java.util.logging.Logger;
  * ProductScraper is responsible for scraping product details from a given URL. It employs JSoup library
  * for HTML parsing and extraction of elements.
  * <p>
- * It makes use of {@link ShopScraper} to connect to the URL and retrieve the HTML document. It then
- * parses the document to extract the product details and uses the {@link Product.Builder} to construct
- * a Product instance which encapsulates the product details.
+ * It makes use of a {@link PageFetcher} to connect to the URL and retrieve the HTML document. It then
+ * hands the document to a {@link ProductExtractor}, by default the {@link FastProductExtractor}, which
+ * uses the {@link Product.Builder} to construct a Product instance which encapsulates the product details.
  *
  * @author Dragonul
  * @version 1.0
@@ -31,24 +25,74 @@ import java.util.logging.Logger;
 public class ProductScraper {
     private static final Logger LOGGER = new AppLogger(ProductScraper.class).getLogger();
 
-    private static final Map<String, BiConsumer<Product.Builder, String>> propertySetters = new HashMap<>();
+    private final PageFetcher pageFetcher;
+    private final ProductExtractor extractor;
+    private final ProductPageReader pageReader = new ProductPageReader();
+
+    /**
+     * Creates a scraper that downloads pages through the application-wide {@link ShopScraper#getPageFetcher() fetcher}.
+     */
+    public ProductScraper() {
+        this(ShopScraper.getPageFetcher());
+    }
+
+    /**
+     * @param pageFetcher the fetcher used to download product pages
+     */
+    public ProductScraper(PageFetcher pageFetcher) {
+        this(pageFetcher, new FastProductExtractor());
+    }
+
+    /**
+     * @param pageFetcher the fetcher used to download product pages
+     * @param extractor   the extractor that reads the product details from a page
+     */
+    public ProductScraper(PageFetcher pageFetcher, ProductExtractor extractor) {
+        this.pageFetcher = pageFetcher;
+        this.extractor = extractor;
+    }
+
+    /**
+     * Downloads the product page through the fetcher of this scraper and retrieves the product details.
+     *
+     * @param urlProduct the URL of the product to scrape details from
+     * @return a Product containing the product's details, or empty if the page cannot be fetched or parsed
+     */
+    public Optional<Product> getProductDetails(String urlProduct) {
+        try {
+            return getProductDetails(pageFetcher.fetch(urlProduct), urlProduct);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Streaming extraction mode: downloads only the product blocks of the page, stopping as soon as they have
+     * been received (see {@link ProductPageReader}), and extracts the product from them. The document is
+     * dropped as soon as the product is built.
+     *
+     * @param urlProduct the URL of the product to scrape details from
+     * @return a Product containing the product's details, or empty if the page cannot be fetched or parsed
+     */
+    public Optional<Product> streamProductDetails(String urlProduct) {
+        try {
+            return getProductDetails(readProductBlocks(urlProduct), urlProduct);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage());
+            return Optional.empty();
+        }
+    }
 
-    // This static block initializes the propertySetters map with corresponding BiConsumer instances.
-    static {
-        propertySetters.put("Tip Produs", Product.Builder::productType);
-        propertySetters.put("Specialitate", Product.Builder::speciality);
-        propertySetters.put("Conditii de pastrare", Product.Builder::storageConditions);
-        propertySetters.put("Greutate", (builder, value) -> builder.weight(new BigDecimal(value)));
-        propertySetters.put("Termen de valabilitate", Product.Builder::shelfLife);
-        propertySetters.put("Ingrediente", Product.Builder::ingredients);
-        propertySetters.put("Kcal pe 100g sau 100ml", (builder, value) -> builder.kcalPer100g(new BigDecimal(value)));
-        propertySetters.put("KJ pe 100g sau 100ml", (builder, value) -> builder.kjPer100g(new BigDecimal(value)));
-        propertySetters.put("Grasimi (g sau ml)", (builder, value) -> builder.fats(new BigDecimal(value)));
-        propertySetters.put("Acizi grasi saturati (g sau ml)", (builder, value) -> builder.saturatedFats(new BigDecimal(value)));
-        propertySetters.put("Glucide (g sau ml)", (builder, value) -> builder.carbohydrates(new BigDecimal(value)));
-        propertySetters.put("Zaharuri (g sau ml)", (builder, value) -> builder.sugars(new BigDecimal(value)));
-        propertySetters.put("Sare (g sau ml)", (builder, value) -> builder.salt(new BigDecimal(value)));
-        propertySetters.put("Proteine (g sau ml)", (builder, value) -> builder.proteins(new BigDecimal(value)));
+    /**
+     * Downloads the product blocks of a product page, without the rest of the page.
+     *
+     * @param urlProduct the URL of the product page
+     * @return the document made of the product blocks
+     * @throws IOException if the page cannot be fetched
+     */
+    private Document readProductBlocks(String urlProduct) throws IOException {
+        return pageReader.read(pageFetcher.openResource(urlProduct), urlProduct);
     }
 
     /**
@@ -63,35 +107,24 @@ public class ProductScraper {
     public Optional<Product> getProductDetails(ShopScraper scraper, String urlProduct) {
         try {
             Document doc = scraper.connectToURL(urlProduct);
-            Elements category = ShopScraper.getAuchanProductCategory(doc);
-            Elements name = ShopScraper.getAuchanProductName(doc);
-            String priceString = ShopScraper.getAuchanProductPriceToString(ShopScraper.getAuchanProductPrice(doc));
-            Elements properties = ShopScraper.getAuchanProductProperties(doc);
-
-            if (name.isEmpty() || priceString.isEmpty()) {
-                LOGGER.log(Level.WARNING, "No name or price found for product at URL: " + urlProduct);
-                return Optional.empty();
-            }
-
-            Product.Builder builder = new Product.Builder()
-                    .name(name.get(0).text())
-                    .category(category.text())
-                    .price(new BigDecimal(priceString));
-
-            for (Element property : properties) {
-                String propertyName = property.attr("data-specification-name");
-                String propertyValue = property.attr("data-specification-value");
-
-                if (propertySetters.containsKey(propertyName)) {
-                    propertySetters.get(propertyName).accept(builder, propertyValue);
-                }
-            }
-
-            return Optional.of(builder.build());
+            return getProductDetails(doc, urlProduct);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, e.getMessage());
             return Optional.empty();
         }
     }
 
+    /**
+     * Extracts product details such as category, name, price, and other properties from an already
+     * downloaded product page, with the {@link ProductExtractor} of this scraper. Crawlers that fetched
+     * the page to classify it pass the document straight here, so the page is not downloaded a second time.
+     *
+     * @param doc        the HTML document of the product page
+     * @param urlProduct the URL the document was retrieved from, used for logging
+     * @return a Product containing the product's details, or empty if the name or price is missing
+     */
+    public Optional<Product> getProductDetails(Document doc, String urlProduct) {
+        return extractor.extract(doc, urlProduct);
+    }
+
 }
\ No newline at end of file
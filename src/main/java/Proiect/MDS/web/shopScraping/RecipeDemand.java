@@ -0,0 +1,66 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.models.CrawlUrl;
+import Proiect.MDS.web.models.Recipe;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the product URLs the recipes depend on, so the recrawl can keep them fresher than the rest of the catalog.
+ * <p>
+ * A recipe is priced from its ingredient names ({@link Recipe#ingredientTokens()}): every name resolves to the
+ * cheapest product whose name starts with it, ignoring case and diacritics the way the {@code utf8mb4_0900_ai_ci}
+ * collation of the products table does, so "Faina" resolves to "F&#259;in&#259; alb&#259;". Every product matching
+ * the prefix is demanded, not only the current cheapest one, since a price change of any of them can change which
+ * product the recipe is priced from. The product names come from the crawl_urls table, so the demanded products map straight to URLs.
+ */
+public final class RecipeDemand {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private RecipeDemand() {
+    }
+
+    /**
+     * @param recipes   the recipes
+     * @param crawlUrls the crawled URLs, with the name of the product found at each one
+     * @return the URLs of the products the ingredients of the recipes resolve to
+     */
+    public static Set<String> demandedUrls(Collection<Recipe> recipes, Collection<CrawlUrl> crawlUrls) {
+        // normalized product name -> URLs, sorted so that the names with a given prefix form a range
+        TreeMap<String, List<String>> urlsByName = new TreeMap<>();
+        for (CrawlUrl crawlUrl : crawlUrls) {
+            if (crawlUrl.getProductName() != null) {
+                urlsByName.computeIfAbsent(normalize(crawlUrl.getProductName()), name -> new ArrayList<>(1)).add(crawlUrl.getUrl());
+            }
+        }
+
+        Set<String> demanded = new HashSet<>();
+        Set<String> ingredients = new HashSet<>();
+        for (Recipe recipe : recipes) {
+            for (String ingredient : recipe.ingredientTokens()) {
+                String prefix = normalize(ingredient);
+                if (ingredients.add(prefix)) {
+                    urlsByName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values().forEach(demanded::addAll);
+                }
+            }
+        }
+        return demanded;
+    }
+
+    /**
+     * @param name a product or ingredient name
+     * @return the name in lower case, without diacritics
+     */
+    private static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
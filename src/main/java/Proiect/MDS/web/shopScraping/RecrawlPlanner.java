@@ -0,0 +1,181 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.models.CrawlUrl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Decides which sitemap URLs need to be fetched during an incremental recrawl.
+ * <p>
+ * A URL is scheduled when it was never crawled, when the sitemap reports a newer {@code <lastmod>} than
+ * the one stored at the last crawl, or when the last crawl is older than the maximum age. The URLs in
+ * demand (e.g. the products recipes are priced from, see {@link RecipeDemand}) have a second, shorter
+ * maximum age. Every other URL is skipped. Scheduled URLs are handed out from a priority queue: new URLs
+ * first, then changed ones, then the demanded ones, then stale ones, and within each group the URL that has
+ * gone the longest without a crawl first.
+ */
+public class RecrawlPlanner {
+    /**
+     * The zone used for the timestamps stored in the database, matching {@link ProductCrawler}.
+     */
+    public static final ZoneId CRAWL_ZONE = ZoneId.of("Europe/Paris");
+
+    /**
+     * Why a URL was scheduled, in priority order.
+     */
+    public enum Reason {
+        NEW,
+        CHANGED,
+        DEMANDED,
+        STALE
+    }
+
+    /**
+     * A URL scheduled for recrawl.
+     *
+     * @param url                 the URL to fetch
+     * @param sitemapLastModified the {@code <lastmod>} of the sitemap entry in the crawl zone, or null
+     * @param reason              why the URL was scheduled
+     * @param staleness           how long the URL has gone without a crawl
+     */
+    public record Candidate(String url, LocalDateTime sitemapLastModified, Reason reason, Duration staleness) {
+    }
+
+    private static final Comparator<Candidate> PRIORITY = Comparator
+            .comparing(Candidate::reason)
+            .thenComparing(Candidate::staleness, Comparator.reverseOrder());
+
+    private final Map<String, CrawlUrl> knownUrls;
+    private final Duration maxAge;
+    private final Set<String> demandedUrls;
+    private final Duration demandedMaxAge;
+    private final LocalDateTime now;
+    private final PriorityQueue<Candidate> queue = new PriorityQueue<>(PRIORITY);
+    private int skipped;
+    private int demanded;
+
+    /**
+     * @param knownUrls the freshness information stored for previously crawled URLs
+     * @param maxAge    the age after which an unchanged URL is crawled again anyway
+     * @param now       the current time in {@link #CRAWL_ZONE}
+     */
+    public RecrawlPlanner(Map<String, CrawlUrl> knownUrls, Duration maxAge, LocalDateTime now) {
+        this(knownUrls, maxAge, Set.of(), maxAge, now);
+    }
+
+    /**
+     * @param knownUrls      the freshness information stored for previously crawled URLs
+     * @param maxAge         the age after which an unchanged URL is crawled again anyway
+     * @param demandedUrls   the URLs kept fresher than the rest
+     * @param demandedMaxAge the age after which an unchanged demanded URL is crawled again, shorter than {@code maxAge}
+     * @param now            the current time in {@link #CRAWL_ZONE}
+     */
+    public RecrawlPlanner(Map<String, CrawlUrl> knownUrls, Duration maxAge, Set<String> demandedUrls, Duration demandedMaxAge,
+                          LocalDateTime now) {
+        this.knownUrls = knownUrls;
+        this.maxAge = maxAge;
+        this.demandedUrls = demandedUrls;
+        this.demandedMaxAge = demandedMaxAge;
+        this.now = now;
+    }
+
+    /**
+     * Schedules a sitemap entry if it is new, changed, demanded and older than the demanded maximum age, or stale.
+     * The {@code <loc>} is canonicalized first, the way the full crawl does, since the known and the demanded URLs
+     * are canonical.
+     *
+     * @param entry the sitemap entry
+     * @return true if the entry was scheduled, false if it is still fresh or its URL is not crawlable
+     */
+    public boolean offer(SitemapEntry entry) {
+        String url = UrlCanonicalizer.canonicalize(entry.loc());
+        if (url == null) {
+            return false;
+        }
+        LocalDateTime sitemapLastModified = toCrawlZone(entry.lastModified());
+        CrawlUrl known = knownUrls.get(url);
+
+        if (known == null || known.getLastCrawled() == null) {
+            queue.add(new Candidate(url, sitemapLastModified, Reason.NEW, Duration.ofSeconds(Long.MAX_VALUE)));
+            return true;
+        }
+
+        Duration staleness = Duration.between(known.getLastCrawled(), now);
+        if (isChanged(sitemapLastModified, known)) {
+            queue.add(new Candidate(url, sitemapLastModified, Reason.CHANGED, staleness));
+            return true;
+        }
+        if (demandedUrls.contains(url) && staleness.compareTo(demandedMaxAge) >= 0) {
+            queue.add(new Candidate(url, sitemapLastModified, Reason.DEMANDED, staleness));
+            demanded++;
+            return true;
+        }
+        if (staleness.compareTo(maxAge) >= 0) {
+            queue.add(new Candidate(url, sitemapLastModified, Reason.STALE, staleness));
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    /**
+     * Takes the most urgent scheduled URL.
+     *
+     * @return the next candidate, or null if nothing is left
+     */
+    public Candidate poll() {
+        return queue.poll();
+    }
+
+    /**
+     * @return the number of URLs still scheduled
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of URLs skipped because they are still fresh
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return the number of URLs scheduled because they are demanded and older than the demanded maximum age
+     */
+    public int getDemanded() {
+        return demanded;
+    }
+
+    /**
+     * A URL changed if the sitemap reports a newer {@code <lastmod>} than the one stored at the last crawl,
+     * or, when none was stored, a {@code <lastmod>} after the last crawl.
+     */
+    private static boolean isChanged(LocalDateTime sitemapLastModified, CrawlUrl known) {
+        if (sitemapLastModified == null) {
+            return false;
+        }
+        LocalDateTime reference = known.getSitemapLastModified() != null
+                ? known.getSitemapLastModified()
+                : known.getLastCrawled();
+        return sitemapLastModified.isAfter(reference);
+    }
+
+    /**
+     * Converts a sitemap timestamp to a local date-time in {@link #CRAWL_ZONE}.
+     *
+     * @param lastModified the sitemap timestamp, may be null
+     * @return the local date-time, or null
+     */
+    public static LocalDateTime toCrawlZone(OffsetDateTime lastModified) {
+        return lastModified == null ? null : lastModified.atZoneSameInstant(CRAWL_ZONE).toLocalDateTime();
+    }
+}
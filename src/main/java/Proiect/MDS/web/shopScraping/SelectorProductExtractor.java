@@ -0,0 +1,79 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.models.Product;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Extracts the product details with the CSS selectors of {@link ShopScraper}, running one query per field.
+ * It is the reference implementation the faster extractors are checked against.
+ */
+public class SelectorProductExtractor implements ProductExtractor {
+    private static final Logger LOGGER = new AppLogger(SelectorProductExtractor.class).getLogger();
+
+    // Maps the specification names of the product page to the Product.Builder setters.
+    static final Map<String, BiConsumer<Product.Builder, String>> PROPERTY_SETTERS = new HashMap<>();
+
+    // This static block initializes the PROPERTY_SETTERS map with corresponding BiConsumer instances.
+    static {
+        PROPERTY_SETTERS.put("Tip Produs", Product.Builder::productType);
+        PROPERTY_SETTERS.put("Specialitate", Product.Builder::speciality);
+        PROPERTY_SETTERS.put("Conditii de pastrare", Product.Builder::storageConditions);
+        PROPERTY_SETTERS.put("Greutate", (builder, value) -> builder.weight(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Termen de valabilitate", Product.Builder::shelfLife);
+        PROPERTY_SETTERS.put("Ingrediente", Product.Builder::ingredients);
+        PROPERTY_SETTERS.put("Kcal pe 100g sau 100ml", (builder, value) -> builder.kcalPer100g(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("KJ pe 100g sau 100ml", (builder, value) -> builder.kjPer100g(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Grasimi (g sau ml)", (builder, value) -> builder.fats(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Acizi grasi saturati (g sau ml)", (builder, value) -> builder.saturatedFats(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Glucide (g sau ml)", (builder, value) -> builder.carbohydrates(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Zaharuri (g sau ml)", (builder, value) -> builder.sugars(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Sare (g sau ml)", (builder, value) -> builder.salt(Decimals.parse(value)));
+        PROPERTY_SETTERS.put("Proteine (g sau ml)", (builder, value) -> builder.proteins(Decimals.parse(value)));
+    }
+
+    /**
+     * Extracts product details such as category, name, price, and other properties from an already
+     * downloaded product page.
+     *
+     * @param doc        the HTML document of the product page
+     * @param urlProduct the URL the document was retrieved from, used for logging
+     * @return a Product containing the product's details, or empty if the name or price is missing
+     */
+    @Override
+    public Optional<Product> extract(Document doc, String urlProduct) {
+        Elements category = ShopScraper.getAuchanProductCategory(doc);
+        Elements name = ShopScraper.getAuchanProductName(doc);
+        String priceString = ShopScraper.getAuchanProductPriceToString(ShopScraper.getAuchanProductPrice(doc));
+        Elements properties = ShopScraper.getAuchanProductProperties(doc);
+
+        if (name.isEmpty() || priceString.isEmpty()) {
+            LOGGER.log(Level.WARNING, "No name or price found for product at URL: " + urlProduct);
+            return Optional.empty();
+        }
+
+        Product.Builder builder = new Product.Builder()
+                .name(name.get(0).text())
+                .category(category.text())
+                .price(Decimals.parse(priceString));
+
+        for (Element property : properties) {
+            String propertyName = property.attr("data-specification-name");
+            String propertyValue = property.attr("data-specification-value");
+
+            if (PROPERTY_SETTERS.containsKey(propertyName)) {
+                PROPERTY_SETTERS.get(propertyName).accept(builder, propertyValue);
+            }
+        }
+
+        return Optional.of(builder.build());
+    }
+}
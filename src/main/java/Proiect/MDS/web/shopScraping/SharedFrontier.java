@@ -0,0 +1,200 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.database.FrontierTableOperations;
+import Proiect.MDS.web.database.FrontierTableOperations.FrontierUrl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The view one crawler process has of the frontier of a distributed crawl, stored in the crawl_frontier table
+ * (see {@link FrontierTableOperations}).
+ * <p>
+ * The process claims the URLs in batches of {@code batchSize}, each leased for {@code leaseDuration}: if the process
+ * dies, its leases expire and the other processes claim the URLs again, up to {@code maxClaims} times in all; the URLs
+ * whose leases expired that many times are given up by {@link #failExhausted()}. The crawl workers report every URL they
+ * handled through {@link #done(String)}, from any thread; the completions are buffered and written in one batch by
+ * {@link #flush()}, which, like the claims, is called by the single thread feeding the crawl. Completions the table
+ * could not write stay buffered for the next flush, so a URL that was handled is not leased again.
+ */
+public class SharedFrontier {
+    private static final Logger LOGGER = new AppLogger(SharedFrontier.class).getLogger();
+    // consecutive failures to count the unfinished URLs after which the crawl gives up waiting for them
+    private static final int MAX_COUNT_FAILURES = 10;
+    private final FrontierTableOperations frontierTable;
+    private final String crawlId;
+    private final String nodeId;
+    private final int batchSize;
+    private final Duration leaseDuration;
+    private final int maxClaims;
+    private final Queue<String> doneUrls = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger done = new AtomicInteger();
+    private int claimed;
+    private int completed;
+    private int countFailures;
+
+    /**
+     * @param frontierTable the crawl_frontier table operations
+     * @param crawlId       the crawl, the same for every process taking part in it, e.g. the date of the crawl
+     * @param nodeId        the name of this process, unique among the processes of the crawl
+     * @param batchSize     the number of URLs claimed at once
+     * @param leaseDuration how long the claimed URLs stay leased to this process
+     * @param maxClaims     the number of times a URL is claimed at most, by any process
+     */
+    public SharedFrontier(FrontierTableOperations frontierTable, String crawlId, String nodeId, int batchSize,
+                          Duration leaseDuration, int maxClaims) {
+        if (batchSize < 1 || leaseDuration.toSeconds() < 1 || maxClaims < 1) {
+            throw new IllegalArgumentException("Expected batchSize >= 1, a lease of at least one second and maxClaims >= 1");
+        }
+        this.frontierTable = frontierTable;
+        this.crawlId = crawlId;
+        this.nodeId = nodeId;
+        this.batchSize = batchSize;
+        this.leaseDuration = leaseDuration;
+        this.maxClaims = maxClaims;
+    }
+
+    /**
+     * @return a process name unique across the machines: the host name and the process id
+     */
+    public static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Adds URLs to the frontier. The URLs another process added already are ignored, so every process can seed
+     * the frontier from the sitemaps.
+     *
+     * @param urls the URLs found in the sitemaps
+     */
+    public void offer(Collection<FrontierUrl> urls) {
+        frontierTable.enqueue(crawlId, urls);
+    }
+
+    /**
+     * Claims the next batch of URLs for this process.
+     *
+     * @return the claimed URLs, empty if no URL is available right now
+     */
+    public List<FrontierUrl> claim() {
+        List<FrontierUrl> urls = frontierTable.claim(crawlId, nodeId, batchSize, leaseDuration, maxClaims);
+        claimed += urls.size();
+        return urls;
+    }
+
+    /**
+     * Gives up the URLs whose lease expired {@code maxClaims} times, most likely because fetching them brings the
+     * processes down: they are marked as failed, so they no longer keep the crawl from finishing.
+     *
+     * @return the URLs given up, to be sent to the dead-letter queue
+     */
+    public List<String> failExhausted() {
+        return frontierTable.failExhausted(crawlId, maxClaims, batchSize);
+    }
+
+    /**
+     * Records that a claimed URL was handled, whether its product was written or its failure was sent to the
+     * dead-letter queue. Thread-safe.
+     *
+     * @param url the claimed URL
+     */
+    public void done(String url) {
+        doneUrls.add(url);
+        done.incrementAndGet();
+    }
+
+    /**
+     * Marks the URLs handled since the last flush as done in the table. If the table cannot be written, the URLs
+     * are kept for the next flush.
+     *
+     * @return the number of URLs marked as done
+     */
+    public int flush() {
+        List<String> urls = new ArrayList<>();
+        String url;
+        while ((url = doneUrls.poll()) != null) {
+            urls.add(url);
+        }
+        int marked = frontierTable.complete(crawlId, nodeId, urls);
+        if (marked < 0) {
+            doneUrls.addAll(urls);
+            return 0;
+        }
+        completed += marked;
+        return marked;
+    }
+
+    /**
+     * @return the number of URLs claimed by this process and not handled yet
+     */
+    public int getInFlight() {
+        return claimed - done.get();
+    }
+
+    /**
+     * Flushes the completions and checks whether every URL of the crawl is done, by this process or another one.
+     * URLs leased by another process are not done yet: this process waits for them, and takes them over if their
+     * lease expires.
+     *
+     * @return true if the crawl is finished
+     * @throws IOException if the unfinished URLs could not be counted {@value #MAX_COUNT_FAILURES} times in a row
+     */
+    public boolean isFinished() throws IOException {
+        flush();
+        int unfinished = frontierTable.countUnfinished(crawlId);
+        if (unfinished < 0) {
+            countFailures++;
+            if (countFailures >= MAX_COUNT_FAILURES) {
+                throw new IOException("Could not count the unfinished URLs of crawl " + crawlId + " " + countFailures + " times in a row");
+            }
+            LOGGER.log(Level.WARNING, "Could not count the unfinished URLs of crawl {0}, attempt {1} of {2}",
+                    new Object[]{crawlId, countFailures, MAX_COUNT_FAILURES});
+            return false;
+        }
+        countFailures = 0;
+        return unfinished == 0;
+    }
+
+    /**
+     * @return the number of URLs to claim at once
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of times a URL is claimed at most
+     */
+    public int getMaxClaims() {
+        return maxClaims;
+    }
+
+    /**
+     * @return the name of this process
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public String toString() {
+        return "SharedFrontier{crawl=" + crawlId + ", node=" + nodeId + ", claimed=" + claimed + ", completed=" + completed
+                + ", inFlight=" + getInFlight() + '}';
+    }
+}
@@ -1,13 +1,12 @@
 package Proiect.MDS.web.shopScraping;
 
-import org.jsoup.Jsoup;
+import Proiect.MDS.web.shopScraping.fetch.HttpClientPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -20,13 +19,17 @@ import java.util.regex.Pattern;
  */
 public class ShopScraper {
     // Constants for the CSS selectors used to extract product information.
-    private static final String AUCHAN_PRODUCT_CATEGORY_SELECTOR = ".vtex-breadcrumb-1-x-link.vtex-breadcrumb-1-x-link--productBreadcrumb.vtex-breadcrumb-1-x-link--3.vtex-breadcrumb-1-x-link--productBreadcrumb--3.dib.pv1.link.ph2.c-muted-2.hover-c-link";
+    // The selectors are package-private so FastProductExtractor can compile the same ones.
+    static final String AUCHAN_PRODUCT_CATEGORY_SELECTOR = ".vtex-breadcrumb-1-x-link.vtex-breadcrumb-1-x-link--productBreadcrumb.vtex-breadcrumb-1-x-link--3.vtex-breadcrumb-1-x-link--productBreadcrumb--3.dib.pv1.link.ph2.c-muted-2.hover-c-link";
+    static final String AUCHAN_PRODUCT_NAME_CONTAINER_SELECTOR = ".vtex-store-components-3-x-productBrand--productPage";
     private static final String AUCHAN_PRODUCT_NAME_SELECTOR = ".vtex-store-components-3-x-productBrand--productPage span".trim();
-    private static final String AUCHAN_PRODUCT_PRICE_SELECTOR = ".vtex-product-price-1-x-currencyContainer--pdp span";
-    private static final String AUCHAN_PRODUCT_PROPERTIES_SELECTOR = ".vtex-product-specifications-1-x-specificationValue.vtex-product-specifications-1-x-specificationValue--first.vtex-product-specifications-1-x-specificationValue--last";
+    static final String AUCHAN_PRODUCT_PRICE_CONTAINER_SELECTOR = ".vtex-product-price-1-x-currencyContainer--pdp";
+    private static final String AUCHAN_PRODUCT_PRICE_SELECTOR = AUCHAN_PRODUCT_PRICE_CONTAINER_SELECTOR + " span";
+    static final String AUCHAN_PRODUCT_PROPERTIES_SELECTOR = ".vtex-product-specifications-1-x-specificationValue.vtex-product-specifications-1-x-specificationValue--first.vtex-product-specifications-1-x-specificationValue--last";
     private static final String TARGET_A_TAG_SELECTOR = "a.vtex-breadcrumb-1-x-link.vtex-breadcrumb-1-x-link--productBreadcrumb.vtex-breadcrumb-1-x-link--1.vtex-breadcrumb-1-x-link--productBreadcrumb--1.dib.pv1.link.ph2.c-muted-2.hover-c-link";
     private static final List<String> targetHrefs = List.of("/brutarie,-cofetarie,-gastro/d", "/bacanie/d", "/lactate,-carne,-mezeluri-&-peste/d", "/fructe-si-legume/d");
     private static final Pattern pattern = Pattern.compile("(\\d+),(\\d+)(\\s*)lei");
+    private static volatile PageFetcher pageFetcher = HttpClientPageFetcher.getDefault();
 
     /**
      * Validates the given URL.
@@ -34,16 +37,10 @@ public class ShopScraper {
      *
      * @param url the URL to validate
      * @return true if the URL is valid, false otherwise
+     * @see UrlCanonicalizer#canonicalize(String)
      */
     public static boolean isValidURL(String url) {
-        try {
-            URI uri = new URI(url);
-            // URL should start with http:// or https://
-            if (uri.getScheme() == null) return false;
-            return uri.getScheme().startsWith("http");
-        } catch (URISyntaxException e) {
-            return false;
-        }
+        return UrlCanonicalizer.canonicalize(url) != null;
     }
 
 
@@ -65,8 +62,8 @@ public class ShopScraper {
      * @return the product's name
      */
     public static Elements getAuchanProductName(Document doc) {
-        // Somehow the select doesn't work if I use constants.
-        return doc.select(".vtex-store-components-3-x-productBrand--productPage").select("span");
+        // Select the brand container first, then its spans, the container itself included.
+        return doc.select(AUCHAN_PRODUCT_NAME_CONTAINER_SELECTOR).select("span");
     }
 
     /**
@@ -91,7 +88,7 @@ public class ShopScraper {
 
         for (Element element : price) {
             String text = element.text();
-            if (text.matches("[0-9,]+")) {
+            if (Decimals.isPriceFragment(text)) {
                 priceBuilder.append(text.replace(",", "."));
             } else {
                 break;
@@ -142,14 +139,32 @@ public class ShopScraper {
     }
 
     /**
-     * Connects to the provided URL and retrieves the HTML document.
+     * Connects to the provided URL and retrieves the HTML document, through the application-wide
+     * {@link PageFetcher}. Code that can be given a {@link PageFetcher} should use it instead.
      *
      * @param urlProduct the URL to connect to
      * @return the HTML document retrieved from the URL
      * @throws IOException if an error occurs during connection
      */
     public static Document connectToURL(String urlProduct) throws IOException {
-        // connect to the url and retrieve the document
-        return Jsoup.connect(urlProduct).get();
+        return pageFetcher.fetch(urlProduct);
+    }
+
+    /**
+     * @return the application-wide fetcher, used by {@link #connectToURL(String)} and by the scrapers and
+     * crawlers that are not given a fetcher explicitly
+     */
+    public static PageFetcher getPageFetcher() {
+        return pageFetcher;
+    }
+
+    /**
+     * Replaces the application-wide fetcher, e.g. with a fetcher that records to or replays from a
+     * {@link Proiect.MDS.web.shopScraping.fetch.PageArchive}. Scrapers and crawlers created afterwards use it too.
+     *
+     * @param fetcher the new application-wide fetcher
+     */
+    public static void setPageFetcher(PageFetcher fetcher) {
+        pageFetcher = fetcher;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package Proiect.MDS.web.shopScraping;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A single {@code <url>} entry of a sitemap.
+ *
+ * @param loc          the URL of the page
+ * @param lastModified the {@code <lastmod>} value of the entry, or null if the sitemap does not provide one
+ */
+public record SitemapEntry(String loc, OffsetDateTime lastModified) {
+
+    /**
+     * Parses a W3C datetime as used by {@code <lastmod>}. Both full timestamps
+     * ({@code 2023-06-15T10:30:00+03:00}) and plain dates ({@code 2023-06-15}, taken as UTC midnight) are accepted.
+     *
+     * @param value the text of the {@code <lastmod>} element
+     * @return the parsed timestamp, or null if the value is empty or malformed
+     */
+    public static OffsetDateTime parseLastModified(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            if (trimmed.length() == 10) {
+                return LocalDate.parse(trimmed).atStartOfDay().atOffset(ZoneOffset.UTC);
+            }
+            return OffsetDateTime.parse(trimmed);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
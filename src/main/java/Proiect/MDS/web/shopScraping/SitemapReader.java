@@ -0,0 +1,193 @@
+package Proiect.MDS.web.shopScraping;
+
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming sitemap reader built on StAX.
+ * <p>
+ * Instead of building a DOM for the whole file, the reader walks the XML events and hands every
+ * {@code <url>} entry to the consumer as soon as its closing tag is read, so the first product can be
+ * fetched while the rest of the sitemap is still downloading. Sitemap index files
+ * ({@code <sitemapindex>}) are followed recursively and gzip compressed sitemaps ({@code .xml.gz} or a
+ * gzip body) are decompressed on the fly.
+ */
+public class SitemapReader {
+    private static final Logger LOGGER = new AppLogger(SitemapReader.class).getLogger();
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+    private final XMLInputFactory inputFactory;
+    private final Predicate<String> childSitemapFilter;
+    private final PageFetcher pageFetcher;
+
+    /**
+     * Creates a reader that follows every child sitemap of an index.
+     */
+    public SitemapReader() {
+        this(url -> true);
+    }
+
+    /**
+     * Creates a reader that only follows the child sitemaps accepted by the filter.
+     *
+     * @param childSitemapFilter decides which {@code <sitemap><loc>} entries of an index are read
+     */
+    public SitemapReader(Predicate<String> childSitemapFilter) {
+        this(childSitemapFilter, ShopScraper.getPageFetcher());
+    }
+
+    /**
+     * Creates a reader that only follows the child sitemaps accepted by the filter and downloads the
+     * sitemaps through the given fetcher.
+     *
+     * @param childSitemapFilter decides which {@code <sitemap><loc>} entries of an index are read
+     * @param pageFetcher        the fetcher used to open the sitemaps
+     */
+    public SitemapReader(Predicate<String> childSitemapFilter, PageFetcher pageFetcher) {
+        this.childSitemapFilter = childSitemapFilter;
+        this.pageFetcher = pageFetcher;
+        this.inputFactory = XMLInputFactory.newFactory();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        try {
+            this.inputFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        } catch (IllegalArgumentException e) {
+            // The property is optional for StAX implementations; DTD support is already disabled.
+        }
+    }
+
+    /**
+     * Downloads and reads a sitemap or sitemap index, emitting every URL entry it contains.
+     *
+     * @param sitemapURL the URL of the sitemap or sitemap index
+     * @param consumer   receives the entries in document order
+     * @throws IOException        if the sitemap cannot be downloaded
+     * @throws XMLStreamException if the sitemap is not well-formed XML
+     */
+    public void read(String sitemapURL, Consumer<SitemapEntry> consumer) throws IOException, XMLStreamException {
+        for (String childSitemap : readIndex(sitemapURL, consumer)) {
+            try {
+                read(childSitemap, consumer);
+            } catch (IOException | XMLStreamException e) {
+                LOGGER.log(Level.SEVERE, "An error occurred while reading sitemap {0}: {1}", new String[]{childSitemap, e.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Downloads a sitemap index and returns its child sitemaps that pass the filter, without reading them, so
+     * they can be read in parallel. The URL entries of a plain sitemap are emitted as by {@link #read(String, Consumer)}.
+     *
+     * @param sitemapURL the URL of the sitemap index
+     * @param consumer   receives the URL entries listed directly in the index
+     * @return the child sitemaps to read
+     * @throws IOException        if the index cannot be downloaded
+     * @throws XMLStreamException if the index is not well-formed XML
+     */
+    public List<String> readIndex(String sitemapURL, Consumer<SitemapEntry> consumer) throws IOException, XMLStreamException {
+        List<String> childSitemaps;
+        try (InputStream in = open(sitemapURL)) {
+            childSitemaps = read(in, consumer);
+        }
+        childSitemaps.removeIf(childSitemap -> !childSitemapFilter.test(childSitemap));
+        return childSitemaps;
+    }
+
+    /**
+     * Reads an already opened sitemap stream. URL entries are emitted to the consumer while parsing;
+     * child sitemaps of an index are returned instead of being followed.
+     *
+     * @param in       the (possibly gzip compressed) sitemap content
+     * @param consumer receives the URL entries in document order
+     * @return the child sitemap URLs if the stream is a sitemap index, otherwise an empty list
+     * @throws IOException        if the stream cannot be read
+     * @throws XMLStreamException if the content is not well-formed XML
+     */
+    public List<String> read(InputStream in, Consumer<SitemapEntry> consumer) throws IOException, XMLStreamException {
+        List<String> childSitemaps = new ArrayList<>();
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(decompressIfNeeded(in));
+        try {
+            String loc = null;
+            String lastModified = null;
+            // urlset/sitemapindex is depth 1, url/sitemap is depth 2 and their loc/lastmod children are depth 3,
+            // so nested elements such as image:loc are not mistaken for the page URL.
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2) {
+                        loc = null;
+                        lastModified = null;
+                    } else if (depth == 3 && "loc".equals(reader.getLocalName())) {
+                        loc = reader.getElementText().trim();
+                        depth--;
+                    } else if (depth == 3 && "lastmod".equals(reader.getLocalName())) {
+                        lastModified = reader.getElementText();
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 2 && loc != null) {
+                        if ("url".equals(reader.getLocalName())) {
+                            consumer.accept(new SitemapEntry(loc, SitemapEntry.parseLastModified(lastModified)));
+                        } else if ("sitemap".equals(reader.getLocalName())) {
+                            childSitemaps.add(loc);
+                        }
+                    }
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return childSitemaps;
+    }
+
+    /**
+     * Opens the sitemap URL through the fetch layer.
+     *
+     * @param sitemapURL the URL of the sitemap
+     * @return the response body
+     * @throws IOException if the connection fails
+     */
+    private InputStream open(String sitemapURL) throws IOException {
+        return pageFetcher.openResource(sitemapURL);
+    }
+
+    /**
+     * Wraps the stream in a {@link GZIPInputStream} if it starts with the gzip magic number, which covers both
+     * {@code .xml.gz} files and servers that answer with {@code Content-Encoding: gzip}.
+     *
+     * @param in the raw stream
+     * @return a stream of plain XML
+     * @throws IOException if the stream cannot be read
+     */
+    private static InputStream decompressIfNeeded(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == GZIP_MAGIC_FIRST && second == GZIP_MAGIC_SECOND) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+}
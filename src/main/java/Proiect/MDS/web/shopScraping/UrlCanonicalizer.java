@@ -0,0 +1,163 @@
+package Proiect.MDS.web.shopScraping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Canonicalizes and classifies the URLs met during a crawl, so the crawlers dedupe links on one form and never
+ * fetch {@code /p}, {@code /p#}, {@code /p?utm_source=...} and {@code /P} as different pages.
+ * <p>
+ * The canonical form has a lower case scheme and host, no default port, no fragment, no empty path segments and no
+ * trailing slash. The tracking parameters are dropped from the query and the remaining ones are sorted. On the shop
+ * (VTEX routes its paths case-insensitively) the path is lower case and the query of a product page, which only
+ * selects a SKU of the same product, is dropped.
+ * <p>
+ * The URL is split by hand instead of through {@link java.net.URI}, and the classification only looks at the end of
+ * the canonical path, so neither allocates a parser or compiles a pattern per link.
+ */
+public final class UrlCanonicalizer {
+    /**
+     * The kind of page a URL leads to.
+     */
+    public enum Kind {
+        /** A department ({@code /bacanie/c}) or category ({@code /bacanie/conserve/d}) listing. */
+        CATEGORY,
+        /** A product page ({@code /mazare-extrafina-bonduelle-400-g/p}). */
+        PRODUCT,
+        /** Any other page. */
+        OTHER
+    }
+
+    private static final String SHOP_DOMAIN = "auchan.ro";
+    private static final Pattern TRACKING_PARAMETER = Pattern.compile(
+            "utm_[a-z_]*|gclid|gbraid|wbraid|dclid|fbclid|msclkid|yclid|_ga|_gl|mc_cid|mc_eid|srsltid",
+            Pattern.CASE_INSENSITIVE);
+    // characters a browser would have to escape; a link containing them is not crawled
+    private static final String ILLEGAL_CHARACTERS = " \t\n\r\"<>\\^`{|}";
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * @param url an absolute URL, as found in a page or a sitemap
+     * @return the canonical form of the URL, or null if it is not an absolute http(s) URL
+     */
+    public static String canonicalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        String trimmed = url.trim();
+        int schemeEnd = trimmed.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        String scheme = trimmed.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+
+        int end = trimmed.indexOf('#');
+        end = end < 0 ? trimmed.length() : end;
+        for (int i = schemeEnd + 3; i < end; i++) {
+            if (ILLEGAL_CHARACTERS.indexOf(trimmed.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        int pathStart = schemeEnd + 3;
+        while (pathStart < end && trimmed.charAt(pathStart) != '/' && trimmed.charAt(pathStart) != '?') {
+            pathStart++;
+        }
+        String host = trimmed.substring(schemeEnd + 3, pathStart).toLowerCase(Locale.ROOT);
+        if (host.isEmpty() || host.startsWith(":")) {
+            return null;
+        }
+        if (scheme.equals("http") && host.endsWith(":80")) {
+            host = host.substring(0, host.length() - 3);
+        } else if (scheme.equals("https") && host.endsWith(":443")) {
+            host = host.substring(0, host.length() - 4);
+        }
+
+        int queryStart = trimmed.indexOf('?', pathStart);
+        queryStart = queryStart < 0 || queryStart > end ? end : queryStart;
+        boolean shop = isShopHost(host);
+        String path = normalizePath(trimmed.substring(pathStart, queryStart), shop);
+        String query = shop && classify(path) == Kind.PRODUCT ? "" : normalizeQuery(trimmed, queryStart + 1, end);
+
+        StringBuilder canonical = new StringBuilder(scheme.length() + host.length() + path.length() + query.length() + 4)
+                .append(scheme).append("://").append(host).append(path);
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * @param canonicalUrl a URL returned by {@link #canonicalize(String)}
+     * @return the kind of page the URL leads to
+     */
+    public static Kind classify(String canonicalUrl) {
+        int end = canonicalUrl.indexOf('?');
+        end = end < 0 ? canonicalUrl.length() : end;
+        if (end < 2 || canonicalUrl.charAt(end - 2) != '/') {
+            return Kind.OTHER;
+        }
+        return switch (canonicalUrl.charAt(end - 1)) {
+            case 'p' -> Kind.PRODUCT;
+            case 'c', 'd' -> Kind.CATEGORY;
+            default -> Kind.OTHER;
+        };
+    }
+
+    /**
+     * @param url an absolute URL, in any form
+     * @return true if the URL leads to a product page
+     */
+    public static boolean isProductPage(String url) {
+        String canonical = canonicalize(url);
+        return canonical != null && classify(canonical) == Kind.PRODUCT;
+    }
+
+    private static boolean isShopHost(String host) {
+        return host.equals(SHOP_DOMAIN) || host.endsWith("." + SHOP_DOMAIN);
+    }
+
+    private static String normalizePath(String path, boolean lowerCase) {
+        StringBuilder normalized = new StringBuilder(path.length() + 1).append('/');
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && normalized.charAt(normalized.length() - 1) == '/') {
+                continue;
+            }
+            normalized.append(lowerCase ? Character.toLowerCase(c) : c);
+        }
+        if (normalized.length() > 1 && normalized.charAt(normalized.length() - 1) == '/') {
+            normalized.setLength(normalized.length() - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static String normalizeQuery(String url, int start, int end) {
+        if (start >= end) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        int from = start;
+        while (from <= end) {
+            int to = url.indexOf('&', from);
+            to = to < 0 || to > end ? end : to;
+            if (to > from) {
+                String parameter = url.substring(from, to);
+                int equals = parameter.indexOf('=');
+                if (!TRACKING_PARAMETER.matcher(equals < 0 ? parameter : parameter.substring(0, equals)).matches()) {
+                    parameters.add(parameter);
+                }
+            }
+            from = to + 1;
+        }
+        Collections.sort(parameters);
+        return String.join("&", parameters);
+    }
+}
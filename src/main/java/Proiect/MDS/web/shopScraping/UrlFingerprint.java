@@ -0,0 +1,41 @@
+package Proiect.MDS.web.shopScraping;
+
+/**
+ * Computes 64-bit fingerprints of URLs for the compact visited sets.
+ * <p>
+ * The hash is FNV-1a over the UTF-16 characters of the URL followed by the MurmurHash3 64-bit finalizer,
+ * which spreads the bits well enough that the chance of two URLs of a million-URL crawl sharing a
+ * fingerprint is about 3 in 100 million.
+ */
+public final class UrlFingerprint {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    /**
+     * @param url the URL
+     * @return the 64-bit fingerprint of the URL
+     */
+    public static long of(String url) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 fmix64 finalizer.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,37 @@
+package Proiect.MDS.web.shopScraping;
+
+/**
+ * Thread-safe set of the URLs a crawler has already seen.
+ * <p>
+ * Implementations trade exactness for memory: {@link FingerprintVisitedUrlSet} stores a 64-bit
+ * fingerprint per URL instead of the URL string, and {@link BloomFilterVisitedUrlSet} uses a fixed
+ * amount of memory at the cost of occasionally reporting an unseen URL as seen.
+ */
+public interface VisitedUrlSet {
+
+    /**
+     * Marks a URL as seen.
+     *
+     * @param url the URL
+     * @return true if the URL had not been seen before
+     */
+    boolean add(String url);
+
+    /**
+     * Checks whether a URL was seen.
+     *
+     * @param url the URL
+     * @return true if the URL was seen (or, for approximate sets, probably seen)
+     */
+    boolean contains(String url);
+
+    /**
+     * @return the number of URLs added so far
+     */
+    long size();
+
+    /**
+     * @return the approximate number of bytes used by the set
+     */
+    long memoryBytes();
+}
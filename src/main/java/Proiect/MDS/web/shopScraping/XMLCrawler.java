@@ -1,36 +1,189 @@
 package Proiect.MDS.web.shopScraping;
 
+import Proiect.MDS.web.database.CrawlUrlTableOperations;
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.FrontierTableOperations;
+import Proiect.MDS.web.database.ProductSink;
 import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.database.RecipeTableOperations;
+import Proiect.MDS.web.models.CrawlUrl;
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.fetch.FetchedPage;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
 import org.jsoup.nodes.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 /**
  * Class responsible for crawling through XML files to retrieve product data.
+ * <p>
+ * The crawl runs as a pipeline of {@link PipelineStage}s connected by bounded queues: a few sitemap readers stream
+ * the product sitemaps in parallel and claim the new URLs, many fetchers download the pages (I/O bound), one parser
+ * per core parses them and extracts the products (CPU bound), and the persisters write the products and the crawl
+ * state. Every stage is sized for its own bottleneck, and a full queue blocks the stage before it, so the sitemap
+ * readers never run far ahead of the fetchers and parsed pages never pile up in front of a slow database.
  */
 public class XMLCrawler extends ProductCrawler {
     private static final Logger LOGGER = new AppLogger(XMLCrawler.class).getLogger();
+    private static final String SITEMAP_INDEX_URL = "https://www.auchan.ro/sitemap.xml";
+    private static final String PRODUCT_SITEMAP_MARKER = "/sitemap/product-";
     private static final Map<String, List<String>> xmlCache = new ConcurrentHashMap<>();
-    private final List<String> visitedURLs = new ArrayList<>();
+    private static final int DEFAULT_SITEMAP_READERS = 2;
+    private static final int DEFAULT_FETCHERS = 16;
+    private static final int DEFAULT_PERSISTERS = 1;
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final int SEED_BATCH_SIZE = 500;
+    private static final long FRONTIER_POLL_MILLIS = 200;
+    private final VisitedUrlSet visitedURLs = new FingerprintVisitedUrlSet();
+    private final SitemapReader sitemapReader;
+    private final CrawlUrlTableOperations crawlUrls;
+    private final FrontierJournal journal;
+    private final ProductPageReader pageReader = new ProductPageReader();
+    private volatile boolean streamingExtraction;
+    private int sitemapReaders = DEFAULT_SITEMAP_READERS;
+    private int fetchers = DEFAULT_FETCHERS;
+    private int parsers = Runtime.getRuntime().availableProcessors();
+    private int persisters = DEFAULT_PERSISTERS;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile List<PipelineStage<?, ?>> pipelineStages = List.of();
+    private volatile RecipeTableOperations recipes;
+    private volatile Duration recipeIngredientMaxAge;
+    private volatile SharedFrontier sharedFrontier;
+
+    /**
+     * A product URL claimed by the crawl.
+     */
+    private record CrawlTask(String url, LocalDateTime sitemapLastModified) {
+    }
+
+    /**
+     * A downloaded product page, parsed lazily by the parse stage.
+     */
+    private record FetchedTask(CrawlTask task, FetchedPage page) {
+    }
+
+    /**
+     * The product extracted from a page, if any.
+     */
+    private record ParsedTask(CrawlTask task, Optional<Product> product) {
+    }
 
     public XMLCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto) {
-        super(shopScraper, productScraper, pto);
+        this(shopScraper, productScraper, pto, null);
+    }
+
+    /**
+     * Creates a crawler that records the freshness of every crawled URL, which enables
+     * {@link #refreshProductsAuchan(Duration)}.
+     *
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param crawlUrls      the crawl_urls table operations, or null to crawl without recording freshness
+     */
+    public XMLCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                      CrawlUrlTableOperations crawlUrls) {
+        this(shopScraper, productScraper, pto, crawlUrls, null);
+    }
+
+    /**
+     * Creates a crawler that records the freshness of every crawled URL and journals the completed URLs,
+     * so an interrupted crawl resumes without fetching them again.
+     *
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param crawlUrls      the crawl_urls table operations, or null to crawl without recording freshness
+     * @param journal        the journal of completed URLs, or null to keep them in memory only
+     */
+    public XMLCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                      CrawlUrlTableOperations crawlUrls, FrontierJournal journal) {
+        this(shopScraper, productScraper, pto, crawlUrls, journal, ShopScraper.getPageFetcher(), new DirectProductSink(pto));
+    }
+
+    /**
+     * @param shopScraper    the scraper used to read the pages
+     * @param productScraper the scraper used to extract product details
+     * @param pto            the product table operations
+     * @param crawlUrls      the crawl_urls table operations, or null to crawl without recording freshness
+     * @param journal        the journal of completed URLs, or null to keep them in memory only
+     * @param pageFetcher    the fetcher used to download the product pages
+     * @param productSink    the sink the new and changed products are written to
+     */
+    public XMLCrawler(ShopScraper shopScraper, ProductScraper productScraper, ProductTableOperations pto,
+                      CrawlUrlTableOperations crawlUrls, FrontierJournal journal, PageFetcher pageFetcher,
+                      ProductSink productSink) {
+        super(shopScraper, productScraper, pto, pageFetcher, productSink);
+        this.sitemapReader = new SitemapReader(XMLCrawler::isProductSitemap, pageFetcher);
+        this.crawlUrls = crawlUrls;
+        this.journal = journal;
+    }
+
+    /**
+     * Switches the crawl between full pages and streaming extraction. In streaming mode only the product blocks
+     * of every page are downloaded and parsed (see {@link ProductPageReader}), which
+     * lowers the heap and the latency per page, but the pages are always downloaded, without conditional requests.
+     *
+     * @param streamingExtraction true to download only the product blocks of the pages
+     */
+    public void setStreamingExtraction(boolean streamingExtraction) {
+        this.streamingExtraction = streamingExtraction;
+    }
+
+    /**
+     * Keeps the products the recipes are priced from fresher than the rest of the catalog: during an
+     * {@linkplain #refreshProductsAuchan(Duration) incremental recrawl} the URLs of the products the ingredients
+     * resolve to (see {@link RecipeDemand}) are recrawled once they are older than {@code maxAge}, ahead of the
+     * stale ones. The recipes are read again at every recrawl.
+     *
+     * @param recipes the recipes table operations, or null to treat every product alike
+     * @param maxAge  the age after which a product used by a recipe is crawled again
+     */
+    public void setRecipeDemand(RecipeTableOperations recipes, Duration maxAge) {
+        this.recipes = recipes;
+        this.recipeIngredientMaxAge = maxAge;
+    }
+
+    /**
+     * Sizes the stages of the crawl pipeline. The fetchers wait on the network, so there should be many more of them
+     * than cores (the fetcher still limits the requests per host); the parsers are CPU bound, one per core by default;
+     * a single persister keeps the database writes in order.
+     *
+     * @param sitemapReaders the number of product sitemaps read in parallel
+     * @param fetchers       the number of pages downloaded in parallel
+     * @param parsers        the number of pages parsed in parallel
+     * @param persisters     the number of threads writing the products and the crawl state
+     * @param queueCapacity  the number of items that may wait in front of each stage
+     */
+    public void setPipeline(int sitemapReaders, int fetchers, int parsers, int persisters, int queueCapacity) {
+        if (Math.min(Math.min(sitemapReaders, fetchers), Math.min(Math.min(parsers, persisters), queueCapacity)) < 1) {
+            throw new IllegalArgumentException("Every stage needs at least one worker and one queue slot");
+        }
+        this.sitemapReaders = sitemapReaders;
+        this.fetchers = fetchers;
+        this.parsers = parsers;
+        this.persisters = persisters;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return the stages of the last crawl, with their statistics, from the first to the last
+     */
+    public List<PipelineStage<?, ?>> getPipelineStages() {
+        return pipelineStages;
     }
 
     /**
@@ -38,162 +191,389 @@ public class XMLCrawler extends ProductCrawler {
      */
     @Override
     public void getProductsAuchan() {
-        processXMLFiles(generateXMLFileURLs());
+        PipelineStage<CrawlTask, FetchedTask> fetch = fetchParsePersist();
+        PipelineStage<String, CrawlTask> sitemaps = new PipelineStage<>("sitemap", sitemapReaders, queueCapacity, this::readSitemap, fetch);
+        boolean complete = runPipeline(sitemaps, () -> {
+            for (String childSitemap : sitemapReader.readIndex(SITEMAP_INDEX_URL, claimTo(fetch::submit))) {
+                sitemaps.submit(childSitemap);
+            }
+        });
+        finishCrawl(complete);
     }
 
     /**
-     * Generates the list of XML file URLs.
+     * Incremental recrawl: reads the sitemaps, schedules only the URLs that are new, changed according to
+     * their {@code <lastmod>}, or not crawled for longer than {@code maxAge}, and fetches them from the most
+     * to the least urgent. URLs that are still fresh are not downloaded at all. With a
+     * {@linkplain #setRecipeDemand recipe demand} the products used by recipes get their own, shorter maximum age.
      *
-     * @return a List containing the XML file URLs
+     * @param maxAge the age after which an unchanged URL is crawled again anyway
      */
-    private List<String> generateXMLFileURLs() {
-        return IntStream.rangeClosed(0, 11)
-                .mapToObj(i -> "https://www.auchan.ro/sitemap/product-" + i + ".xml")
-                .toList();
+    public void refreshProductsAuchan(Duration maxAge) {
+        if (crawlUrls == null) {
+            throw new IllegalStateException("The incremental recrawl needs the crawl_urls table operations");
+        }
+        Map<String, CrawlUrl> knownUrls = crawlUrls.getAllCrawlUrls();
+        RecipeTableOperations recipeTable = recipes;
+        RecrawlPlanner planner = recipeTable == null
+                ? new RecrawlPlanner(knownUrls, maxAge, LocalDateTime.now(RecrawlPlanner.CRAWL_ZONE))
+                : new RecrawlPlanner(knownUrls, maxAge, RecipeDemand.demandedUrls(recipeTable.getAllRecipes(), knownUrls.values()),
+                recipeIngredientMaxAge, LocalDateTime.now(RecrawlPlanner.CRAWL_ZONE));
+        boolean planned = false;
+        try {
+            sitemapReader.read(SITEMAP_INDEX_URL, planner::offer);
+            planned = true;
+        } catch (IOException | XMLStreamException e) {
+            handleException(e);
+        }
+        LOGGER.log(Level.INFO, "Incremental recrawl: {0} URLs scheduled, {1} of them for recipes, {2} fresh URLs skipped",
+                new Object[]{planner.size(), planner.getDemanded(), planner.getSkipped()});
+
+        // the planner hands the candidates over from the most urgent, and the fetchers take them in that order
+        PipelineStage<CrawlTask, FetchedTask> fetch = fetchParsePersist();
+        boolean complete = runPipeline(fetch, () -> {
+            RecrawlPlanner.Candidate candidate;
+            while ((candidate = planner.poll()) != null) {
+                if (claim(candidate.url())) {
+                    fetch.submit(new CrawlTask(candidate.url(), candidate.sitemapLastModified()));
+                }
+            }
+        });
+        finishCrawl(planned && complete);
     }
 
     /**
-     * Process each XML file.
+     * Distributed crawl: takes part, with the other crawler processes of the same crawl, in a crawl whose frontier
+     * is the shared crawl_frontier table. Every process seeds the frontier from the sitemaps (the URLs another
+     * process added already are ignored), then claims leased batches of URLs and feeds them to the fetch, parse
+     * and persist stages, until every URL of the crawl is done. No URL is handed to two processes unless the
+     * lease of the first one expired, so the throughput grows with the number of processes.
+     * <p>
+     * Only a few batches are claimed ahead of the pipeline, so the leases do not run out while the URLs wait in
+     * the queues. A URL that cannot be fetched or parsed, for whatever reason, is done for the frontier: it is
+     * retried by the dead-letter queue. So is a URL whose lease expired as many times as it may be claimed, which
+     * most likely brings down the processes that fetch it.
      *
-     * @param xmlFileURLs the URLs of XML files to process
+     * @param frontier this process' view of the shared frontier
      */
-    private void processXMLFiles(List<String> xmlFileURLs) {
-        xmlFileURLs.forEach(this::processXMLFile);
+    public void crawlDistributed(SharedFrontier frontier) {
+        seedFrontier(frontier);
+        sharedFrontier = frontier;
+        boolean complete;
+        try {
+            PipelineStage<CrawlTask, FetchedTask> fetch = fetchParsePersist();
+            complete = runPipeline(fetch, () -> {
+                while (true) {
+                    if (frontier.getInFlight() >= 2 * frontier.getBatchSize()) {
+                        frontier.flush();
+                        Thread.sleep(FRONTIER_POLL_MILLIS);
+                        continue;
+                    }
+                    List<FrontierTableOperations.FrontierUrl> batch = frontier.claim();
+                    if (batch.isEmpty()) {
+                        for (String url : frontier.failExhausted()) {
+                            recordFailure(url, new IOException("Lease expired " + frontier.getMaxClaims() + " times"));
+                        }
+                        // the URLs left are leased by this process or another one, whose leases may still expire
+                        if (frontier.isFinished()) {
+                            return;
+                        }
+                        Thread.sleep(FRONTIER_POLL_MILLIS);
+                        continue;
+                    }
+                    for (FrontierTableOperations.FrontierUrl url : batch) {
+                        fetch.submit(new CrawlTask(url.url(), url.sitemapLastModified()));
+                    }
+                    frontier.flush();
+                }
+            });
+            frontier.flush();
+        } finally {
+            sharedFrontier = null;
+        }
+        LOGGER.log(Level.INFO, "Distributed crawl finished: {0}", frontier);
+        finishCrawl(complete);
     }
 
     /**
-     * Process a single XML file.
+     * Adds the product URLs of the sitemaps to the shared frontier, in batches.
      *
-     * @param xmlFileURL the URL of XML file to process
+     * @param frontier the shared frontier
      */
-    private void processXMLFile(String xmlFileURL) {
+    private void seedFrontier(SharedFrontier frontier) {
+        List<FrontierTableOperations.FrontierUrl> batch = new ArrayList<>(SEED_BATCH_SIZE);
         try {
-            System.out.println("Processing XML file: " + xmlFileURL);
-            NodeList nList = getXMLFileNodes(xmlFileURL);
-            processNodes(nList);
-        } catch (IOException | SAXException | ParserConfigurationException e) {
+            sitemapReader.read(SITEMAP_INDEX_URL, entry -> {
+                String url = UrlCanonicalizer.canonicalize(entry.loc());
+                if (url != null) {
+                    batch.add(new FrontierTableOperations.FrontierUrl(url, RecrawlPlanner.toCrawlZone(entry.lastModified())));
+                }
+                if (batch.size() >= SEED_BATCH_SIZE) {
+                    frontier.offer(batch);
+                    batch.clear();
+                }
+            });
+        } catch (IOException | XMLStreamException e) {
             handleException(e);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
+        frontier.offer(batch);
     }
 
     /**
-     * Retrieves all nodes from an XML file.
+     * Touches the products seen unchanged, logs the visited set statistics and forgets the completed URLs
+     * once a crawl has run to the end, so the next crawl starts from scratch. The completed URLs of a crawl that
+     * was interrupted or could not read its sitemaps are kept, so the next run resumes it.
      *
-     * @param xmlFileURL the URL of XML file to process
-     * @return NodeList containing all nodes from the XML file
-     * @throws Exception if any error occurs during XML file processing
+     * @param complete true if the sitemaps were read and every stage of the pipeline drained its queue
      */
-    private NodeList getXMLFileNodes(String xmlFileURL) throws Exception {
-        org.w3c.dom.Document xmlDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(xmlFileURL);
-        xmlDoc.getDocumentElement().normalize();
-        return xmlDoc.getElementsByTagName("loc");
+    private void finishCrawl(boolean complete) {
+        flushWrites();
+        LOGGER.log(Level.INFO, "Sitemap crawl finished, visited URLs: {0}", visitedURLs);
+        if (journal != null && complete) {
+            journal.clear();
+        } else if (journal != null) {
+            LOGGER.log(Level.WARNING, "Sitemap crawl incomplete, the journal is kept for the next run");
+        }
     }
 
     /**
-     * Process all nodes from a NodeList.
+     * Checks whether a child sitemap of the index lists product pages.
      *
-     * @param nList NodeList to process
+     * @param sitemapURL the URL of the child sitemap
+     * @return true if the sitemap is a product sitemap ({@code product-N.xml} or {@code product-N.xml.gz})
      */
-    private void processNodes(NodeList nList) {
-        IntStream.range(0, nList.getLength())
-                .mapToObj(nList::item)
-                .filter(node -> node.getNodeType() == Node.ELEMENT_NODE)
-                .map(this::getNodeTextContent)
-                .filter(this::isUrlNotVisited)
-                .forEach(this::processProductUrl);
+    private static boolean isProductSitemap(String sitemapURL) {
+        return sitemapURL.contains(PRODUCT_SITEMAP_MARKER);
     }
 
-    /***
-     * Checks if a URL has not been visited yet.
-     * @param url the URL to check
-     * @return true if the URL has not been visited yet, false otherwise
+    /**
+     * The source of a pipeline run, which submits the work to its first stage.
      */
-    private boolean isUrlNotVisited(String url) {
-        return !visitedURLs.contains(url);
+    @FunctionalInterface
+    private interface PipelineSource {
+        void feed() throws IOException, XMLStreamException, InterruptedException;
     }
 
     /**
-     * Retrieves the text content of a Node.
+     * Creates the fetch, parse and persist stages shared by the full and the incremental crawl.
      *
-     * @param node Node to get the text content from
-     * @return String containing the text content of the Node
+     * @return the fetch stage, the first of the three
      */
-    private String getNodeTextContent(Node node) {
-        Element eElement = (Element) node;
-        return eElement.getTextContent();
+    private PipelineStage<CrawlTask, FetchedTask> fetchParsePersist() {
+        PipelineStage<ParsedTask, Void> persist = new PipelineStage<>("persist", persisters, queueCapacity, this::persistProduct, null);
+        PipelineStage<FetchedTask, ParsedTask> parse = new PipelineStage<>("parse", parsers, queueCapacity, this::parsePage, persist);
+        return new PipelineStage<>("fetch", fetchers, queueCapacity, this::fetchPage, parse);
     }
 
     /**
-     * Processes a product URL.
+     * Starts the pipeline, feeds it, and waits until every stage has drained its queue.
      *
-     * @param productUrl the URL to process
+     * @param head   the first stage of the pipeline
+     * @param source submits the work to the first stage
+     * @return true if the source fed all its work and every stage drained its queue, false if the source failed
+     * or the pipeline was interrupted
      */
-    private void processProductUrl(String productUrl) {
+    private boolean runPipeline(PipelineStage<?, ?> head, PipelineSource source) {
+        List<PipelineStage<?, ?>> stages = new ArrayList<>();
+        boolean fed = false;
+        boolean drained = false;
+        head.start();
         try {
-            Document doc = ShopScraper.connectToURL(productUrl);
-            visitedURLs.add(productUrl);
-            if (ShopScraper.checkATagsForHref(doc)) {
-                processProduct(productUrl);
+            try {
+                source.feed();
+                fed = true;
+            } catch (IOException | XMLStreamException e) {
+                handleException(e);
+            } finally {
+                head.close();
             }
-        } catch (IOException e) {
-            handleException(e);
+            head.await();
+            drained = true;
+        } catch (InterruptedException | CancellationException e) {
+            Thread.currentThread().interrupt();
+            head.abort();
+            LOGGER.log(Level.WARNING, "Sitemap crawl interrupted");
         }
+        for (PipelineStage<?, ?> stage = head; stage != null; stage = stage.getNext()) {
+            stages.add(stage);
+            LOGGER.log(Level.INFO, "Pipeline stage: {0}", stage);
+        }
+        pipelineStages = List.copyOf(stages);
+        return fed && drained;
     }
 
+    /**
+     * Sitemap stage: streams a product sitemap and emits every new product URL as soon as it is parsed.
+     *
+     * @param sitemapURL the URL of the sitemap to read
+     * @param out        receives the claimed URLs
+     */
+    private void readSitemap(String sitemapURL, PipelineStage.Emitter<CrawlTask> out) throws IOException, XMLStreamException {
+        System.out.println("Processing sitemap: " + sitemapURL);
+        sitemapReader.read(sitemapURL, claimTo(out));
+    }
 
     /**
-     * Method to retrieve all "loc" links from all XML files.
+     * @param out receives the claimed URLs
+     * @return a consumer that canonicalizes the sitemap entries and emits those whose URL it claims
+     */
+    private Consumer<SitemapEntry> claimTo(PipelineStage.Emitter<CrawlTask> out) {
+        return entry -> {
+            String url = UrlCanonicalizer.canonicalize(entry.loc());
+            if (url == null || !claim(url)) {
+                return;
+            }
+            try {
+                out.emit(new CrawlTask(url, RecrawlPlanner.toCrawlZone(entry.lastModified())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Sitemap reading interrupted");
+            }
+        };
+    }
+
+    /**
+     * Claims a URL for this crawl, so two sitemaps listing it do not both have it fetched.
      *
-     * @return a List of all "loc" links from all XML files.
+     * @param url the canonical URL
+     * @return true if the URL was neither visited by this crawl nor completed by the interrupted one it resumes
      */
-    public List<String> getAllLocLinks() {
-        List<String> xmlFileURLs = generateXMLFileURLs();
-        return xmlFileURLs.parallelStream()
-                .flatMap(this::getLocLinksFromXML)
-                .toList();
+    private boolean claim(String url) {
+        return (journal == null || !journal.isCompleted(url)) && visitedURLs.add(url);
     }
 
+    /**
+     * Fetch stage: downloads a product page without parsing it. In streaming mode only the product blocks are
+     * downloaded, and the small document they make is parsed right away. A page that cannot be downloaded goes
+     * to the dead-letter queue.
+     *
+     * @param task the claimed URL
+     * @param out  receives the downloaded page
+     */
+    private void fetchPage(CrawlTask task, PipelineStage.Emitter<FetchedTask> out) throws IOException, InterruptedException {
+        boolean handedOn = false;
+        try {
+            FetchedPage page = streamingExtraction
+                    ? FetchedPage.modified(pageReader.read(getPageFetcher().openResource(task.url()), task.url()))
+                    : getPageFetcher().fetchPageUnparsed(task.url());
+            // released by the next stage, or, if the crawl is aborted, left to expire with its lease
+            handedOn = true;
+            out.emit(new FetchedTask(task, page));
+        } catch (IOException | RuntimeException e) {
+            recordFailure(task.url(), e);
+            throw e;
+        } finally {
+            if (!handedOn) {
+                releaseTask(task.url());
+            }
+        }
+    }
 
     /**
-     * Gets all "loc" links from a single XML file.
+     * Parse stage: parses a downloaded page and extracts its product. A page the server reports as not modified
+     * since the last crawl is not parsed, and is only recorded as crawled.
      *
-     * @param xmlFileURL The URL of the XML file to get "loc" links from.
-     * @return a Stream of "loc" links from the XML file.
+     * @param fetched the downloaded page
+     * @param out     receives the extracted product
      */
-    private Stream<String> getLocLinksFromXML(String xmlFileURL) {
-        return xmlCache.computeIfAbsent(xmlFileURL, this::fetchAndParseXML)
-                .stream();
+    private void parsePage(FetchedTask fetched, PipelineStage.Emitter<ParsedTask> out) throws IOException, InterruptedException {
+        String productUrl = fetched.task().url();
+        boolean handedOn = false;
+        try {
+            Optional<Product> product = Optional.empty();
+            if (fetched.page().isNotModified()) {
+                System.out.println("Product not modified: " + productUrl);
+            } else {
+                Document doc = fetched.page().getDocument();
+                if (ShopScraper.checkATagsForHref(doc)) {
+                    product = extractProduct(doc, productUrl);
+                }
+            }
+            handedOn = true;
+            out.emit(new ParsedTask(fetched.task(), product));
+        } catch (IOException | RuntimeException e) {
+            recordFailure(productUrl, e);
+            throw e;
+        } finally {
+            if (!handedOn) {
+                releaseTask(productUrl);
+            }
+        }
     }
 
     /**
-     * Fetches and parses the XML file to get "loc" links.
+     * Persist stage: writes the product and records when the URL was crawled.
      *
-     * @param xmlFileURL The URL of the XML file to fetch and parse.
-     * @return a List of "loc" links from the XML file.
+     * @param parsed the extracted product
+     * @param out    unused, this is the last stage
      */
-    private List<String> fetchAndParseXML(String xmlFileURL) {
+    private void persistProduct(ParsedTask parsed, PipelineStage.Emitter<Void> out) {
+        CrawlTask task = parsed.task();
         try {
-            var nList = getXMLFileNodes(xmlFileURL);
-            return getLocLinks(nList);
-        } catch (Exception e) {
-            handleException(e);
-            return Collections.emptyList();
+            resolveFailure(task.url());
+            parsed.product().ifPresent(this::persistProduct);
+            recordCrawl(task.url(), parsed.product(), task.sitemapLastModified());
+            if (journal != null) {
+                journal.recordDone(task.url());
+            }
+        } catch (RuntimeException e) {
+            recordFailure(task.url(), e);
+            throw e;
+        } finally {
+            releaseTask(task.url());
+        }
+    }
+
+    /**
+     * Tells the shared frontier of a distributed crawl that a URL was handled, successfully or not.
+     *
+     * @param url the URL of the task
+     */
+    private void releaseTask(String url) {
+        SharedFrontier frontier = sharedFrontier;
+        if (frontier != null) {
+            frontier.done(url);
         }
     }
 
     /**
-     * Gets all "loc" links from a NodeList.
-     * @param nList The NodeList to get "loc" links from.
-     * @return a List of "loc" links from the NodeList.
+     * Stores the freshness information of a crawled URL, if the crawler was created with the crawl_urls table.
+     *
+     * @param productUrl          the crawled URL
+     * @param product             the product found at the URL, if any
+     * @param sitemapLastModified the {@code <lastmod>} the sitemap reported for the URL, or null
      */
-    private List<String> getLocLinks(NodeList nList) {
-        return IntStream.range(0, nList.getLength())
-                .mapToObj(nList::item)
-                .filter(node -> node.getNodeType() == Node.ELEMENT_NODE)
-                .map(this::getNodeTextContent)
-                .collect(Collectors.toList());
+    private void recordCrawl(String productUrl, Optional<Product> product, LocalDateTime sitemapLastModified) {
+        if (crawlUrls != null) {
+            crawlUrls.recordCrawl(productUrl, product.map(Product::getName).orElse(null), sitemapLastModified);
+        }
+    }
+
+
+    /**
+     * Method to retrieve all "loc" links from all product sitemaps.
+     *
+     * @return a List of all "loc" links from all product sitemaps.
+     */
+    public List<String> getAllLocLinks() {
+        return xmlCache.computeIfAbsent(SITEMAP_INDEX_URL, this::fetchAndParseXML);
+    }
+
+    /**
+     * Streams a sitemap (or sitemap index) to get its "loc" links.
+     *
+     * @param sitemapURL The URL of the sitemap to read.
+     * @return a List of "loc" links from the sitemap.
+     */
+    private List<String> fetchAndParseXML(String sitemapURL) {
+        List<String> locLinks = new ArrayList<>();
+        try {
+            sitemapReader.read(sitemapURL, entry -> locLinks.add(entry.loc()));
+            return locLinks;
+        } catch (IOException | XMLStreamException e) {
+            handleException(e);
+            return Collections.emptyList();
+        }
     }
 
     /**
@@ -0,0 +1,287 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-host politeness limiter that lets the crawl speed tune itself to what the shop tolerates.
+ * <p>
+ * Every host has a token bucket that caps the request rate and an AIMD (additive increase,
+ * multiplicative decrease) concurrency limit:
+ * <ul>
+ *     <li>each successful response grows the limit by {@code 1 / limit}, i.e. by about one request per
+ *     round of responses, up to {@code maxConcurrency};</li>
+ *     <li>a 429 or 503 response halves the limit and pauses the host for the {@code Retry-After} delay
+ *     (or {@code defaultBackoff} when the header is missing);</li>
+ *     <li>a latency that rises well above the best latency seen so far is treated as queueing at the
+ *     server and shrinks the limit by 10%;</li>
+ *     <li>a failed connection shrinks the limit by 25%.</li>
+ * </ul>
+ * The current limits are exposed through {@link #getMetrics()}.
+ */
+public class AdaptiveHostLimiter {
+    private static final double THROTTLE_DECREASE = 0.5;
+    private static final double FAILURE_DECREASE = 0.75;
+    private static final double LATENCY_DECREASE = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final double requestsPerSecond;
+    private final int initialConcurrency;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final Duration defaultBackoff;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param requestsPerSecond  the maximum sustained request rate per host
+     * @param initialConcurrency the concurrency limit a host starts with
+     * @param minConcurrency     the lowest concurrency limit the host can be pushed down to
+     * @param maxConcurrency     the highest concurrency limit the host can grow to
+     * @param defaultBackoff     how long a host is paused after a 429/503 without {@code Retry-After}
+     */
+    public AdaptiveHostLimiter(double requestsPerSecond, int initialConcurrency, int minConcurrency, int maxConcurrency,
+                               Duration defaultBackoff) {
+        if (requestsPerSecond <= 0 || minConcurrency < 1 || minConcurrency > initialConcurrency || initialConcurrency > maxConcurrency) {
+            throw new IllegalArgumentException("Expected requestsPerSecond > 0 and 1 <= min <= initial <= max concurrency");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.initialConcurrency = initialConcurrency;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.defaultBackoff = defaultBackoff;
+    }
+
+    /**
+     * Waits until the host of the URL is not paused, has a free concurrency slot and a rate token.
+     * Every successful call must be followed by exactly one of {@link #onSuccess}, {@link #onThrottled}
+     * or {@link #onFailure}.
+     *
+     * @param url the URL about to be fetched
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(String url) throws InterruptedException {
+        stateOf(url).acquire();
+    }
+
+    /**
+     * Releases the slot of a request that got a normal response and adapts the limit to its latency.
+     *
+     * @param url     the fetched URL
+     * @param latency the time between sending the request and receiving the response
+     */
+    public void onSuccess(String url, Duration latency) {
+        stateOf(url).onSuccess(latency.toNanos());
+    }
+
+    /**
+     * Releases the slot of a request that was answered with 429 or 503, halves the limit and pauses the host.
+     *
+     * @param url        the fetched URL
+     * @param retryAfter the delay requested by the server, or null if it sent none
+     */
+    public void onThrottled(String url, Duration retryAfter) {
+        stateOf(url).onThrottled(retryAfter != null ? retryAfter : defaultBackoff);
+    }
+
+    /**
+     * Releases the slot of a request that failed without a response (timeout, reset connection, ...).
+     *
+     * @param url the fetched URL
+     */
+    public void onFailure(String url) {
+        stateOf(url).onFailure();
+    }
+
+    /**
+     * @return the current limits of every host seen so far, by host name
+     */
+    public Map<String, HostLimits> getMetrics() {
+        Map<String, HostLimits> metrics = new TreeMap<>();
+        hosts.forEach((host, state) -> metrics.put(host, state.snapshot()));
+        return metrics;
+    }
+
+    private HostState stateOf(String url) {
+        return hosts.computeIfAbsent(hostOf(url), host -> new HostState());
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, given either as a number of seconds or as an HTTP date.
+     *
+     * @param value the header value, may be null
+     * @return the delay to wait, or null if the header is missing or malformed
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // not a number of seconds, try the HTTP date form below
+        }
+        try {
+            Duration delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extracts the host of a URL, falling back to the URL itself when it cannot be parsed.
+     *
+     * @param url the URL
+     * @return the lower-cased host
+     */
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Snapshot of the limits of a host.
+     *
+     * @param concurrencyLimit  the current AIMD concurrency limit
+     * @param inFlight          the number of requests currently in flight
+     * @param requestsPerSecond the token bucket rate
+     * @param latencyMillis     the smoothed response latency
+     * @param baselineMillis    the best latency seen recently, used to detect queueing
+     * @param throttledCount    the number of 429/503 responses so far
+     * @param pausedForMillis   how long the host stays paused, 0 if it is not paused
+     */
+    public record HostLimits(double concurrencyLimit, int inFlight, double requestsPerSecond, double latencyMillis,
+                             double baselineMillis, long throttledCount, long pausedForMillis) {
+    }
+
+    private final class HostState {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private double limit = initialConcurrency;
+        private int inFlight;
+        private double tokens = 1;
+        private long lastRefill = System.nanoTime();
+        private long pausedUntil = System.nanoTime();
+        private double latencyNanos;
+        private double baselineNanos;
+        private long throttledCount;
+
+        void acquire() throws InterruptedException {
+            lock.lock();
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    long waitNanos;
+                    if (now - pausedUntil < 0) {
+                        waitNanos = pausedUntil - now;
+                    } else if (inFlight >= (int) limit) {
+                        waitNanos = Long.MAX_VALUE;
+                    } else if (tokens < 1) {
+                        waitNanos = (long) ((1 - tokens) / requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+                    } else {
+                        tokens -= 1;
+                        inFlight++;
+                        return;
+                    }
+                    if (waitNanos == Long.MAX_VALUE) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(waitNanos);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onSuccess(long latency) {
+            lock.lock();
+            try {
+                latencyNanos = latencyNanos == 0 ? latency : latencyNanos + LATENCY_SMOOTHING * (latency - latencyNanos);
+                baselineNanos = baselineNanos == 0 || latency < baselineNanos
+                        ? latency
+                        : baselineNanos + BASELINE_DRIFT * (latency - baselineNanos);
+                if (latencyNanos > baselineNanos * LATENCY_TOLERANCE) {
+                    decrease(LATENCY_DECREASE);
+                } else {
+                    limit = Math.min(maxConcurrency, limit + 1 / limit);
+                }
+                release();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onThrottled(Duration retryAfter) {
+            lock.lock();
+            try {
+                throttledCount++;
+                decrease(THROTTLE_DECREASE);
+                long until = System.nanoTime() + retryAfter.toNanos();
+                if (until - pausedUntil > 0) {
+                    pausedUntil = until;
+                }
+                release();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onFailure() {
+            lock.lock();
+            try {
+                decrease(FAILURE_DECREASE);
+                release();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        HostLimits snapshot() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                long pausedFor = Math.max(0, pausedUntil - now);
+                return new HostLimits(limit, inFlight, requestsPerSecond, latencyNanos / 1_000_000,
+                        baselineNanos / 1_000_000, throttledCount, TimeUnit.NANOSECONDS.toMillis(pausedFor));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void decrease(double factor) {
+            limit = Math.max(minConcurrency, limit * factor);
+        }
+
+        private void release() {
+            inFlight--;
+            changed.signalAll();
+        }
+
+        /**
+         * Adds the tokens earned since the last refill; the bucket holds at most one second of requests.
+         */
+        private void refill(long now) {
+            double earned = (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1) * requestsPerSecond;
+            tokens = Math.min(Math.max(1, requestsPerSecond), tokens + earned);
+            lastRefill = now;
+        }
+    }
+}
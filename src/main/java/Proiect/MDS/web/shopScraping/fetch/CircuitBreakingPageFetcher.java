@@ -0,0 +1,228 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fetcher that stops sending requests to a host while it is failing, so an outage of the shop costs a few
+ * failed requests instead of one per remaining URL.
+ * <p>
+ * Every host has a circuit breaker:
+ * <ul>
+ *     <li>closed: requests go through; {@code failureThreshold} consecutive failures open the circuit;</li>
+ *     <li>open: requests fail right away with a {@link CircuitOpenException}, for {@code openDuration};</li>
+ *     <li>half open: a single probe request goes through, the others still fail fast. A successful probe closes
+ *     the circuit, a failed one opens it again for twice as long, up to {@code maxOpenDuration}.</li>
+ * </ul>
+ * Only the failures of the host count: connection errors, timeouts, 5xx and 429 responses. A 404 or another
+ * client error is a healthy answer about a bad URL, and so is a page that cannot be parsed. A request interrupted by
+ * the crawl says nothing about the host: it leaves the circuit as it was, only giving up the probe of a half open one.
+ */
+public class CircuitBreakingPageFetcher implements PageFetcher {
+    private final PageFetcher delegate;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Duration maxOpenDuration;
+    private final Map<String, HostCircuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * The states of a host circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * @param delegate         the fetcher that sends the requests
+     * @param failureThreshold the number of consecutive failures that opens the circuit of a host
+     * @param openDuration     how long the circuit stays open the first time
+     * @param maxOpenDuration  how long the circuit stays open at most after repeated failed probes
+     */
+    public CircuitBreakingPageFetcher(PageFetcher delegate, int failureThreshold, Duration openDuration, Duration maxOpenDuration) {
+        if (failureThreshold < 1 || openDuration.isNegative() || maxOpenDuration.compareTo(openDuration) < 0) {
+            throw new IllegalArgumentException("Expected failureThreshold >= 1 and 0 <= openDuration <= maxOpenDuration");
+        }
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.maxOpenDuration = maxOpenDuration;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        return call(url, () -> delegate.fetch(url));
+    }
+
+    @Override
+    public FetchedPage fetchPage(String url) throws IOException {
+        return call(url, () -> delegate.fetchPage(url));
+    }
+
+    @Override
+    public FetchedPage fetchPageUnparsed(String url) throws IOException {
+        return call(url, () -> delegate.fetchPageUnparsed(url));
+    }
+
+    @Override
+    public InputStream openResource(String url) throws IOException {
+        return call(url, () -> delegate.openResource(url));
+    }
+
+    /**
+     * @param url a URL
+     * @return the state of the circuit of the host of the URL
+     */
+    public State getState(String url) {
+        return circuitOf(url).state();
+    }
+
+    /**
+     * @return the state of the circuit of every host seen so far
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<>();
+        circuits.forEach((host, circuit) -> states.put(host, circuit.state()));
+        return states;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakingPageFetcher{circuits=" + getStates() + ", delegate=" + delegate + '}';
+    }
+
+    @FunctionalInterface
+    private interface Request<T> {
+        T send() throws IOException;
+    }
+
+    /**
+     * What a request tells about its host.
+     */
+    private enum Outcome {
+        ANSWERED, FAILED, UNKNOWN
+    }
+
+    private <T> T call(String url, Request<T> request) throws IOException {
+        HostCircuit circuit = circuitOf(url);
+        circuit.acquire();
+        Outcome outcome = Outcome.UNKNOWN;
+        try {
+            T result = request.send();
+            outcome = Outcome.ANSWERED;
+            return result;
+        } catch (IOException e) {
+            if (!isInterruption(e)) {
+                outcome = isHostFailure(e) ? Outcome.FAILED : Outcome.ANSWERED;
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // e.g. a page the parser rejects: the host answered
+            outcome = Outcome.ANSWERED;
+            throw e;
+        } finally {
+            switch (outcome) {
+                case ANSWERED -> circuit.onSuccess();
+                case FAILED -> circuit.onFailure();
+                case UNKNOWN -> circuit.release();
+            }
+        }
+    }
+
+    /**
+     * @param e the error of a request
+     * @return true if the error says the host is failing rather than the URL being wrong or the crawl being stopped
+     */
+    static boolean isHostFailure(IOException e) {
+        if (e instanceof HttpStatusException status) {
+            return status.getStatusCode() >= 500 || status.getStatusCode() == 429;
+        }
+        return !isInterruption(e);
+    }
+
+    /**
+     * @param e the error of a request
+     * @return true if the request was interrupted by the crawl
+     */
+    private static boolean isInterruption(IOException e) {
+        // a plain InterruptedIOException is the crawl being interrupted; its SocketTimeoutException subclass is a timeout
+        return e.getClass() == InterruptedIOException.class;
+    }
+
+    private HostCircuit circuitOf(String url) {
+        return circuits.computeIfAbsent(AdaptiveHostLimiter.hostOf(url), HostCircuit::new);
+    }
+
+    /**
+     * The circuit breaker of one host.
+     */
+    private final class HostCircuit {
+        private final String host;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private Duration currentOpenDuration = openDuration;
+        private long openUntilNanos;
+        private boolean probeInFlight;
+
+        private HostCircuit(String host) {
+            this.host = host;
+        }
+
+        private synchronized void acquire() throws CircuitOpenException {
+            if (state == State.OPEN) {
+                long remaining = openUntilNanos - System.nanoTime();
+                if (remaining > 0) {
+                    throw new CircuitOpenException(host, Duration.ofNanos(remaining));
+                }
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probeInFlight) {
+                    throw new CircuitOpenException(host, Duration.ZERO);
+                }
+                probeInFlight = true;
+            }
+        }
+
+        private synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            probeInFlight = false;
+            currentOpenDuration = openDuration;
+            state = State.CLOSED;
+        }
+
+        private synchronized void release() {
+            probeInFlight = false;
+        }
+
+        private synchronized void onFailure() {
+            if (state == State.HALF_OPEN) {
+                probeInFlight = false;
+                currentOpenDuration = min(currentOpenDuration.multipliedBy(2), maxOpenDuration);
+                open();
+            } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+                open();
+            }
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openUntilNanos = System.nanoTime() + currentOpenDuration.toNanos();
+        }
+
+        private synchronized State state() {
+            return state == State.OPEN && openUntilNanos - System.nanoTime() <= 0 ? State.HALF_OPEN : state;
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,39 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown instead of sending a request while the circuit of its host is open, i.e. while the host is failing.
+ * No request was made, so the failure says nothing new about the URL itself.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final Duration retryAfter;
+
+    /**
+     * @param host       the host whose circuit is open
+     * @param retryAfter how long until the circuit lets a probe request through
+     */
+    public CircuitOpenException(String host, Duration retryAfter) {
+        super("Circuit open for " + host + ", retry in " + retryAfter.toMillis() + " ms");
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return the host whose circuit is open
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return how long until the circuit lets a probe request through
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,76 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+
+/**
+ * Result of a conditional fetch: either a freshly downloaded page or a page the server reported as
+ * unchanged (HTTP 304) since it was cached.
+ * <p>
+ * For an unchanged page the cached copy is only parsed if {@link #getDocument()} is called, so callers
+ * that just skip unchanged pages do not pay for the parse. A page fetched with
+ * {@link PageFetcher#fetchPageUnparsed(String)} is parsed the same way, by the thread that first asks for it.
+ */
+public final class FetchedPage {
+    private final boolean notModified;
+    private final Loader cachedCopy;
+    private Document document;
+
+    private FetchedPage(boolean notModified, Document document, Loader cachedCopy) {
+        this.notModified = notModified;
+        this.document = document;
+        this.cachedCopy = cachedCopy;
+    }
+
+    /**
+     * @param document the downloaded document
+     * @return a page that was downloaded because it is new or changed
+     */
+    public static FetchedPage modified(Document document) {
+        return new FetchedPage(false, document, null);
+    }
+
+    /**
+     * @param body parses the downloaded body of the page when it is needed
+     * @return a page that was downloaded because it is new or changed, and is not parsed yet
+     */
+    public static FetchedPage downloaded(Loader body) {
+        return new FetchedPage(false, null, body);
+    }
+
+    /**
+     * @param cachedCopy parses the cached copy of the page when it is needed
+     * @return a page the server reported as unchanged
+     */
+    public static FetchedPage notModified(Loader cachedCopy) {
+        return new FetchedPage(true, null, cachedCopy);
+    }
+
+    /**
+     * @return true if the page did not change since it was cached
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return the document of the page, parsed from the cache if the page was not modified, or from the
+     * downloaded body if the page was {@linkplain #downloaded(Loader) downloaded unparsed}
+     * @throws IOException if the cached copy cannot be read
+     */
+    public synchronized Document getDocument() throws IOException {
+        if (document == null) {
+            document = cachedCopy.load();
+        }
+        return document;
+    }
+
+    /**
+     * Loads the cached copy of an unchanged page, or parses a downloaded body.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Document load() throws IOException;
+    }
+}
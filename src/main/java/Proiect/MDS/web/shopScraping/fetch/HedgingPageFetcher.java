@@ -0,0 +1,241 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetcher that hedges slow page requests: when a page takes longer than the recent 95th percentile latency, a
+ * second identical request is sent and the first response wins. A few straggling responses then no longer hold a
+ * crawl worker for seconds, which cuts the p99 latency and the wall time of the crawl.
+ * <p>
+ * The extra load is bounded by a budget: at most {@code budget} hedged requests per request (e.g. 0.05 for 5%),
+ * counted since the fetcher was created. By construction only about 5% of the requests are slower than the p95,
+ * so the budget is only reached while the shop is slow across the board, which is exactly when more requests
+ * would not help. No request is hedged until {@code minSamples} latencies are known, nor before
+ * {@code minDelay}.
+ * <p>
+ * The losing request is not cancelled, it completes in the background and its response is dropped: interrupting
+ * it would be reported to the {@link AdaptiveHostLimiter} as a failed connection. Resources such as sitemaps are
+ * streamed and not hedged.
+ */
+public class HedgingPageFetcher implements PageFetcher {
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final int LATENCY_WINDOW = 1000;
+    // the percentile is recomputed every this many latencies
+    private static final int RECOMPUTE_INTERVAL = 50;
+
+    private final PageFetcher delegate;
+    private final double budget;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final ExecutorService executor;
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private volatile long hedgeDelayNanos;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @param delegate   the fetcher that sends the requests
+     * @param budget     the largest share of extra requests, between 0 and 1
+     * @param minDelay   the shortest time to wait before hedging, whatever the p95
+     * @param minSamples the number of latencies to observe before the first hedge
+     */
+    public HedgingPageFetcher(PageFetcher delegate, double budget, Duration minDelay, int minSamples) {
+        if (budget < 0 || budget > 1 || minDelay.isNegative() || minSamples < 1) {
+            throw new IllegalArgumentException("Expected 0 <= budget <= 1, minDelay >= 0 and minSamples >= 1");
+        }
+        this.delegate = delegate;
+        this.budget = budget;
+        this.minDelayNanos = minDelay.toNanos();
+        this.minSamples = minSamples;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "hedged-fetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        return hedge(() -> delegate.fetch(url));
+    }
+
+    @Override
+    public FetchedPage fetchPage(String url) throws IOException {
+        return hedge(() -> delegate.fetchPage(url));
+    }
+
+    @Override
+    public FetchedPage fetchPageUnparsed(String url) throws IOException {
+        return hedge(() -> delegate.fetchPageUnparsed(url));
+    }
+
+    @Override
+    public InputStream openResource(String url) throws IOException {
+        return delegate.openResource(url);
+    }
+
+    /**
+     * @return the number of page requests made by the callers
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of hedged requests sent
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * @return the number of hedged requests that answered before the request they hedged
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * @return how long a request currently runs before it is hedged, or null while too few latencies are known
+     */
+    public Duration getHedgeDelay() {
+        long delay = hedgeDelayNanos;
+        return delay == 0 ? null : Duration.ofNanos(delay);
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingPageFetcher{requests=" + requests.get() + ", hedges=" + hedges.get() + ", hedgeWins=" + hedgeWins.get()
+                + ", hedgeDelay=" + getHedgeDelay() + ", delegate=" + delegate + '}';
+    }
+
+    @FunctionalInterface
+    private interface Request<T> {
+        T send() throws IOException;
+    }
+
+    private <T> T hedge(Request<T> request) throws IOException {
+        requests.incrementAndGet();
+        CompletableFuture<T> primary = submit(request);
+        try {
+            long delay = hedgeDelayNanos;
+            if (delay == 0) {
+                return primary.get();
+            }
+            try {
+                return primary.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // the request is slower than the p95, hedge it if the budget allows
+            }
+            if (!tryReserveHedge()) {
+                return primary.get();
+            }
+            return firstSuccessful(primary, submit(request)).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a page");
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = request.send();
+                recordLatency(System.nanoTime() - start);
+                return result;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private boolean tryReserveHedge() {
+        while (true) {
+            long sent = hedges.get();
+            if (sent + 1 > budget * requests.get()) {
+                return false;
+            }
+            if (hedges.compareAndSet(sent, sent + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return a future that completes with the first successful result, or with the last error if both fail
+     */
+    private <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> primary, CompletableFuture<T> hedged) {
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> attempt : Arrays.asList(primary, hedged)) {
+            attempt.whenComplete((result, error) -> {
+                if (error == null) {
+                    if (first.complete(result) && attempt == hedged) {
+                        hedgeWins.incrementAndGet();
+                    }
+                } else if (failures.incrementAndGet() == 2) {
+                    first.completeExceptionally(error);
+                }
+            });
+        }
+        return first;
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Adds a latency to the window and recomputes the hedge delay every {@link #RECOMPUTE_INTERVAL} latencies.
+     */
+    private void recordLatency(long nanos) {
+        long[] snapshot = null;
+        synchronized (latencies) {
+            latencies[latencyCount % LATENCY_WINDOW] = nanos;
+            latencyCount++;
+            if (latencyCount >= minSamples && (latencyCount == minSamples || latencyCount % RECOMPUTE_INTERVAL == 0)) {
+                snapshot = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_WINDOW));
+            }
+        }
+        if (snapshot != null) {
+            Arrays.sort(snapshot);
+            long percentile = snapshot[Math.max(0, (int) Math.ceil(HEDGE_PERCENTILE * snapshot.length) - 1)];
+            hedgeDelayNanos = Math.max(Math.max(percentile, minDelayNanos), 1);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link PageFetcher} built on a single shared {@link HttpClient}.
+ * <p>
+ * The client negotiates HTTP/2 and keeps its connections open, so the DNS lookup and the TCP and TLS
+ * handshakes are paid once per host instead of once per page. Responses are requested compressed and the
+ * body is decompressed and parsed as it streams in, without being buffered as a string first.
+ * <p>
+ * Every request goes through an {@link AdaptiveHostLimiter}: 429 and 503 responses pause the host for
+ * its {@code Retry-After} delay and are retried up to {@value #MAX_THROTTLED_ATTEMPTS} times.
+ * <p>
+ * With a {@link PageCache}, pages that carry an {@code ETag} or {@code Last-Modified} header are cached
+ * and requested again with {@code If-None-Match}/{@code If-Modified-Since}; a 304 response is returned
+ * by {@link #fetchPage(String)} as a {@linkplain FetchedPage#isNotModified() not modified} page.
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+    private static final int MAX_THROTTLED_ATTEMPTS = 4;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/112.0 Safari/537.36";
+    // Brotli has no decoder in the JDK, so only gzip and deflate are advertised.
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final HttpClientPageFetcher DEFAULT = new HttpClientPageFetcher(
+            new AdaptiveHostLimiter(4, 2, 1, 16, Duration.ofSeconds(30)));
+
+    private final HttpClient client;
+    private final AdaptiveHostLimiter hostLimiter;
+    private final PageCache cache;
+
+    /**
+     * Creates a fetcher with its own HTTP/2 client and no cache.
+     *
+     * @param hostLimiter the limiter every request goes through
+     */
+    public HttpClientPageFetcher(AdaptiveHostLimiter hostLimiter) {
+        this(hostLimiter, null);
+    }
+
+    /**
+     * Creates a fetcher with its own HTTP/2 client.
+     *
+     * @param hostLimiter the limiter every request goes through
+     * @param cache       the cache used for conditional requests, or null to always download the full page
+     */
+    public HttpClientPageFetcher(AdaptiveHostLimiter hostLimiter, PageCache cache) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build(), hostLimiter, cache);
+    }
+
+    /**
+     * @param client      the client used for every request
+     * @param hostLimiter the limiter every request goes through
+     * @param cache       the cache used for conditional requests, or null to always download the full page
+     */
+    public HttpClientPageFetcher(HttpClient client, AdaptiveHostLimiter hostLimiter, PageCache cache) {
+        this.client = client;
+        this.hostLimiter = hostLimiter;
+        this.cache = cache;
+    }
+
+    /**
+     * @return the fetcher shared by the whole application
+     */
+    public static HttpClientPageFetcher getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the per-host limiter, with its current limits
+     */
+    public AdaptiveHostLimiter getHostLimiter() {
+        return hostLimiter;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        return fetchPage(url).getDocument();
+    }
+
+    @Override
+    public FetchedPage fetchPage(String url) throws IOException {
+        return fetchPage(url, false);
+    }
+
+    /**
+     * Downloads the body into memory and parses it when {@link FetchedPage#getDocument()} is first called.
+     */
+    @Override
+    public FetchedPage fetchPageUnparsed(String url) throws IOException {
+        return fetchPage(url, true);
+    }
+
+    private FetchedPage fetchPage(String url, boolean deferParse) throws IOException {
+        Optional<PageCache.Entry> cached = cache == null ? Optional.empty() : cache.get(url);
+        HttpRequest request = buildRequest(url, cached);
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<InputStream> response = send(request);
+            int status = response.statusCode();
+            if (status == 304 && cached.isPresent()) {
+                response.body().close();
+                PageCache.Entry entry = cached.get();
+                return FetchedPage.notModified(() -> parseCached(entry));
+            }
+            if (isThrottled(status) || status < 200 || status >= 400) {
+                response.body().close();
+                if (isThrottled(status) && attempt < MAX_THROTTLED_ATTEMPTS) {
+                    continue;
+                }
+                throw new HttpStatusException(isThrottled(status) ? "Throttled by host" : "HTTP error fetching URL", status, url);
+            }
+            if (deferParse) {
+                String charset = charsetOf(response);
+                String baseUri = response.uri().toString();
+                byte[] body = readBody(url, response, InputStream::readAllBytes);
+                return FetchedPage.downloaded(() -> Jsoup.parse(new ByteArrayInputStream(body), charset, baseUri));
+            }
+            return FetchedPage.modified(parse(url, response));
+        }
+    }
+
+    @Override
+    public InputStream openResource(String url) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET()
+                .build();
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<InputStream> response = send(request);
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                return decode(response);
+            }
+            response.body().close();
+            if (!isThrottled(status) || attempt >= MAX_THROTTLED_ATTEMPTS) {
+                throw new HttpStatusException("HTTP error fetching URL", status, url);
+            }
+        }
+    }
+
+    private HttpRequest buildRequest(String url, Optional<PageCache.Entry> cached) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+        cached.ifPresent(entry -> {
+            if (entry.etag() != null) {
+                builder.header("If-None-Match", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                builder.header("If-Modified-Since", entry.lastModified());
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Parses a 200 response, copying the body into the cache when the response has validators.
+     */
+    private Document parse(String url, HttpResponse<InputStream> response) throws IOException {
+        String baseUri = response.uri().toString();
+        String charset = charsetOf(response);
+        return readBody(url, response, body -> Jsoup.parse(body, charset, baseUri));
+    }
+
+    /**
+     * Reads the decoded body of a 200 response, copying it into the cache when the response has validators.
+     */
+    private <T> T readBody(String url, HttpResponse<InputStream> response, BodyReader<T> reader) throws IOException {
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        if (cache == null || (etag == null && lastModified == null)) {
+            if (cache != null) {
+                cache.remove(url);
+            }
+            try (InputStream body = decode(response)) {
+                return reader.read(body);
+            }
+        }
+        PageCache.Recorder recorder = cache.record(url, etag, lastModified, charsetOf(response));
+        try (InputStream body = recorder.tee(decode(response))) {
+            T result = reader.read(body);
+            if (recorder.isComplete()) {
+                recorder.commit();
+            } else {
+                recorder.abort();
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            recorder.abort();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    private static Document parseCached(PageCache.Entry entry) throws IOException {
+        try (InputStream body = entry.openBody()) {
+            return Jsoup.parse(body, entry.charset(), entry.url());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientPageFetcher{hostLimits=" + hostLimiter.getMetrics() + '}';
+    }
+
+    /**
+     * Sends a request once a slot of its host is free and reports the outcome to the limiter. The latency
+     * reported is the time until the response headers arrived.
+     */
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        String url = request.uri().toString();
+        try {
+            hostLimiter.acquire(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        }
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            hostLimiter.onFailure(url);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        } catch (IOException | RuntimeException e) {
+            hostLimiter.onFailure(url);
+            throw e;
+        }
+        if (isThrottled(response.statusCode())) {
+            hostLimiter.onThrottled(url, AdaptiveHostLimiter.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)));
+        } else {
+            hostLimiter.onSuccess(url, Duration.ofNanos(System.nanoTime() - start));
+        }
+        return response;
+    }
+
+    private static boolean isThrottled(int status) {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * Wraps the body in a decompressing stream matching its {@code Content-Encoding}.
+     */
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(response.body());
+            case "deflate" -> new InflaterInputStream(response.body());
+            default -> response.body();
+        };
+    }
+
+    /**
+     * @return the charset of the {@code Content-Type} header, or null to let Jsoup detect it from the page
+     */
+    private static String charsetOf(HttpResponse<InputStream> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                return trimmed.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,244 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only archive of downloaded pages, used to record a crawl and replay it later without network.
+ * <p>
+ * The pages are stored in {@code pages.warc.gz} as WARC/1.0 {@code response} records, each one compressed as
+ * its own gzip member so a record can be read without decompressing the ones before it. The file is still a
+ * valid multi-member gzip file that WARC tools can read. {@code pages.idx} holds one line per record with the
+ * URL, the offset and the compressed length of the record; it is loaded in memory when the archive is opened.
+ * A URL recorded twice keeps its latest record. A record is indexed only after it was written completely,
+ * so a crash while writing leaves at most an unindexed tail that is never read.
+ */
+public class PageArchive implements Closeable {
+    private static final String RECORDS_FILE = "pages.warc.gz";
+    private static final String INDEX_FILE = "pages.idx";
+    private static final String CRLF = "\r\n";
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final FileChannel records;
+    private final FileChannel index;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the archive in the given directory, creating it if missing.
+     *
+     * @param directory the directory holding the archive files
+     * @throws IOException if the archive cannot be opened or its index cannot be read
+     */
+    public PageArchive(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3) {
+                    locations.put(fields[0], new Location(Long.parseLong(fields[1]), Integer.parseInt(fields[2])));
+                }
+            }
+        }
+        this.records = FileChannel.open(directory.resolve(RECORDS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Appends a page to the archive.
+     *
+     * @param url         the URL of the page
+     * @param contentType the {@code Content-Type} of the body
+     * @param body        the decoded body
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void write(String url, String contentType, byte[] body) throws IOException {
+        byte[] record = compress(toRecord(url, contentType, body));
+        long offset = records.size();
+        writeFully(records, ByteBuffer.wrap(record), offset);
+        String entry = url + "\t" + offset + "\t" + record.length + "\n";
+        index.write(ByteBuffer.wrap(entry.getBytes(StandardCharsets.UTF_8)));
+        locations.put(url, new Location(offset, record.length));
+    }
+
+    /**
+     * Reads the latest record of a URL.
+     *
+     * @param url the URL of the page
+     * @return the archived page, or empty if the URL was never recorded
+     * @throws IOException if the record cannot be read
+     */
+    public Optional<ArchivedPage> read(String url) throws IOException {
+        Location location = locations.get(url);
+        if (location == null) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        while (buffer.hasRemaining()) {
+            if (records.read(buffer, location.offset() + buffer.position()) < 0) {
+                throw new IOException("Truncated archive record for " + url);
+            }
+        }
+        byte[] record;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(buffer.array()))) {
+            record = in.readAllBytes();
+        }
+        return Optional.of(fromRecord(url, record));
+    }
+
+    /**
+     * @param url the URL of the page
+     * @return true if the URL was recorded
+     */
+    public boolean contains(String url) {
+        return locations.containsKey(url);
+    }
+
+    /**
+     * @return the number of distinct URLs in the archive
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try (records; index) {
+            records.force(false);
+            index.force(false);
+        }
+    }
+
+    /**
+     * Builds a WARC {@code response} record holding the HTTP response of the page.
+     */
+    private static byte[] toRecord(String url, String contentType, byte[] body) {
+        byte[] http = concat((
+                "HTTP/1.1 200 OK" + CRLF
+                        + "Content-Type: " + contentType + CRLF
+                        + "Content-Length: " + body.length + CRLF
+                        + CRLF).getBytes(StandardCharsets.ISO_8859_1), body);
+        String warcHeaders = "WARC/1.0" + CRLF
+                + "WARC-Type: response" + CRLF
+                + "WARC-Target-URI: " + url + CRLF
+                + "WARC-Date: " + Instant.now().truncatedTo(ChronoUnit.SECONDS) + CRLF
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">" + CRLF
+                + "Content-Type: application/http; msgtype=response" + CRLF
+                + "Content-Length: " + http.length + CRLF
+                + CRLF;
+        return concat(concat(warcHeaders.getBytes(StandardCharsets.UTF_8), http),
+                (CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Extracts the page from a WARC {@code response} record written by {@link #toRecord(String, String, byte[])}.
+     */
+    private static ArchivedPage fromRecord(String url, byte[] record) throws IOException {
+        int warcEnd = indexOf(record, HEADER_END, 0);
+        if (warcEnd < 0) {
+            throw new IOException("Malformed archive record for " + url);
+        }
+        String warcHeaders = new String(record, 0, warcEnd, StandardCharsets.UTF_8);
+        int httpStart = warcEnd + HEADER_END.length;
+        int httpEnd = httpStart + Integer.parseInt(header(warcHeaders, "Content-Length", url));
+        int bodyStart = indexOf(record, HEADER_END, httpStart);
+        if (bodyStart < 0 || bodyStart > httpEnd) {
+            throw new IOException("Malformed archive record for " + url);
+        }
+        String httpHeaders = new String(record, httpStart, bodyStart - httpStart, StandardCharsets.ISO_8859_1);
+        bodyStart += HEADER_END.length;
+        byte[] body = new byte[httpEnd - bodyStart];
+        System.arraycopy(record, bodyStart, body, 0, body.length);
+        return new ArchivedPage(url, header(httpHeaders, "Content-Type", url), body);
+    }
+
+    private static String header(String headers, String name, String url) throws IOException {
+        String prefix = name.toLowerCase(Locale.ROOT) + ":";
+        for (String line : headers.split(CRLF)) {
+            if (line.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                return line.substring(prefix.length()).trim();
+            }
+        }
+        throw new IOException("Archive record for " + url + " has no " + name + " header");
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private record Location(long offset, int length) {
+    }
+
+    /**
+     * A page read from the archive.
+     *
+     * @param url         the URL of the page
+     * @param contentType the {@code Content-Type} of the body
+     * @param body        the decoded body
+     */
+    public record ArchivedPage(String url, String contentType, byte[] body) {
+
+        /**
+         * @return the charset of the {@code Content-Type}, or null to let the parser detect it from the page
+         */
+        public String charset() {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                    return trimmed.substring("charset=".length()).replace("\"", "").trim();
+                }
+            }
+            return null;
+        }
+    }
+}
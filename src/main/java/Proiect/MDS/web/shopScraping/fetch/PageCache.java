@@ -0,0 +1,230 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of downloaded pages, used to send conditional requests.
+ * <p>
+ * Every cached URL has two files named after the SHA-256 of the URL: a gzip-compressed copy of the
+ * decoded body ({@code .html.gz}) and its validators ({@code .meta}, a properties file with the
+ * {@code ETag} and {@code Last-Modified} headers and the charset of the body). Both files are written to temporary files first and then
+ * moved in place, the body before its validators: after a crash the validators can only be older than the
+ * body, so the next request is a full download rather than a 304 for the wrong copy.
+ * The body is written while the page is being parsed, see {@link #record(String, String, String, String)}.
+ */
+public class PageCache {
+    private static final String BODY_SUFFIX = ".html.gz";
+    private static final String META_SUFFIX = ".meta";
+    private static final String URL_KEY = "url";
+    private static final String ETAG_KEY = "etag";
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+    private static final String CHARSET_KEY = "charset";
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory holding the cached pages; it is created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public PageCache(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Looks up the cached copy of a URL.
+     *
+     * @param url the URL
+     * @return the cached entry, or empty if the URL is not cached
+     */
+    public Optional<Entry> get(String url) {
+        Path meta = directory.resolve(keyOf(url) + META_SUFFIX);
+        Path body = directory.resolve(keyOf(url) + BODY_SUFFIX);
+        if (!Files.exists(meta) || !Files.exists(body)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        if (!url.equals(properties.getProperty(URL_KEY))) {
+            return Optional.empty();
+        }
+        return Optional.of(new Entry(url, properties.getProperty(ETAG_KEY), properties.getProperty(LAST_MODIFIED_KEY),
+                properties.getProperty(CHARSET_KEY), body));
+    }
+
+    /**
+     * Starts caching a new version of a page. The returned recorder copies the body into the cache while
+     * it is read and stores it together with the validators on {@link Recorder#commit()}.
+     *
+     * @param url          the URL
+     * @param etag         the {@code ETag} header, or null
+     * @param lastModified the {@code Last-Modified} header, or null
+     * @param charset      the charset of the body, or null if it is declared by the page itself
+     * @return the recorder of the new version
+     * @throws IOException if the temporary file cannot be created
+     */
+    public Recorder record(String url, String etag, String lastModified, String charset) throws IOException {
+        return new Recorder(url, etag, lastModified, charset);
+    }
+
+    /**
+     * Removes the cached copy of a URL, e.g. once the server stops sending validators for it.
+     *
+     * @param url the URL
+     */
+    public void remove(String url) {
+        try {
+            Files.deleteIfExists(directory.resolve(keyOf(url) + META_SUFFIX));
+            Files.deleteIfExists(directory.resolve(keyOf(url) + BODY_SUFFIX));
+        } catch (IOException e) {
+            // a stale entry is harmless: its validators are simply sent once more
+        }
+    }
+
+    private static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A cached page.
+     *
+     * @param url          the URL
+     * @param etag         the {@code ETag} of the cached version, or null
+     * @param lastModified the {@code Last-Modified} of the cached version, or null
+     * @param charset      the charset of the body, or null if it is declared by the page itself
+     * @param body         the gzip-compressed body
+     */
+    public record Entry(String url, String etag, String lastModified, String charset, Path body) {
+
+        /**
+         * @return the decompressed body
+         * @throws IOException if the body cannot be read
+         */
+        public InputStream openBody() throws IOException {
+            return new GZIPInputStream(Files.newInputStream(body));
+        }
+    }
+
+    /**
+     * Copies a page body into the cache while it is being read.
+     */
+    public final class Recorder {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String charset;
+        private final Path temporaryBody;
+        private final OutputStream copy;
+        private boolean complete;
+
+        private Recorder(String url, String etag, String lastModified, String charset) throws IOException {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.charset = charset;
+            this.temporaryBody = Files.createTempFile(directory, "body", ".tmp");
+            this.copy = new GZIPOutputStream(Files.newOutputStream(temporaryBody));
+        }
+
+        /**
+         * @param body the decoded response body
+         * @return a stream that returns the same bytes and copies them into the cache
+         */
+        public InputStream tee(InputStream body) {
+            return new FilterInputStream(body) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        copy.write(b);
+                    } else {
+                        complete = true;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        copy.write(buffer, offset, read);
+                    } else if (read < 0) {
+                        complete = true;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * @return true if the whole body was read, so the copy can be committed
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * Stores the copied body and its validators, replacing the previous version.
+         *
+         * @throws IOException if the cache files cannot be written
+         */
+        public void commit() throws IOException {
+            copy.close();
+            String key = keyOf(url);
+            Properties properties = new Properties();
+            properties.setProperty(URL_KEY, url);
+            if (etag != null) {
+                properties.setProperty(ETAG_KEY, etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty(LAST_MODIFIED_KEY, lastModified);
+            }
+            if (charset != null) {
+                properties.setProperty(CHARSET_KEY, charset);
+            }
+            Path temporaryMeta = Files.createTempFile(directory, "meta", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporaryMeta, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temporaryBody, directory.resolve(key + BODY_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(temporaryMeta, directory.resolve(key + META_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Drops the copied body, e.g. because the page could not be parsed.
+         */
+        public void abort() {
+            try {
+                copy.close();
+                Files.deleteIfExists(temporaryBody);
+            } catch (IOException e) {
+                // a leftover temporary file only wastes space
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+
+/**
+ * Downloads a page and parses it into a Jsoup document.
+ * <p>
+ * The crawlers and the {@link Proiect.MDS.web.shopScraping.ProductScraper} receive a fetcher instead of calling
+ * {@link Proiect.MDS.web.shopScraping.ShopScraper#connectToURL(String)}, so the transport can be shared,
+ * decorated or replaced (e.g. by a local server in tests).
+ */
+public interface PageFetcher {
+    int RESOURCE_CONNECT_TIMEOUT_MILLIS = 10_000;
+    int RESOURCE_READ_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Fetches the URL and parses the response body.
+     *
+     * @param url the URL to fetch
+     * @return the parsed document, with the final URL as its base URI
+     * @throws IOException if the page cannot be fetched or the server answers with an error status
+     */
+    Document fetch(String url) throws IOException;
+
+    /**
+     * Fetches the URL and tells whether it changed since the last fetch. Fetchers without a cache always
+     * report the page as modified.
+     *
+     * @param url the URL to fetch
+     * @return the fetched page
+     * @throws IOException if the page cannot be fetched or the server answers with an error status
+     */
+    default FetchedPage fetchPage(String url) throws IOException {
+        return FetchedPage.modified(fetch(url));
+    }
+
+    /**
+     * Fetches the URL like {@link #fetchPage(String)}, but may read the body into memory and leave the parse to the
+     * first {@link FetchedPage#getDocument()} call, so the download and the parse can run on different threads.
+     * The default implementation parses right away.
+     *
+     * @param url the URL to fetch
+     * @return the fetched page
+     * @throws IOException if the page cannot be fetched or the server answers with an error status
+     */
+    default FetchedPage fetchPageUnparsed(String url) throws IOException {
+        return fetchPage(url);
+    }
+
+    /**
+     * Opens a resource that is not parsed as HTML, such as a sitemap. The body may still be gzip
+     * compressed (e.g. a {@code .xml.gz} file), so readers should check it themselves.
+     * The default implementation uses a plain {@link URLConnection}.
+     *
+     * @param url the URL to open
+     * @return the response body
+     * @throws IOException if the connection fails
+     */
+    default InputStream openResource(String url) throws IOException {
+        URLConnection connection = URI.create(url).toURL().openConnection();
+        connection.setConnectTimeout(RESOURCE_CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(RESOURCE_READ_TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection.getInputStream();
+    }
+}
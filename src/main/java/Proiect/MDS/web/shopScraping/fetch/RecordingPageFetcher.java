@@ -0,0 +1,63 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fetcher that downloads pages through another fetcher and writes every page to a {@link PageArchive},
+ * so the crawl can be replayed later with a {@link ReplayPageFetcher}.
+ * <p>
+ * HTML pages are archived as the serialized document in UTF-8, which is what the scrapers read back;
+ * other resources such as sitemaps are archived byte for byte. A page the server reported as unchanged
+ * is only archived if the archive does not have it yet.
+ */
+public class RecordingPageFetcher implements PageFetcher {
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final String RESOURCE_CONTENT_TYPE = "application/octet-stream";
+
+    private final PageFetcher delegate;
+    private final PageArchive archive;
+
+    /**
+     * @param delegate the fetcher that downloads the pages
+     * @param archive  the archive the pages are written to
+     */
+    public RecordingPageFetcher(PageFetcher delegate, PageArchive archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        return fetchPage(url).getDocument();
+    }
+
+    @Override
+    public FetchedPage fetchPage(String url) throws IOException {
+        FetchedPage page = delegate.fetchPage(url);
+        if (!page.isNotModified() || !archive.contains(url)) {
+            Document doc = page.getDocument();
+            archive.write(url, HTML_CONTENT_TYPE, doc.outerHtml().getBytes(StandardCharsets.UTF_8));
+        }
+        return page;
+    }
+
+    @Override
+    public InputStream openResource(String url) throws IOException {
+        byte[] body;
+        try (InputStream in = delegate.openResource(url)) {
+            body = in.readAllBytes();
+        }
+        archive.write(url, RESOURCE_CONTENT_TYPE, body);
+        return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingPageFetcher{" + archive.size() + " pages archived, delegate=" + delegate + "}";
+    }
+}
@@ -0,0 +1,45 @@
+package Proiect.MDS.web.shopScraping.fetch;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fetcher that serves pages from a {@link PageArchive} instead of the network, so a recorded crawl can be
+ * re-run at CPU speed and with deterministic results. A URL that is not in the archive fails like a
+ * missing page, with HTTP status 404.
+ */
+public class ReplayPageFetcher implements PageFetcher {
+    private final PageArchive archive;
+
+    /**
+     * @param archive the archive the pages are served from
+     */
+    public ReplayPageFetcher(PageArchive archive) {
+        this.archive = archive;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        PageArchive.ArchivedPage page = read(url);
+        return Jsoup.parse(new ByteArrayInputStream(page.body()), page.charset(), url);
+    }
+
+    @Override
+    public InputStream openResource(String url) throws IOException {
+        return new ByteArrayInputStream(read(url).body());
+    }
+
+    private PageArchive.ArchivedPage read(String url) throws IOException {
+        return archive.read(url).orElseThrow(() -> new HttpStatusException("URL not in archive", 404, url));
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayPageFetcher{" + archive.size() + " pages archived}";
+    }
+}
@@ -1,30 +1,121 @@
 package Proiect.MDS.web.src;
 
+import Proiect.MDS.web.database.BatchingProductSink;
+import Proiect.MDS.web.database.CrawlUrlTableOperations;
 import Proiect.MDS.web.database.Database;
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.FailedUrlTableOperations;
+import Proiect.MDS.web.database.FrontierTableOperations;
 import Proiect.MDS.web.database.ProductJsonOperations;
+import Proiect.MDS.web.database.ProductSink;
 import Proiect.MDS.web.database.ProductTableOperations;
 import Proiect.MDS.web.database.RecipeTableOperations;
 import Proiect.MDS.web.models.Recipe;
+import Proiect.MDS.web.shopScraping.CatalogApiCrawler;
+import Proiect.MDS.web.shopScraping.ConcurrentProductCrawler;
+import Proiect.MDS.web.shopScraping.DeadLetterQueue;
+import Proiect.MDS.web.shopScraping.FastProductExtractor;
+import Proiect.MDS.web.shopScraping.FrontierJournal;
+import Proiect.MDS.web.shopScraping.JsonStateProductExtractor;
 import Proiect.MDS.web.shopScraping.ProductCrawler;
+import Proiect.MDS.web.shopScraping.ProductExtractor;
 import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.RecrawlPlanner;
+import Proiect.MDS.web.shopScraping.SelectorProductExtractor;
+import Proiect.MDS.web.shopScraping.SharedFrontier;
 import Proiect.MDS.web.shopScraping.ShopScraper;
 import Proiect.MDS.web.shopScraping.XMLCrawler;
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import Proiect.MDS.web.shopScraping.fetch.CircuitBreakingPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.HedgingPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.HttpClientPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.PageArchive;
+import Proiect.MDS.web.shopScraping.fetch.PageCache;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.RecordingPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.ReplayPageFetcher;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
 
 public class Main {
+    private static final String CRAWL_STATE_DIRECTORY = "./crawl-state";
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    private static final Duration CHECKPOINT_PERIOD = Duration.ofMinutes(1);
+    private static final int WRITE_QUEUE_CAPACITY = 2000;
+    private static final int WRITE_BATCH_SIZE = 200;
+    private static final Duration WRITE_FLUSH_INTERVAL = Duration.ofSeconds(2);
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final Duration CIRCUIT_OPEN_DURATION = Duration.ofSeconds(30);
+    private static final Duration CIRCUIT_MAX_OPEN_DURATION = Duration.ofMinutes(10);
+    private static final Duration RETRY_POLL_INTERVAL = Duration.ofSeconds(30);
+    // live (default), record (download and archive every page) or replay (serve every page from the archive)
+    private static final String FETCH_MODE = System.getProperty("crawler.fetchMode", "live");
+    private static final String ARCHIVE_DIRECTORY = System.getProperty("crawler.archive", CRAWL_STATE_DIRECTORY + "/archive");
+    // fast (default, one walk over the markup), selectors (one CSS query per field) or state (the embedded VTEX JSON)
+    private static final String EXTRACTOR = System.getProperty("crawler.extractor", "fast");
+    // html (default, one page per product) or api (the paged VTEX catalog search)
+    private static final String CATALOG_SOURCE = System.getProperty("crawler.source", "html");
+    // full (default, every product page) or prices (only the prices of the known products, through the catalog API)
+    private static final String REFRESH_MODE = System.getProperty("crawler.refresh", "full");
+    // the products recipes are priced from are recrawled after this many hours, the rest of the catalog after a week
+    private static final Duration RECIPE_INGREDIENT_MAX_AGE = Duration.ofHours(Long.getLong("crawler.recipeIngredientMaxAgeHours", 6));
+    private static final int API_PAGE_SIZE = Integer.getInteger("crawler.api.pageSize", CatalogApiCrawler.MAX_PAGE_SIZE);
+    private static final int API_PARALLELISM = Integer.getInteger("crawler.api.parallelism", 8);
+    // workers of the sitemap crawl pipeline stages
+    private static final int SITEMAP_READERS = Integer.getInteger("crawler.pipeline.sitemapReaders", 2);
+    private static final int PAGE_FETCHERS = Integer.getInteger("crawler.pipeline.fetchers", 16);
+    private static final int PAGE_PARSERS = Integer.getInteger("crawler.pipeline.parsers", Runtime.getRuntime().availableProcessors());
+    private static final int PRODUCT_PERSISTERS = Integer.getInteger("crawler.pipeline.persisters", 1);
+    private static final int PIPELINE_QUEUE_CAPACITY = Integer.getInteger("crawler.pipeline.queueCapacity", 256);
+    // the share of extra requests sent to hedge pages slower than the p95, e.g. 0.05; 0 (default) disables hedging
+    private static final double HEDGE_BUDGET = Double.parseDouble(System.getProperty("crawler.hedge.budget", "0"));
+    private static final Duration HEDGE_MIN_DELAY = Duration.ofMillis(Long.getLong("crawler.hedge.minDelayMillis", 500));
+    private static final int HEDGE_MIN_SAMPLES = 100;
+    private static final String DATABASE_URL = "jdbc:mysql://localhost/dbProducts";
+    private static final String DATABASE_USER = "root";
+    private static final String DATABASE_PASSWORD = "2875";
+    // true to crawl the sitemaps together with the other processes sharing the frontier table
+    private static final boolean DISTRIBUTED = Boolean.getBoolean("crawler.distributed");
+    // the database of the shared frontier, e.g. jdbc:h2:file:./crawl-state/frontier;AUTO_SERVER=TRUE;MODE=MySQL locally
+    private static final String FRONTIER_DATABASE_URL = System.getProperty("crawler.frontier.db", DATABASE_URL);
+    // the same for every process of a crawl, today's date by default
+    private static final String CRAWL_ID = System.getProperty("crawler.distributed.crawlId",
+            LocalDate.now(RecrawlPlanner.CRAWL_ZONE).toString());
+    private static final String NODE_ID = System.getProperty("crawler.distributed.node", SharedFrontier.defaultNodeId());
+    private static final int FRONTIER_BATCH_SIZE = Integer.getInteger("crawler.distributed.batchSize", 50);
+    private static final Duration FRONTIER_LEASE = Duration.ofMinutes(5);
+    // a URL whose lease expired this many times is sent to the dead-letter queue instead of being claimed again
+    private static final int FRONTIER_MAX_CLAIMS = 3;
+
     public static void main(String[] args) throws IOException, SQLException {
-        Database db = new Database("jdbc:mysql://localhost/dbProducts", "root", "2875");
+        Database db = new Database(DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD);
+
+        try (PageArchive archive = FETCH_MODE.equals("live") ? null : new PageArchive(Paths.get(ARCHIVE_DIRECTORY))) {
+            // Initialize scrapers
+            ShopScraper shop = new ShopScraper();
+            PageFetcher fetcher = openFetcher(archive);
+            ShopScraper.setPageFetcher(fetcher);
+            ProductScraper auchan = new ProductScraper(fetcher, openExtractor());
 
-        // Initialize scrapers
-        ShopScraper shop = new ShopScraper();
-        ProductScraper auchan = new ProductScraper();
+            if (REFRESH_MODE.equals("prices")) {
+                // the fast tier, meant to run several times a day between the full crawls
+                refreshPrices(shop, auchan, fetcher, db);
+                return;
+            }
+            if (DISTRIBUTED) {
+                crawlDistributed(shop, auchan, fetcher, db);
+                return;
+            }
 
-        // Perform the product demo
-        performProductDemo(shop, auchan, db);
+            // Perform the product demo
+            performProductDemo(shop, auchan, fetcher, db);
+        }
 
         //
 
@@ -32,22 +123,73 @@ public class Main {
         performRecipeDemo(db);
     }
 
-    private static void performProductDemo(ShopScraper shop, ProductScraper auchan, Database db) throws IOException {
+    private static void performProductDemo(ShopScraper shop, ProductScraper auchan, PageFetcher fetcher, Database db) throws IOException {
         ProductTableOperations pto = new ProductTableOperations(db);
-        ProductCrawler crawler = new ProductCrawler(shop, auchan, pto);
+        try (BatchingProductSink sink = openProductSink();
+             DeadLetterQueue deadLetterQueue = new DeadLetterQueue(new FailedUrlTableOperations(db))) {
+            ProductCrawler crawler = CATALOG_SOURCE.equals("api")
+                    ? new CatalogApiCrawler(shop, auchan, pto, fetcher, sink, API_PAGE_SIZE, API_PARALLELISM)
+                    : new ConcurrentProductCrawler(shop, auchan, pto, fetcher, sink, 32, openJournal("product-crawler"));
+            // the URLs that failed in this run or in earlier ones are retried in the background
+            crawler.setDeadLetterQueue(deadLetterQueue);
+            // the failed search API pages, of this crawl or of a price refresh, are read again through the API
+            CatalogApiCrawler apiCrawler = crawler instanceof CatalogApiCrawler catalogCrawler ? catalogCrawler
+                    : new CatalogApiCrawler(shop, auchan, pto, fetcher, sink, API_PAGE_SIZE, API_PARALLELISM);
+            deadLetterQueue.start(url -> (CatalogApiCrawler.isSearchPage(url) ? apiCrawler : crawler).retryFailedUrl(url),
+                    RETRY_POLL_INTERVAL);
 
-        Document doc = ShopScraper.connectToURL("https://www.auchan.ro/vin-alb-sec-vartely-feteasca-regala-riesling-0-75-l/p");
+            Document doc = ShopScraper.connectToURL("https://www.auchan.ro/vin-alb-sec-vartely-feteasca-regala-riesling-0-75-l/p");
 
-        System.out.println(ShopScraper.getAuchanProductPrice(doc));
-        System.out.println(ShopScraper.getAuchanProductPriceToString(ShopScraper.getAuchanProductPrice(doc)));
+            System.out.println(ShopScraper.getAuchanProductPrice(doc));
+            System.out.println(ShopScraper.getAuchanProductPriceToString(ShopScraper.getAuchanProductPrice(doc)));
 
-        crawlProducts(crawler);
-        exportProductsToJson(pto);
+            crawlProducts(crawler);
+            exportProductsToJson(pto);
 
-        crawlXMLFiles(shop, auchan, pto);
+            crawlXMLFiles(shop, auchan, pto, fetcher, sink, new CrawlUrlTableOperations(db), new RecipeTableOperations(db), deadLetterQueue);
+        }
         printProductsByCriteria(pto);
     }
 
+    /**
+     * The batches are transactions, so the sink writes through a connection of its own: the crawl threads, the
+     * crawl_urls writes and the dead-letter queue keep using the shared one without joining its transactions.
+     */
+    private static BatchingProductSink openProductSink() {
+        ProductTableOperations writer = new ProductTableOperations(new Database(DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD));
+        return new BatchingProductSink(writer, WRITE_QUEUE_CAPACITY, WRITE_BATCH_SIZE, WRITE_FLUSH_INTERVAL);
+    }
+
+    private static void refreshPrices(ShopScraper shop, ProductScraper auchan, PageFetcher fetcher, Database db) {
+        // the prices are written in one transaction, on a connection of their own
+        ProductTableOperations pto = new ProductTableOperations(new Database(DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD));
+        CatalogApiCrawler crawler = new CatalogApiCrawler(shop, auchan, pto, fetcher, new DirectProductSink(pto),
+                API_PAGE_SIZE, API_PARALLELISM);
+        // the failed pages are only recorded, the next full crawl retries them
+        try (DeadLetterQueue deadLetterQueue = new DeadLetterQueue(new FailedUrlTableOperations(db))) {
+            crawler.setDeadLetterQueue(deadLetterQueue);
+            crawler.refreshPrices();
+        }
+    }
+
+    private static void crawlDistributed(ShopScraper shop, ProductScraper auchan, PageFetcher fetcher, Database db) {
+        ProductTableOperations pto = new ProductTableOperations(db);
+        // the claims are transactions, they get a connection of their own
+        FrontierTableOperations frontierTable = new FrontierTableOperations(
+                new Database(FRONTIER_DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD));
+        SharedFrontier frontier = new SharedFrontier(frontierTable, CRAWL_ID, NODE_ID, FRONTIER_BATCH_SIZE, FRONTIER_LEASE,
+                FRONTIER_MAX_CLAIMS);
+        try (BatchingProductSink sink = openProductSink();
+             DeadLetterQueue deadLetterQueue = new DeadLetterQueue(new FailedUrlTableOperations(db))) {
+            // no local journal: the frontier table is the checkpoint. The failures are recorded, and retried by
+            // the full crawl rather than by every process
+            XMLCrawler xmlCrawler = new XMLCrawler(shop, auchan, pto, new CrawlUrlTableOperations(db), null, fetcher, sink);
+            xmlCrawler.setDeadLetterQueue(deadLetterQueue);
+            xmlCrawler.setPipeline(SITEMAP_READERS, PAGE_FETCHERS, PAGE_PARSERS, PRODUCT_PERSISTERS, PIPELINE_QUEUE_CAPACITY);
+            xmlCrawler.crawlDistributed(frontier);
+        }
+    }
+
     private static void performRecipeDemo(Database db) throws SQLException {
         RecipeTableOperations rto = new RecipeTableOperations(db);
 
@@ -117,8 +259,39 @@ public class Main {
         pto.printProductsByCriteria("price < 12.5");
     }
 
-    private static void crawlXMLFiles(ShopScraper shop, ProductScraper auchan, ProductTableOperations pto) {
-        XMLCrawler xmlCrawler = new XMLCrawler(shop, auchan, pto);
-        xmlCrawler.getProductsAuchan();
+    private static FrontierJournal openJournal(String crawlerName) throws IOException {
+        return new FrontierJournal(Paths.get(CRAWL_STATE_DIRECTORY, crawlerName), CHECKPOINT_INTERVAL, CHECKPOINT_PERIOD);
+    }
+
+    private static PageFetcher openFetcher(PageArchive archive) throws IOException {
+        if (FETCH_MODE.equals("replay")) {
+            return new ReplayPageFetcher(archive);
+        }
+        PageCache cache = new PageCache(Paths.get(CRAWL_STATE_DIRECTORY, "page-cache"));
+        PageFetcher fetcher = new HttpClientPageFetcher(new AdaptiveHostLimiter(4, 2, 1, 16, Duration.ofSeconds(30)), cache);
+        if (HEDGE_BUDGET > 0) {
+            // inside the circuit breaker, so a hedged page counts as one outcome
+            fetcher = new HedgingPageFetcher(fetcher, HEDGE_BUDGET, HEDGE_MIN_DELAY, HEDGE_MIN_SAMPLES);
+        }
+        fetcher = new CircuitBreakingPageFetcher(fetcher, CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_DURATION, CIRCUIT_MAX_OPEN_DURATION);
+        return FETCH_MODE.equals("record") ? new RecordingPageFetcher(fetcher, archive) : fetcher;
+    }
+
+    private static ProductExtractor openExtractor() {
+        return switch (EXTRACTOR) {
+            case "selectors" -> new SelectorProductExtractor();
+            case "state" -> new JsonStateProductExtractor();
+            default -> new FastProductExtractor();
+        };
+    }
+
+    private static void crawlXMLFiles(ShopScraper shop, ProductScraper auchan, ProductTableOperations pto, PageFetcher fetcher,
+                                      ProductSink sink, CrawlUrlTableOperations crawlUrls, RecipeTableOperations recipes,
+                                      DeadLetterQueue deadLetterQueue) throws IOException {
+        XMLCrawler xmlCrawler = new XMLCrawler(shop, auchan, pto, crawlUrls, openJournal("xml-crawler"), fetcher, sink);
+        xmlCrawler.setDeadLetterQueue(deadLetterQueue);
+        xmlCrawler.setPipeline(SITEMAP_READERS, PAGE_FETCHERS, PAGE_PARSERS, PRODUCT_PERSISTERS, PIPELINE_QUEUE_CAPACITY);
+        xmlCrawler.setRecipeDemand(recipes, RECIPE_INGREDIENT_MAX_AGE);
+        xmlCrawler.refreshProductsAuchan(Duration.ofDays(7));
     }
 }
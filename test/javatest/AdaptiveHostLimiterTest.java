@@ -0,0 +1,67 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveHostLimiterTest {
+    private static final String URL = "https://www.auchan.ro/lapte/p";
+
+    @Test
+    void successfulResponsesGrowTheConcurrencyLimit() throws InterruptedException {
+        AdaptiveHostLimiter limiter = new AdaptiveHostLimiter(1000, 2, 1, 4, Duration.ofSeconds(1));
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(URL);
+            limiter.onSuccess(URL, Duration.ofMillis(50));
+        }
+
+        AdaptiveHostLimiter.HostLimits limits = limiter.getMetrics().get("www.auchan.ro");
+        assertTrue(limits.concurrencyLimit() > 2);
+        assertEquals(0, limits.inFlight());
+    }
+
+    @Test
+    void throttledResponseHalvesTheLimitAndPausesTheHost() throws InterruptedException {
+        AdaptiveHostLimiter limiter = new AdaptiveHostLimiter(1000, 4, 1, 8, Duration.ofSeconds(1));
+
+        limiter.acquire(URL);
+        limiter.onThrottled(URL, Duration.ofMillis(200));
+
+        AdaptiveHostLimiter.HostLimits limits = limiter.getMetrics().get("www.auchan.ro");
+        assertEquals(2.0, limits.concurrencyLimit());
+        assertEquals(1, limits.throttledCount());
+        assertTrue(limits.pausedForMillis() > 0);
+
+        long start = System.nanoTime();
+        limiter.acquire(URL);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(150).toNanos());
+    }
+
+    @Test
+    void risingLatencyShrinksTheLimit() throws InterruptedException {
+        AdaptiveHostLimiter limiter = new AdaptiveHostLimiter(1000, 4, 1, 8, Duration.ofSeconds(1));
+        limiter.acquire(URL);
+        limiter.onSuccess(URL, Duration.ofMillis(10));
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(URL);
+            limiter.onSuccess(URL, Duration.ofMillis(500));
+        }
+
+        assertTrue(limiter.getMetrics().get("www.auchan.ro").concurrencyLimit() < 4);
+    }
+
+    @Test
+    void parseRetryAfterAcceptsSecondsAndRejectsGarbage() {
+        assertEquals(Duration.ofSeconds(120), AdaptiveHostLimiter.parseRetryAfter("120"));
+        assertEquals(Duration.ZERO, AdaptiveHostLimiter.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertNull(AdaptiveHostLimiter.parseRetryAfter("soon"));
+        assertNull(AdaptiveHostLimiter.parseRetryAfter(null));
+    }
+}
@@ -0,0 +1,156 @@
+package javatest;
+
+import Proiect.MDS.web.database.BatchingProductSink;
+import Proiect.MDS.web.database.CrawlUrlTableOperations;
+import Proiect.MDS.web.database.Database;
+import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.models.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingProductSinkTest {
+
+    /**
+     * Records the batches instead of writing them to a database.
+     */
+    private static class RecordingTableOperations extends ProductTableOperations {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<String> written = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release;
+
+        RecordingTableOperations(CountDownLatch release) {
+            super(null);
+            this.release = release;
+        }
+
+        @Override
+        public void writeBatch(List<Product> inserts, List<Product> updates) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(inserts.size() + updates.size());
+            inserts.forEach(product -> written.add(product.getName()));
+            updates.forEach(product -> written.add(product.getName()));
+        }
+    }
+
+    private static Product product(String name) {
+        return new Product.Builder().name(name).category("Bacanie").price(BigDecimal.ONE).build();
+    }
+
+    @Test
+    void closeWritesEveryQueuedProductInBoundedBatches() {
+        RecordingTableOperations pto = new RecordingTableOperations(new CountDownLatch(0));
+        BatchingProductSink sink = new BatchingProductSink(pto, 100, 10, Duration.ofSeconds(5));
+
+        for (int i = 0; i < 45; i++) {
+            sink.insert(product("product-" + i));
+        }
+        sink.close();
+
+        assertEquals(45, pto.written.size());
+        assertTrue(pto.batchSizes.stream().allMatch(size -> size <= 10));
+        assertThrows(IllegalStateException.class, () -> sink.insert(product("late")));
+    }
+
+    @Test
+    void flushWaitsForThePendingProducts() {
+        RecordingTableOperations pto = new RecordingTableOperations(new CountDownLatch(0));
+        BatchingProductSink sink = new BatchingProductSink(pto, 100, 50, Duration.ofMillis(50));
+
+        sink.insert(product("lapte"));
+        sink.update(product("paine"));
+        sink.flush();
+
+        assertEquals(List.of("lapte", "paine"), pto.written);
+        sink.close();
+    }
+
+    @Test
+    void insertOfANameAlreadyQueuedIsRejected() {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTableOperations pto = new RecordingTableOperations(release);
+        BatchingProductSink sink = new BatchingProductSink(pto, 100, 50, Duration.ofMillis(50));
+
+        assertTrue(sink.insert(product("lapte")));
+        assertFalse(sink.insert(product("lapte")));
+
+        release.countDown();
+        sink.close();
+        assertEquals(List.of("lapte"), pto.written);
+    }
+
+    @Test
+    void fullQueueBlocksTheProducer() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTableOperations pto = new RecordingTableOperations(release);
+        BatchingProductSink sink = new BatchingProductSink(pto, 2, 1, Duration.ofMillis(10));
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                sink.insert(product("product-" + i));
+            }
+        });
+        producer.start();
+        producer.join(300);
+
+        assertTrue(producer.isAlive());
+        release.countDown();
+        producer.join();
+        sink.close();
+        assertEquals(5, pto.written.size());
+    }
+
+    @Test
+    void aFailedBatchDoesNotRollBackTheWritesOfOtherThreads() throws InterruptedException, SQLException {
+        String url = "jdbc:h2:mem:sink;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        CrawlUrlTableOperations crawlUrls = new CrawlUrlTableOperations(new Database(url, "sa", ""));
+        // the sink writes through a connection of its own, as in Main
+        BatchingProductSink sink = new BatchingProductSink(new ProductTableOperations(new Database(url, "sa", "")), 100, 10,
+                Duration.ofMillis(20));
+
+        Thread recorder = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                crawlUrls.recordCrawl("https://www.auchan.ro/produs-" + i + "/p", "produs-" + i, null);
+            }
+        });
+        recorder.start();
+        for (int i = 0; i < 100; i++) {
+            // every tenth name is too long for the column and fails its batch
+            sink.insert(product(i % 10 == 9 ? "x".repeat(300) + i : "product-" + i));
+        }
+        recorder.join();
+        sink.close();
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = connection.createStatement()) {
+            assertEquals(200, count(stmt, "SELECT COUNT(*) FROM crawl_urls"));
+            // the failed batches were written again one product at a time
+            assertEquals(90, count(stmt, "SELECT COUNT(*) FROM products"));
+        }
+    }
+
+    private static int count(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package javatest;
+
+import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.CatalogApiCrawler;
+import Proiect.MDS.web.shopScraping.DeadLetterQueue;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.RecrawlPlanner;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogApiCrawlerTest {
+
+    private static Set<String> crawl(int products, int pageSize, int parallelism, int maxRequests) throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 25, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            CatalogApiCrawler crawler = new CatalogApiCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto,
+                    bench.fetcher, bench.sink, pageSize, parallelism);
+
+            crawler.getProductsAuchan();
+
+            assertEquals(products, crawler.getProductCount());
+            assertEquals(products, bench.pto.getInsertCount());
+            assertTrue(server.getRequestCount() <= maxRequests, server.getRequestCount() + " requests");
+            return bench.pto.getInserted().stream().map(Product::toString).collect(Collectors.toSet());
+        }
+    }
+
+    private static Set<String> expected(int products) {
+        return IntStream.range(0, products).mapToObj(i -> SyntheticShopServer.expectedProduct(i).toString()).collect(Collectors.toSet());
+    }
+
+    @Test
+    void readsTheCatalogWithAFewCallsPerDepartment() throws IOException {
+        // 58 products per department: 3 pages of 25, plus at most 3 pages requested past the end by the other workers
+        assertEquals(expected(230), crawl(230, 25, 4, 4 * (3 + 3)));
+    }
+
+    @Test
+    void anEmptyPageEndsADepartment() throws IOException {
+        // 20 products per department: 2 full pages and the empty third one
+        assertEquals(expected(80), crawl(80, 10, 1, 4 * 3));
+    }
+
+    @Test
+    void aPriceRefreshWritesOnlyTheChangedPrices() throws IOException {
+        int products = 100;
+        // the first 90 products are known, one in ten with an outdated price
+        List<Product> known = IntStream.range(0, 90).mapToObj(i -> {
+            Product product = SyntheticShopServer.expectedProduct(i);
+            product.setId(i + 1);
+            if (i % 10 == 0) {
+                product.setPrice(product.getPrice().add(BigDecimal.ONE));
+            }
+            return product;
+        }).toList();
+        List<Product> updated = new ArrayList<>();
+        ProductTableOperations pto = new ProductTableOperations(null) {
+            @Override
+            public List<Product> getAllProducts() {
+                return known;
+            }
+
+            @Override
+            public int updatePrices(List<Product> products) {
+                updated.addAll(products);
+                return products.size();
+            }
+        };
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 25, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            CatalogApiCrawler crawler = new CatalogApiCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), pto,
+                    bench.fetcher, bench.sink, 50, 1);
+
+            assertEquals(9, crawler.refreshPrices());
+
+            assertEquals(IntStream.range(0, 9).map(i -> i * 10 + 1).boxed().collect(Collectors.toSet()),
+                    updated.stream().map(Product::getId).collect(Collectors.toSet()));
+            for (Product product : updated) {
+                assertEquals(0, SyntheticShopServer.expectedProduct(product.getId() - 1).getPrice().compareTo(product.getPrice()));
+            }
+            // one page of 25 products per department, no product page and no full write
+            assertEquals(4, server.getRequestCount());
+            assertEquals(0, bench.pto.getInsertCount());
+        }
+    }
+
+    @Test
+    void aFailedPageGoesToTheDeadLetterQueueAndIsReadAgain() throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(100, 25, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            // the first page of the first department times out once
+            AtomicReference<String> failed = new AtomicReference<>();
+            PageFetcher fetcher = new PageFetcher() {
+                @Override
+                public Document fetch(String url) throws IOException {
+                    return bench.fetcher.fetch(url);
+                }
+
+                @Override
+                public InputStream openResource(String url) throws IOException {
+                    if (url.contains("_from=0&") && failed.compareAndSet(null, url)) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                    return bench.fetcher.openResource(url);
+                }
+            };
+            DeadLetterQueueTest.InMemoryFailedUrlTable table = new DeadLetterQueueTest.InMemoryFailedUrlTable();
+            CatalogApiCrawler crawler = new CatalogApiCrawler(new ShopScraper(), new ProductScraper(fetcher), bench.pto,
+                    fetcher, bench.sink, 25, 1);
+
+            try (DeadLetterQueue queue = new DeadLetterQueue(table)) {
+                crawler.setDeadLetterQueue(queue);
+                crawler.getProductsAuchan();
+
+                assertEquals(75, bench.pto.getInsertCount());
+                assertEquals(Set.of(failed.get()), table.rows.keySet());
+                assertTrue(CatalogApiCrawler.isSearchPage(failed.get()));
+
+                assertEquals(1, queue.retryDue(LocalDateTime.now(RecrawlPlanner.CRAWL_ZONE).plusDays(1), crawler::retryFailedUrl));
+                assertEquals(expected(100), bench.pto.getInserted().stream().map(Product::toString).collect(Collectors.toSet()));
+                assertTrue(table.rows.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void pageSizeIsLimitedByTheApi() {
+        assertThrows(IllegalArgumentException.class, () -> new CatalogApiCrawler(new ShopScraper(), null, null, null, null,
+                CatalogApiCrawler.MAX_PAGE_SIZE + 1, 4));
+    }
+}
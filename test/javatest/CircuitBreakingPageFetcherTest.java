@@ -0,0 +1,162 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.fetch.CircuitBreakingPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.CircuitOpenException;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakingPageFetcherTest {
+    private static final String PAGE = "https://www.auchan.ro/lapte/p";
+    private static final String OTHER_HOST_PAGE = "https://example.com/lapte/p";
+
+    /**
+     * Answers with the configured status, or with an empty page for 200, unless it is set to fail otherwise.
+     */
+    private static final class StubFetcher implements PageFetcher {
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile int status = 200;
+        private volatile Exception error;
+
+        @Override
+        public Document fetch(String url) throws IOException {
+            requests.incrementAndGet();
+            if (error instanceof IOException e) {
+                throw e;
+            }
+            if (error instanceof RuntimeException e) {
+                throw e;
+            }
+            if (status != 200) {
+                throw new HttpStatusException("HTTP error fetching URL", status, url);
+            }
+            return new Document(url);
+        }
+
+        @Override
+        public InputStream openResource(String url) throws IOException {
+            return InputStream.nullInputStream();
+        }
+    }
+
+    @Test
+    void aFailingHostIsNotCalledUntilTheProbeSucceeds() throws Exception {
+        StubFetcher shop = new StubFetcher();
+        CircuitBreakingPageFetcher fetcher = new CircuitBreakingPageFetcher(shop, 3, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+        shop.status = 503;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        }
+        assertEquals(CircuitBreakingPageFetcher.State.OPEN, fetcher.getState(PAGE));
+        for (int i = 0; i < 10; i++) {
+            assertThrows(CircuitOpenException.class, () -> fetcher.fetch(PAGE));
+        }
+        assertEquals(3, shop.requests.get());
+        // the circuit is per host
+        assertEquals(CircuitBreakingPageFetcher.State.CLOSED, fetcher.getState(OTHER_HOST_PAGE));
+
+        // a failed probe opens the circuit again, for longer
+        Thread.sleep(120);
+        assertEquals(CircuitBreakingPageFetcher.State.HALF_OPEN, fetcher.getState(PAGE));
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(4, shop.requests.get());
+        Thread.sleep(120);
+        assertThrows(CircuitOpenException.class, () -> fetcher.fetch(PAGE));
+
+        shop.status = 200;
+        Thread.sleep(120);
+        fetcher.fetch(PAGE);
+        assertEquals(CircuitBreakingPageFetcher.State.CLOSED, fetcher.getState(PAGE));
+        fetcher.fetch(PAGE);
+        assertEquals(6, shop.requests.get());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        StubFetcher shop = new StubFetcher();
+        CircuitBreakingPageFetcher fetcher = new CircuitBreakingPageFetcher(shop, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        shop.status = 404;
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        }
+        assertEquals(CircuitBreakingPageFetcher.State.CLOSED, fetcher.getState(PAGE));
+
+        shop.status = 429;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(CircuitBreakingPageFetcher.State.OPEN, fetcher.getState(PAGE));
+    }
+
+    @Test
+    void anInterruptedProbeLeavesTheCircuitHalfOpen() throws Exception {
+        StubFetcher shop = new StubFetcher();
+        CircuitBreakingPageFetcher fetcher = new CircuitBreakingPageFetcher(shop, 1, Duration.ofMillis(50), Duration.ofSeconds(1));
+
+        shop.status = 503;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        Thread.sleep(70);
+        assertEquals(CircuitBreakingPageFetcher.State.HALF_OPEN, fetcher.getState(PAGE));
+
+        // the crawl is stopped while the probe waits for the host
+        shop.error = new InterruptedIOException("interrupted");
+        assertThrows(InterruptedIOException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(CircuitBreakingPageFetcher.State.HALF_OPEN, fetcher.getState(PAGE));
+
+        // the next request is the probe, and the host still fails
+        shop.error = null;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(CircuitBreakingPageFetcher.State.OPEN, fetcher.getState(PAGE));
+        assertEquals(3, shop.requests.get());
+    }
+
+    @Test
+    void anInterruptedRequestDoesNotResetTheFailures() {
+        StubFetcher shop = new StubFetcher();
+        CircuitBreakingPageFetcher fetcher = new CircuitBreakingPageFetcher(shop, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        shop.status = 503;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        shop.error = new InterruptedIOException("interrupted");
+        assertThrows(InterruptedIOException.class, () -> fetcher.fetch(PAGE));
+        shop.error = null;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(CircuitBreakingPageFetcher.State.OPEN, fetcher.getState(PAGE));
+    }
+
+    @Test
+    void aPageThatCannotBeParsedIsAnAnswerOfTheHost() {
+        StubFetcher shop = new StubFetcher();
+        CircuitBreakingPageFetcher fetcher = new CircuitBreakingPageFetcher(shop, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        shop.error = new UncheckedIOException(new IOException("Unexpected end of the document"));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(UncheckedIOException.class, () -> fetcher.fetch(PAGE));
+        }
+        assertEquals(CircuitBreakingPageFetcher.State.CLOSED, fetcher.getState(PAGE));
+
+        // and resets the count of consecutive failures
+        shop.error = null;
+        shop.status = 503;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        shop.status = 200;
+        shop.error = new UncheckedIOException(new IOException("Unexpected end of the document"));
+        assertThrows(UncheckedIOException.class, () -> fetcher.fetch(PAGE));
+        shop.error = null;
+        shop.status = 503;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(CircuitBreakingPageFetcher.State.CLOSED, fetcher.getState(PAGE));
+    }
+}
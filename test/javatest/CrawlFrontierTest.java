@@ -0,0 +1,48 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.CrawlFrontier;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlFrontierTest {
+
+    @Test
+    void offerIgnoresDuplicateURLs() {
+        CrawlFrontier frontier = new CrawlFrontier();
+
+        assertTrue(frontier.offer(1, "https://www.auchan.ro/bacanie/c"));
+        assertFalse(frontier.offer(2, "https://www.auchan.ro/bacanie/c"));
+        assertEquals(1, frontier.size());
+    }
+
+    @Test
+    void takeReturnsLowerDepthLevelsFirst() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.offer(2, "https://www.auchan.ro/a/p");
+        frontier.offer(1, "https://www.auchan.ro/bacanie/c");
+        frontier.offer(2, "https://www.auchan.ro/b/p");
+
+        assertEquals(new Pair<>(1, "https://www.auchan.ro/bacanie/c"), frontier.take());
+        assertEquals(new Pair<>(2, "https://www.auchan.ro/a/p"), frontier.take());
+        assertEquals(new Pair<>(2, "https://www.auchan.ro/b/p"), frontier.take());
+    }
+
+    @Test
+    void takeReturnsNullOnceAllWorkIsDone() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.offer(1, "https://www.auchan.ro/bacanie/c");
+
+        Pair<Integer, String> start = frontier.take();
+        frontier.offer(2, "https://www.auchan.ro/a/p");
+        frontier.done(start);
+        frontier.done(frontier.take());
+
+        assertNull(frontier.take());
+        assertEquals(0, frontier.pending());
+    }
+}
@@ -0,0 +1,246 @@
+package javatest;
+
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.CatalogApiCrawler;
+import Proiect.MDS.web.shopScraping.ConcurrentProductCrawler;
+import Proiect.MDS.web.shopScraping.ProductCrawler;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import Proiect.MDS.web.shopScraping.fetch.FetchedPage;
+import Proiect.MDS.web.shopScraping.fetch.HttpClientPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark driver that crawls a {@link SyntheticShopServer} with {@link ProductCrawler},
+ * {@link ConcurrentProductCrawler}, {@link XMLCrawler} and {@link CatalogApiCrawler} and reports the throughput in pages per second
+ * and the p50/p99 page latency seen by the crawler. The products are extracted but not written anywhere.
+ * <p>
+ * The run is configured with system properties: {@code bench.products} (2000), {@code bench.latencyMs} (20),
+ * {@code bench.errorRate} (0.01) and {@code bench.concurrency} (16, for the concurrent crawler and the parallel
+ * calls of the catalog API).
+ */
+class CrawlerBenchmark {
+    private static final PrintStream REPORT = System.out;
+
+    public static void main(String[] args) throws IOException {
+        int products = Integer.getInteger("bench.products", 2000);
+        Duration latency = Duration.ofMillis(Integer.getInteger("bench.latencyMs", 20));
+        double errorRate = Double.parseDouble(System.getProperty("bench.errorRate", "0.01"));
+        int concurrency = Integer.getInteger("bench.concurrency", 16);
+
+        // keep the per-product log lines in the log files only
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+        REPORT.printf("%d products, %d ms latency, %.1f%% errors%n", products, latency.toMillis(), errorRate * 100);
+        run("ProductCrawler", products, latency, errorRate,
+                bench -> new ProductCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, bench.fetcher, bench.sink));
+        run("ConcurrentProductCrawler", products, latency, errorRate,
+                bench -> new ConcurrentProductCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, bench.fetcher,
+                        bench.sink, concurrency, null));
+        run("XMLCrawler", products, latency, errorRate,
+                bench -> new XMLCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, null, null, bench.fetcher, bench.sink));
+        run("CatalogApiCrawler", products, latency, errorRate,
+                bench -> new CatalogApiCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, bench.fetcher, bench.sink,
+                        CatalogApiCrawler.MAX_PAGE_SIZE, concurrency));
+        System.exit(0);
+    }
+
+    private static void run(String name, int products, Duration latency, double errorRate,
+                            Function<Run, ProductCrawler> crawlerFactory) throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 500, latency, errorRate, 42)) {
+            Run bench = new Run(server);
+            ProductCrawler crawler = crawlerFactory.apply(bench);
+
+            // the crawlers print every URL they visit
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long start = System.nanoTime();
+            try {
+                crawler.getProductsAuchan();
+            } finally {
+                System.setOut(REPORT);
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            long[] latencies = bench.fetcher.getLatencies();
+            REPORT.printf("%-26s %6d pages in %6.2f s = %8.1f pages/s, p50 %6.1f ms, p99 %6.1f ms, %d products, %d errors%n",
+                    name, latencies.length, elapsed.toMillis() / 1000.0, latencies.length * 1e9 / elapsed.toNanos(),
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    bench.pto.getInsertCount(), server.getErrorCount());
+        }
+    }
+
+    /**
+     * @param sortedNanos the sorted latencies
+     * @param quantile    the quantile, between 0 and 1
+     * @return the latency at the quantile (nearest rank), or 0 if there are no latencies
+     */
+    static long percentile(long[] sortedNanos, double quantile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sortedNanos.length);
+        return sortedNanos[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Everything a crawler under test needs, pointed at one server.
+     */
+    static final class Run {
+        final SyntheticShopFetcher fetcher;
+        final CountingTableOperations pto = new CountingTableOperations();
+        final DirectProductSink sink = new DirectProductSink(pto);
+
+        Run(SyntheticShopServer server) {
+            // a limiter that lets the crawler run as fast as the server answers
+            this(server, new AdaptiveHostLimiter(1_000_000, 64, 1, 256, Duration.ofSeconds(1)));
+        }
+
+        Run(SyntheticShopServer server, AdaptiveHostLimiter limiter) {
+            this.fetcher = new SyntheticShopFetcher(server, new HttpClientPageFetcher(limiter));
+        }
+    }
+
+    /**
+     * Sends the requests for the real shop to the synthetic server and records how long every page took.
+     * The documents keep the URL of the real shop as base URI, so the links they contain point at the real shop.
+     */
+    static final class SyntheticShopFetcher implements PageFetcher {
+        private final UnaryOperator<String> rewrite;
+        private final PageFetcher delegate;
+        private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        SyntheticShopFetcher(SyntheticShopServer server, PageFetcher delegate) {
+            this.rewrite = server::rewrite;
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param origin   the origin of a server started by another process
+         * @param delegate the fetcher that sends the requests
+         */
+        SyntheticShopFetcher(String origin, PageFetcher delegate) {
+            this.rewrite = url -> SyntheticShopServer.rewrite(url, origin);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Document fetch(String url) throws IOException {
+            long start = System.nanoTime();
+            try {
+                Document doc = delegate.fetch(rewrite.apply(url));
+                doc.setBaseUri(url);
+                return doc;
+            } finally {
+                latencies.add(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Downloads the page on the calling thread and leaves the parse to the thread that reads the document.
+         */
+        @Override
+        public FetchedPage fetchPageUnparsed(String url) throws IOException {
+            long start = System.nanoTime();
+            try {
+                FetchedPage page = delegate.fetchPageUnparsed(rewrite.apply(url));
+                return FetchedPage.downloaded(() -> {
+                    Document doc = page.getDocument();
+                    doc.setBaseUri(url);
+                    return doc;
+                });
+            } finally {
+                latencies.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public InputStream openResource(String url) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return delegate.openResource(rewrite.apply(url));
+            } finally {
+                latencies.add(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * @return the latency of every request so far in nanoseconds, sorted
+         */
+        long[] getLatencies() {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Table operations that only count the written products; every product looks new.
+     */
+    static final class CountingTableOperations extends ProductTableOperations {
+        private final AtomicInteger inserts = new AtomicInteger();
+        private final Queue<Product> inserted = new ConcurrentLinkedQueue<>();
+
+        CountingTableOperations() {
+            super(null);
+        }
+
+        @Override
+        public Product getProductByName(String name) {
+            return null;
+        }
+
+        @Override
+        public void insertProduct(Product product) {
+            inserts.incrementAndGet();
+            inserted.add(product);
+        }
+
+        @Override
+        public void updateProduct(Product product) {
+            inserts.incrementAndGet();
+            inserted.add(product);
+        }
+
+        @Override
+        public void writeBatch(List<Product> inserts, List<Product> updates) {
+            inserts.forEach(this::insertProduct);
+            updates.forEach(this::updateProduct);
+        }
+
+        @Override
+        public int touchProducts(Collection<Integer> ids) {
+            return ids.size();
+        }
+
+        int getInsertCount() {
+            return inserts.get();
+        }
+
+        Collection<Product> getInserted() {
+            return inserted;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package javatest;
+
+import Proiect.MDS.web.database.FailedUrlTableOperations;
+import Proiect.MDS.web.models.FailedUrl;
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.DeadLetterQueue;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.RecrawlPlanner;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import Proiect.MDS.web.shopScraping.fetch.CircuitOpenException;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadLetterQueueTest {
+    private static final String PAGE = "https://www.auchan.ro/lapte/p";
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    /**
+     * Keeps the failed URLs in memory instead of in MySQL.
+     */
+    static final class InMemoryFailedUrlTable extends FailedUrlTableOperations {
+        final Map<String, FailedUrl> rows = new ConcurrentHashMap<>();
+
+        InMemoryFailedUrlTable() {
+            super(null);
+        }
+
+        @Override
+        public void upsertFailedUrl(FailedUrl failedUrl) {
+            rows.put(failedUrl.getUrl(), failedUrl);
+        }
+
+        @Override
+        public void deleteFailedUrl(String url) {
+            rows.remove(url);
+        }
+
+        @Override
+        public List<FailedUrl> getAllFailedUrls() {
+            return new ArrayList<>(rows.values());
+        }
+    }
+
+    private static DeadLetterQueue queue(InMemoryFailedUrlTable table) {
+        return new DeadLetterQueue(table, 3, Duration.ofMinutes(1), Duration.ofMinutes(3), new Random(7));
+    }
+
+    @Test
+    void failuresAreRetriedWithGrowingJitteredDelaysUntilParked() {
+        InMemoryFailedUrlTable table = new InMemoryFailedUrlTable();
+        DeadLetterQueue queue = queue(table);
+        List<String> retried = new ArrayList<>();
+        DeadLetterQueue.Retrier failing = url -> {
+            retried.add(url);
+            throw new SocketTimeoutException("Read timed out");
+        };
+
+        FailedUrl first = queue.recordFailure(PAGE, new HttpStatusException("HTTP error fetching URL", 503, PAGE), NOW);
+        assertEquals(1, first.getAttempts());
+        assertEquals("org.jsoup.HttpStatusException", first.getErrorClass());
+        assertTrue(first.getErrorMessage().startsWith("HTTP 503"), first.getErrorMessage());
+        // between half and all of the one minute base delay
+        assertBetween(NOW.plusSeconds(30), NOW.plusMinutes(1), first.getNextAttempt());
+
+        assertEquals(0, queue.retryDue(first.getNextAttempt().minusSeconds(1), failing));
+        assertEquals(List.of(), retried);
+
+        queue.retryDue(first.getNextAttempt(), failing);
+        FailedUrl second = queue.getFailedUrl(PAGE);
+        assertEquals(List.of(PAGE), retried);
+        assertEquals(2, second.getAttempts());
+        assertEquals(SocketTimeoutException.class.getName(), second.getErrorClass());
+        assertEquals(NOW, second.getFirstFailed());
+        // two minutes, jittered
+        assertBetween(first.getNextAttempt().plusMinutes(1), first.getNextAttempt().plusMinutes(2), second.getNextAttempt());
+
+        queue.retryDue(second.getNextAttempt(), failing);
+        assertEquals(1, queue.getParkedCount());
+        // a parked URL stays in the table but is not retried
+        assertEquals(0, queue.retryDue(NOW.plusDays(1), failing));
+        assertEquals(2, retried.size());
+        assertEquals(3, table.rows.get(PAGE).getAttempts());
+    }
+
+    @Test
+    void anOpenCircuitDoesNotCountAsAnAttempt() {
+        DeadLetterQueue queue = queue(new InMemoryFailedUrlTable());
+        queue.recordFailure(PAGE, new SocketTimeoutException("Read timed out"), NOW);
+
+        FailedUrl deferred = queue.recordFailure(PAGE, new CircuitOpenException("www.auchan.ro", Duration.ofSeconds(10)), NOW.plusMinutes(1));
+
+        assertEquals(1, deferred.getAttempts());
+        assertEquals(NOW.plusMinutes(1).plusSeconds(10), deferred.getNextAttempt());
+    }
+
+    @Test
+    void theQueueSurvivesARestartAndForgetsRecoveredUrls() throws IOException {
+        InMemoryFailedUrlTable table = new InMemoryFailedUrlTable();
+        queue(table).recordFailure(PAGE, new SocketTimeoutException("Read timed out"), NOW);
+        queue(table).recordFailure("https://www.auchan.ro/paine/p", new SocketTimeoutException("Read timed out"), NOW);
+
+        DeadLetterQueue restarted = queue(table);
+        assertEquals(2, restarted.size());
+        List<String> retried = new ArrayList<>();
+        assertEquals(2, restarted.retryDue(NOW.plusMinutes(1), retried::add));
+
+        assertEquals(2, retried.size());
+        assertEquals(0, restarted.size());
+        assertEquals(Map.of(), table.rows);
+        assertNull(restarted.getFailedUrl(PAGE));
+    }
+
+    @Test
+    void recoveringFromErrorsFetchesOnlyTheFailedUrls() throws IOException {
+        int products = 200;
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 50, Duration.ZERO, 0.1, 3)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            XMLCrawler crawler = new XMLCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, null, null, bench.fetcher, bench.sink);
+            DeadLetterQueue queue = new DeadLetterQueue(new InMemoryFailedUrlTable(), 10, Duration.ofMinutes(1), Duration.ofMinutes(1), new Random(7));
+            crawler.setDeadLetterQueue(queue);
+
+            crawler.getProductsAuchan();
+            int failed = server.getErrorCount();
+            assertTrue(failed > 0);
+            assertEquals(failed, queue.size());
+            assertEquals(products - failed, bench.pto.getInsertCount());
+
+            LocalDateTime now = LocalDateTime.now(RecrawlPlanner.CRAWL_ZONE);
+            for (int round = 1; round <= 10 && queue.size() > 0; round++) {
+                queue.retryDue(now.plusMinutes(round), crawler::retryFailedUrl);
+            }
+
+            assertEquals(0, queue.size());
+            assertEquals(IntStream.range(0, products).mapToObj(i -> SyntheticShopServer.expectedProduct(i).getName()).collect(Collectors.toSet()),
+                    bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+            // the index, four sitemaps, every product once, and one more request per failure
+            assertEquals(1 + 4 + products + server.getErrorCount(), server.getRequestCount());
+        }
+    }
+
+    private static void assertBetween(LocalDateTime from, LocalDateTime to, LocalDateTime actual) {
+        assertTrue(!actual.isBefore(from) && !actual.isAfter(to), actual + " is not between " + from + " and " + to);
+    }
+}
@@ -0,0 +1,50 @@
+package javatest;
+
+import Proiect.MDS.web.database.Database;
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.FrontierTableOperations;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.SharedFrontier;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import Proiect.MDS.web.shopScraping.fetch.HttpClientPageFetcher;
+
+import java.time.Duration;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One process of a distributed crawl of a {@link SyntheticShopServer} started by another process, run by
+ * {@link DistributedCrawlTest}.
+ * <p>
+ * Arguments: the origin of the server, the URL of the frontier database, the crawl id, the node id, the lease in
+ * seconds and the batch size. Prints the number of products it wrote as {@code products=N}.
+ */
+class DistributedCrawlNode {
+
+    public static void main(String[] args) {
+        String origin = args[0];
+        String frontierUrl = args[1];
+        String crawlId = args[2];
+        String nodeId = args[3];
+        Duration lease = Duration.ofSeconds(Long.parseLong(args[4]));
+        int batchSize = Integer.parseInt(args[5]);
+
+        // keep the per-product log lines in the log files only
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+        CrawlerBenchmark.SyntheticShopFetcher fetcher = new CrawlerBenchmark.SyntheticShopFetcher(origin,
+                new HttpClientPageFetcher(new AdaptiveHostLimiter(1_000_000, 64, 1, 256, Duration.ofSeconds(1))));
+        CrawlerBenchmark.CountingTableOperations pto = new CrawlerBenchmark.CountingTableOperations();
+        SharedFrontier frontier = new SharedFrontier(new FrontierTableOperations(new Database(frontierUrl, "sa", "")),
+                crawlId, nodeId, batchSize, lease, 3);
+
+        new XMLCrawler(new ShopScraper(), new ProductScraper(fetcher), pto, null, null, fetcher,
+                new DirectProductSink(pto)).crawlDistributed(frontier);
+        System.out.println("products=" + pto.getInsertCount());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,303 @@
+package javatest;
+
+import Proiect.MDS.web.database.Database;
+import Proiect.MDS.web.database.DirectProductSink;
+import Proiect.MDS.web.database.FrontierTableOperations;
+import Proiect.MDS.web.database.FrontierTableOperations.FrontierUrl;
+import Proiect.MDS.web.shopScraping.DeadLetterQueue;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.SharedFrontier;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.UrlCanonicalizer;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import Proiect.MDS.web.shopScraping.fetch.FetchedPage;
+import Proiect.MDS.web.shopScraping.fetch.HttpClientPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistributedCrawlTest {
+    private static final String CRAWL = "2026-10-17";
+    private static final int MAX_CLAIMS = 3;
+
+    private static List<FrontierUrl> urls(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new FrontierUrl(UrlCanonicalizer.canonicalize(SyntheticShopServer.productUrl(i)), null))
+                .collect(Collectors.toList());
+    }
+
+    private static String memoryDatabase(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+    }
+
+    @Test
+    void concurrentClaimsGetDisjointBatches() throws InterruptedException, ExecutionException {
+        String url = memoryDatabase("disjoint");
+        new FrontierTableOperations(new Database(url, "sa", "")).enqueue(CRAWL, urls(200));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<List<String>>> claims = new ArrayList<>();
+        for (String owner : List.of("node-a", "node-b")) {
+            // every claimer has its own connection, as every process does
+            FrontierTableOperations frontier = new FrontierTableOperations(new Database(url, "sa", ""));
+            claims.add(executor.submit(() -> {
+                List<String> claimed = new ArrayList<>();
+                List<FrontierUrl> batch;
+                while (!(batch = frontier.claim(CRAWL, owner, 10, Duration.ofMinutes(5), MAX_CLAIMS)).isEmpty()) {
+                    batch.forEach(u -> claimed.add(u.url()));
+                }
+                return claimed;
+            }));
+        }
+        List<String> first = claims.get(0).get();
+        List<String> second = claims.get(1).get();
+        executor.shutdown();
+
+        Set<String> all = new HashSet<>(first);
+        all.addAll(second);
+        assertEquals(200, first.size() + second.size());
+        assertEquals(200, all.size());
+    }
+
+    @Test
+    void anExpiredLeaseIsClaimedByAnotherNode() throws InterruptedException {
+        String url = memoryDatabase("expired");
+        FrontierTableOperations nodeA = new FrontierTableOperations(new Database(url, "sa", ""));
+        FrontierTableOperations nodeB = new FrontierTableOperations(new Database(url, "sa", ""));
+        nodeA.enqueue(CRAWL, urls(5));
+        // seeding again, as every node does, adds nothing
+        nodeB.enqueue(CRAWL, urls(5));
+
+        List<FrontierUrl> claimedByA = nodeA.claim(CRAWL, "node-a", 10, Duration.ofSeconds(1), MAX_CLAIMS);
+        assertEquals(5, claimedByA.size());
+        assertTrue(nodeB.claim(CRAWL, "node-b", 10, Duration.ofMinutes(5), MAX_CLAIMS).isEmpty());
+
+        // node-a hangs past its lease
+        Thread.sleep(2100);
+        List<FrontierUrl> claimedByB = nodeB.claim(CRAWL, "node-b", 10, Duration.ofMinutes(5), MAX_CLAIMS);
+        assertEquals(claimedByA, claimedByB);
+
+        List<String> handled = claimedByA.stream().map(FrontierUrl::url).collect(Collectors.toList());
+        assertEquals(0, nodeA.complete(CRAWL, "node-a", handled));
+        assertEquals(5, nodeA.countUnfinished(CRAWL));
+        assertEquals(5, nodeB.complete(CRAWL, "node-b", handled));
+        assertEquals(0, nodeB.countUnfinished(CRAWL));
+    }
+
+    @Test
+    void aUrlWhoseLeasesKeepExpiringIsFailedInsteadOfClaimedAgain() throws InterruptedException {
+        FrontierTableOperations frontier = new FrontierTableOperations(new Database(memoryDatabase("exhausted"), "sa", ""));
+        frontier.enqueue(CRAWL, urls(3));
+        List<FrontierUrl> claimed = frontier.claim(CRAWL, "node-a", 10, Duration.ofSeconds(1), 1);
+        assertEquals(3, claimed.size());
+        assertTrue(frontier.failExhausted(CRAWL, 1, 10).isEmpty());
+
+        // node-a dies on these URLs, and so would every node claiming them
+        Thread.sleep(2100);
+        assertTrue(frontier.claim(CRAWL, "node-b", 10, Duration.ofMinutes(5), 1).isEmpty());
+        assertEquals(3, frontier.countUnfinished(CRAWL));
+        assertEquals(claimed.stream().map(FrontierUrl::url).collect(Collectors.toSet()),
+                new HashSet<>(frontier.failExhausted(CRAWL, 1, 10)));
+        assertEquals(0, frontier.countUnfinished(CRAWL));
+        assertTrue(frontier.failExhausted(CRAWL, 1, 10).isEmpty());
+    }
+
+    @Test
+    void completionsTheTableCouldNotWriteAreWrittenByTheNextFlush() throws IOException {
+        UnreliableFrontierTable table = new UnreliableFrontierTable(new Database(memoryDatabase("flush"), "sa", ""));
+        table.enqueue(CRAWL, urls(5));
+        SharedFrontier frontier = new SharedFrontier(table, CRAWL, "node-a", 10, Duration.ofMinutes(5), MAX_CLAIMS);
+        frontier.claim().forEach(url -> frontier.done(url.url()));
+
+        table.failing = true;
+        assertEquals(0, frontier.flush());
+        assertFalse(frontier.isFinished());
+        table.failing = false;
+        assertEquals(5, frontier.flush());
+        assertEquals(0, table.countUnfinished(CRAWL));
+        assertTrue(frontier.isFinished());
+    }
+
+    @Test
+    void aFrontierThatCannotBeCountedStopsTheWaitInsteadOfLoopingForever() {
+        UnreliableFrontierTable table = new UnreliableFrontierTable(new Database(memoryDatabase("count"), "sa", ""));
+        table.enqueue(CRAWL, urls(5));
+        SharedFrontier frontier = new SharedFrontier(table, CRAWL, "node-a", 10, Duration.ofMinutes(5), MAX_CLAIMS);
+
+        table.failing = true;
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class, () -> {
+            while (!frontier.isFinished()) {
+                Thread.onSpinWait();
+            }
+        }));
+    }
+
+    /**
+     * A frontier table whose writes and counts fail while {@code failing} is set, as when the database is down.
+     */
+    private static final class UnreliableFrontierTable extends FrontierTableOperations {
+        volatile boolean failing;
+
+        UnreliableFrontierTable(Database database) {
+            super(database);
+        }
+
+        @Override
+        public int complete(String crawlId, String owner, Collection<String> urls) {
+            return failing ? -1 : super.complete(crawlId, owner, urls);
+        }
+
+        @Override
+        public int countUnfinished(String crawlId) {
+            return failing ? -1 : super.countUnfinished(crawlId);
+        }
+    }
+
+    @Test
+    void aPageFailingWithAnUncheckedExceptionDoesNotKeepTheCrawlFromFinishing() throws IOException {
+        int products = 40;
+        String poison = UrlCanonicalizer.canonicalize(SyntheticShopServer.productUrl(7));
+        FrontierTableOperations frontierTable = new FrontierTableOperations(new Database(memoryDatabase("unchecked"), "sa", ""));
+        DeadLetterQueueTest.InMemoryFailedUrlTable failedUrls = new DeadLetterQueueTest.InMemoryFailedUrlTable();
+
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 100, Duration.ZERO, 0, 1);
+             DeadLetterQueue deadLetterQueue = new DeadLetterQueue(failedUrls)) {
+            PageFetcher fetcher = new PoisonPageFetcher(new CrawlerBenchmark.SyntheticShopFetcher(server,
+                    new HttpClientPageFetcher(new AdaptiveHostLimiter(1_000_000, 64, 1, 256, Duration.ofSeconds(1)))), poison);
+            CrawlerBenchmark.CountingTableOperations pto = new CrawlerBenchmark.CountingTableOperations();
+            XMLCrawler crawler = new XMLCrawler(new ShopScraper(), new ProductScraper(fetcher), pto, null, null, fetcher,
+                    new DirectProductSink(pto));
+            crawler.setDeadLetterQueue(deadLetterQueue);
+            SharedFrontier frontier = new SharedFrontier(frontierTable, CRAWL, "node-a", 10, Duration.ofMinutes(5), MAX_CLAIMS);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> crawler.crawlDistributed(frontier));
+
+            assertEquals(products - 1, pto.getInsertCount());
+            assertEquals(Set.of(poison), failedUrls.rows.keySet());
+            assertEquals(0, frontierTable.countUnfinished(CRAWL));
+            assertEquals(0, frontier.getInFlight());
+        }
+    }
+
+    /**
+     * Fails on one URL the way {@code URI.create} fails on a malformed one, with an unchecked exception.
+     */
+    private static final class PoisonPageFetcher implements PageFetcher {
+        private final PageFetcher delegate;
+        private final String poison;
+
+        PoisonPageFetcher(PageFetcher delegate, String poison) {
+            this.delegate = delegate;
+            this.poison = poison;
+        }
+
+        @Override
+        public Document fetch(String url) throws IOException {
+            check(url);
+            return delegate.fetch(url);
+        }
+
+        @Override
+        public FetchedPage fetchPageUnparsed(String url) throws IOException {
+            check(url);
+            return delegate.fetchPageUnparsed(url);
+        }
+
+        @Override
+        public InputStream openResource(String url) throws IOException {
+            check(url);
+            return delegate.openResource(url);
+        }
+
+        private void check(String url) {
+            if (url.equals(poison)) {
+                throw new IllegalArgumentException("Malformed escape pair in " + url);
+            }
+        }
+    }
+
+    @Test
+    void nodeProcessesShareTheCrawlAndTakeOverADeadNode() throws IOException, InterruptedException, SQLException {
+        Path directory = Files.createTempDirectory("frontier");
+        int products = 300;
+        int nodes = 3;
+        // this process opens the database first and serves it to the nodes
+        String url = "jdbc:h2:file:" + directory.resolve("frontier").toAbsolutePath() + ";AUTO_SERVER=TRUE;MODE=MySQL";
+        FrontierTableOperations frontier = new FrontierTableOperations(new Database(url, "sa", ""));
+        frontier.enqueue(CRAWL, urls(products));
+        // a node that claimed a batch and died: its URLs come back when the lease expires
+        List<FrontierUrl> abandoned = frontier.claim(CRAWL, "dead-node", 20, Duration.ofSeconds(2), MAX_CLAIMS);
+        assertEquals(20, abandoned.size());
+
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 100, Duration.ofMillis(5), 0, 1)) {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            List<Process> processes = new ArrayList<>();
+            List<Path> outputs = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                Path output = directory.resolve("node-" + i + ".out");
+                outputs.add(output);
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), DistributedCrawlNode.class.getName(),
+                        server.getOrigin(), url, CRAWL, "node-" + i, "60", "20")
+                        .redirectErrorStream(true)
+                        .redirectOutput(output.toFile())
+                        .start());
+            }
+
+            int written = 0;
+            for (int i = 0; i < nodes; i++) {
+                assertTrue(processes.get(i).waitFor(60, TimeUnit.SECONDS), "node-" + i + " did not finish");
+                String output = Files.readString(outputs.get(i));
+                assertEquals(0, processes.get(i).exitValue(), output);
+                written += Integer.parseInt(output.substring(output.lastIndexOf("products=") + "products=".length()).trim());
+            }
+
+            // every product page was fetched and written once, by one of the nodes
+            assertEquals(products, written);
+            assertEquals(nodes * (1 + 3) + products, server.getRequestCount());
+        }
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = connection.createStatement()) {
+            assertEquals(0, frontier.countUnfinished(CRAWL));
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(DISTINCT lease_owner) FROM crawl_frontier")) {
+                rs.next();
+                assertTrue(rs.getInt(1) > 1, "the crawl was not shared");
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM crawl_frontier WHERE claims = 2 AND lease_owner <> 'dead-node'")) {
+                rs.next();
+                assertEquals(abandoned.size(), rs.getInt(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.FastProductExtractor;
+import Proiect.MDS.web.shopScraping.SelectorProductExtractor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastProductExtractorTest {
+    private static final String URL = "https://www.auchan.ro/mazare-extrafina-bonduelle-400-g/p";
+    private static final String CATEGORY_CLASS = "vtex-breadcrumb-1-x-link vtex-breadcrumb-1-x-link--productBreadcrumb vtex-breadcrumb-1-x-link--3 "
+            + "vtex-breadcrumb-1-x-link--productBreadcrumb--3 dib pv1 link ph2 c-muted-2 hover-c-link";
+    private static final String SPECIFICATION_CLASS = "vtex-product-specifications-1-x-specificationValue "
+            + "vtex-product-specifications-1-x-specificationValue--first vtex-product-specifications-1-x-specificationValue--last";
+
+    private final SelectorProductExtractor reference = new SelectorProductExtractor();
+    private final FastProductExtractor fast = new FastProductExtractor();
+
+    private static String specification(String name, String value) {
+        return "<div class=\"" + SPECIFICATION_CLASS + "\" data-specification-name=\"" + name + "\" data-specification-value=\"" + value + "\"></div>";
+    }
+
+    private void assertSameProduct(String html) {
+        Document doc = Jsoup.parse(html, URL);
+        Optional<Product> expected = reference.extract(doc, URL);
+        Optional<Product> actual = fast.extract(doc, URL);
+        assertEquals(expected.map(Product::toString), actual.map(Product::toString));
+        assertEquals(expected.map(Product::computeContentHash), actual.map(Product::computeContentHash));
+    }
+
+    @Test
+    void extractsTheSameProductAsTheSelectors() {
+        String html = "<script>var price = '<span>1,00</span>';</script>"
+                + "<a class=\"" + CATEGORY_CLASS + "\">Conserve</a><a class=\"" + CATEGORY_CLASS + "\">de legume</a>"
+                + "<h1><span class=\"vtex-store-components-3-x-productBrand--productPage\"><b>Mazare</b> <span>extrafina</span></span></h1>"
+                + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span>7</span><span>,</span><span>49</span>"
+                + "<span>&nbsp;</span><span>lei</span></span>"
+                + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span>9,99</span></span>"
+                + specification("Greutate", "007.50")
+                + specification("Kcal pe 100g sau 100ml", "1E+2")
+                + specification("Grasimi (g sau ml)", "-0.40")
+                + specification("Tip Produs", "Conserve")
+                + specification("Tara de origine", "Franta")
+                + specification("Greutate", "0.400");
+
+        assertSameProduct(html);
+        Product product = fast.extract(Jsoup.parse(html, URL), URL).orElseThrow();
+        assertEquals(new BigDecimal("7.49"), product.getPrice());
+        assertEquals("0.400", product.getWeight().toPlainString());
+        assertEquals("Conserve de legume", product.getCategory());
+    }
+
+    @Test
+    void nameAndPriceFollowTheSelectorRules() {
+        // a name container that is not a span, a nested price span and a price that stops at the first non-numeric span
+        assertSameProduct("<div class=\"vtex-store-components-3-x-productBrand--productPage\">Brand <span>Lapte</span><span>Zuzu</span></div>"
+                + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span><span>5</span>,</span><span>49</span>"
+                + "<span>lei</span><span>99</span></span>");
+        // no span in the name container
+        assertSameProduct("<div class=\"vtex-store-components-3-x-productBrand--productPage\">Lapte</div>"
+                + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span>5,49</span></span>");
+        // no price
+        assertSameProduct("<span class=\"vtex-store-components-3-x-productBrand--productPage\">Lapte</span>");
+        assertTrue(fast.extract(Jsoup.parse("<p>Pagina nu exista</p>", URL), URL).isEmpty());
+    }
+
+    @Test
+    void invalidNumbersFailLikeTheSelectors() {
+        Document doc = Jsoup.parse("<span class=\"vtex-store-components-3-x-productBrand--productPage\">Lapte</span>"
+                + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span>5,49</span></span>"
+                + specification("Greutate", "1,5 kg"), URL);
+
+        assertThrows(NumberFormatException.class, () -> reference.extract(doc, URL));
+        assertThrows(NumberFormatException.class, () -> fast.extract(doc, URL));
+    }
+}
@@ -0,0 +1,116 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.CrawlFrontier;
+import Proiect.MDS.web.shopScraping.FrontierJournal;
+import org.javatuples.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontierJournalTest {
+
+    @Test
+    void restartedFrontierResumesWithUncompletedURLsOnly() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("frontier");
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            CrawlFrontier frontier = new CrawlFrontier(journal);
+            frontier.offer(1, "https://www.auchan.ro/bacanie/c");
+            frontier.done(frontier.take());
+            frontier.offer(2, "https://www.auchan.ro/a/p");
+            frontier.offer(2, "https://www.auchan.ro/b/p");
+            frontier.done(frontier.take());
+        }
+
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            CrawlFrontier frontier = new CrawlFrontier(journal);
+
+            assertFalse(frontier.offer(1, "https://www.auchan.ro/bacanie/c"));
+            assertEquals(new Pair<>(2, "https://www.auchan.ro/b/p"), frontier.take());
+            assertTrue(journal.isCompleted("https://www.auchan.ro/a/p"));
+        }
+    }
+
+    @Test
+    void checkpointCompactsTheLogWithoutLosingState() throws IOException {
+        Path directory = Files.createTempDirectory("frontier");
+        try (FrontierJournal journal = new FrontierJournal(directory, 2, Duration.ofHours(1))) {
+            journal.recordQueued(1, "https://www.auchan.ro/bacanie/c");
+            journal.recordQueued(2, "https://www.auchan.ro/a/p");
+            journal.recordDone("https://www.auchan.ro/bacanie/c");
+        }
+
+        assertTrue(Files.exists(directory.resolve("frontier.snapshot")));
+        try (FrontierJournal journal = new FrontierJournal(directory, 2, Duration.ofHours(1))) {
+            assertEquals(List.of(new Pair<>(2, "https://www.auchan.ro/a/p")), journal.getPendingEntries());
+            assertTrue(journal.isCompleted("https://www.auchan.ro/bacanie/c"));
+        }
+    }
+
+    @Test
+    void anAbandonedPageIsFetchedAgainByTheResumedCrawl() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("frontier");
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            CrawlFrontier frontier = new CrawlFrontier(journal);
+            frontier.offer(1, "https://www.auchan.ro/bacanie/c");
+            frontier.offer(1, "https://www.auchan.ro/lactate/c");
+            frontier.done(frontier.take());
+            // the category page could not be fetched
+            frontier.abandon(frontier.take());
+            assertNull(frontier.take());
+            assertEquals(1, frontier.abandoned());
+        }
+
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            CrawlFrontier frontier = new CrawlFrontier(journal);
+            assertEquals(new Pair<>(1, "https://www.auchan.ro/lactate/c"), frontier.take());
+        }
+    }
+
+    @Test
+    void theLogOfAnUnfinishedCheckpointIsReplayed() throws IOException {
+        Path directory = Files.createTempDirectory("frontier");
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            journal.recordQueued(1, "https://www.auchan.ro/bacanie/c");
+            journal.recordQueued(2, "https://www.auchan.ro/a/p");
+        }
+        // a crash after the checkpoint moved the log aside, before the snapshot was written
+        Files.move(directory.resolve("frontier.log"), directory.resolve("frontier.log.1"));
+
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            journal.recordDone("https://www.auchan.ro/bacanie/c");
+            assertEquals(List.of(new Pair<>(2, "https://www.auchan.ro/a/p")), journal.getPendingEntries());
+            journal.checkpoint();
+        }
+
+        assertFalse(Files.exists(directory.resolve("frontier.log.1")));
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            assertEquals(List.of(new Pair<>(2, "https://www.auchan.ro/a/p")), journal.getPendingEntries());
+            assertTrue(journal.isCompleted("https://www.auchan.ro/bacanie/c"));
+        }
+    }
+
+    @Test
+    void clearForgetsAFinishedCrawl() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("frontier");
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            CrawlFrontier frontier = new CrawlFrontier(journal);
+            frontier.offer(1, "https://www.auchan.ro/bacanie/c");
+            frontier.done(frontier.take());
+            assertNull(frontier.take());
+            journal.clear();
+        }
+
+        try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+            assertFalse(journal.hasState());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import Proiect.MDS.web.shopScraping.fetch.HedgingPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingPageFetcherTest {
+    private static final String PAGE = "https://www.auchan.ro/lapte/p";
+    private static final Duration SLOW = Duration.ofSeconds(2);
+
+    /**
+     * Answers in a millisecond, except for the requests made while {@link #slowNext} is set: the first of them
+     * takes {@link #SLOW}.
+     */
+    private static final class StubFetcher implements PageFetcher {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicBoolean slowNext = new AtomicBoolean();
+        private volatile boolean failing;
+
+        @Override
+        public Document fetch(String url) throws IOException {
+            requests.incrementAndGet();
+            sleep(slowNext.getAndSet(false) ? SLOW : Duration.ofMillis(1));
+            if (failing) {
+                throw new HttpStatusException("HTTP error fetching URL", 500, url);
+            }
+            return new Document(url);
+        }
+
+        @Override
+        public InputStream openResource(String url) {
+            return InputStream.nullInputStream();
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long timeFetch(PageFetcher fetcher) throws IOException {
+        long start = System.nanoTime();
+        fetcher.fetch(PAGE);
+        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+    }
+
+    @Test
+    void aSlowRequestIsAnsweredByItsHedge() throws IOException {
+        StubFetcher shop = new StubFetcher();
+        HedgingPageFetcher fetcher = new HedgingPageFetcher(shop, 0.1, Duration.ofMillis(50), 20);
+
+        for (int i = 0; i < 19; i++) {
+            fetcher.fetch(PAGE);
+        }
+        assertNull(fetcher.getHedgeDelay());
+        fetcher.fetch(PAGE);
+        // the p95 of one millisecond requests is below the minimum delay
+        assertEquals(Duration.ofMillis(50), fetcher.getHedgeDelay());
+
+        shop.slowNext.set(true);
+        assertTrue(timeFetch(fetcher) < SLOW.toMillis() / 2);
+        assertEquals(1, fetcher.getHedgeCount());
+        assertEquals(1, fetcher.getHedgeWins());
+        assertEquals(22, shop.requests.get());
+
+        // an error is not hedged, it is reported as is
+        shop.failing = true;
+        assertThrows(HttpStatusException.class, () -> fetcher.fetch(PAGE));
+        assertEquals(1, fetcher.getHedgeCount());
+    }
+
+    @Test
+    void theBudgetCapsTheExtraRequests() throws IOException {
+        StubFetcher shop = new StubFetcher();
+        HedgingPageFetcher fetcher = new HedgingPageFetcher(shop, 0.05, Duration.ofMillis(50), 20);
+        for (int i = 0; i < 38; i++) {
+            fetcher.fetch(PAGE);
+        }
+
+        // 40 requests allow 2 hedges, the third slow request waits for its answer
+        shop.slowNext.set(true);
+        assertTrue(timeFetch(fetcher) < SLOW.toMillis() / 2);
+        shop.slowNext.set(true);
+        assertTrue(timeFetch(fetcher) < SLOW.toMillis() / 2);
+        shop.slowNext.set(true);
+        assertTrue(timeFetch(fetcher) >= SLOW.toMillis());
+
+        assertEquals(2, fetcher.getHedgeCount());
+        assertEquals(41, fetcher.getRequestCount());
+    }
+
+    @Test
+    void stragglersNoLongerDelayTheCrawl() throws IOException {
+        int products = 200;
+        Duration stragglerDelay = Duration.ofSeconds(10);
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 50, Duration.ZERO, 0, 1)) {
+            // the concurrency is pinned: the latency of the stragglers would otherwise shrink it to one request
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server, new AdaptiveHostLimiter(1_000_000, 64, 64, 256, Duration.ofSeconds(1)));
+            HedgingPageFetcher fetcher = new HedgingPageFetcher(bench.fetcher, 0.1, Duration.ofMillis(500), 10);
+            // learn the latency of the shop before the stragglers start
+            for (int i = 0; i < 10; i++) {
+                fetcher.fetch(SyntheticShopServer.productUrl(i));
+            }
+            assertNotNull(fetcher.getHedgeDelay());
+            server.setStragglers(20, stragglerDelay);
+            int before = server.getRequestCount();
+
+            long start = System.nanoTime();
+            new XMLCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, null, null, fetcher, bench.sink)
+                    .getProductsAuchan();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            assertEquals(IntStream.range(0, products).mapToObj(i -> SyntheticShopServer.expectedProduct(i).getName()).collect(Collectors.toSet()),
+                    bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+            // ten products straggle, without hedging the crawl would take at least the straggler delay
+            assertTrue(elapsed.compareTo(stragglerDelay.dividedBy(2)) < 0, elapsed.toString());
+            assertTrue(fetcher.getHedgeWins() >= 10, fetcher.toString());
+            assertTrue(fetcher.getHedgeCount() <= 0.1 * fetcher.getRequestCount(), fetcher.toString());
+            // the index, four sitemaps, one request per product and the hedges
+            assertEquals(1 + 4 + products + fetcher.getHedgeCount(), server.getRequestCount() - before);
+        }
+    }
+}
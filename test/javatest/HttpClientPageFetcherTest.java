@@ -0,0 +1,135 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.fetch.AdaptiveHostLimiter;
+import Proiect.MDS.web.shopScraping.fetch.FetchedPage;
+import Proiect.MDS.web.shopScraping.fetch.HttpClientPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.PageCache;
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpClientPageFetcherTest {
+    private static final String PAGE = "<html><body><span class=\"name\">Lapte Zuzu 1.5%</span><a href=\"/bacanie/c\">Bacanie</a></body></html>";
+
+    private HttpServer server;
+    private HttpClientPageFetcher fetcher;
+    private String baseURL;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        baseURL = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = new HttpClientPageFetcher(new AdaptiveHostLimiter(1000, 2, 1, 4, Duration.ofMillis(10)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchDecompressesAndParsesTheBody() throws IOException {
+        server.createContext("/lapte/p", exchange -> {
+            byte[] body = gzip(PAGE);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        Document doc = fetcher.fetch(baseURL + "/lapte/p");
+
+        assertEquals("Lapte Zuzu 1.5%", doc.select("span.name").text());
+        assertEquals(baseURL + "/bacanie/c", doc.select("a").attr("abs:href"));
+    }
+
+    @Test
+    void fetchRetriesAThrottledRequest() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/lapte/p", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = PAGE.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        Document doc = fetcher.fetch(baseURL + "/lapte/p");
+
+        assertEquals("Lapte Zuzu 1.5%", doc.select("span.name").text());
+        assertEquals(2, requests.get());
+        assertEquals(1, fetcher.getHostLimiter().getMetrics().get("127.0.0.1").throttledCount());
+    }
+
+    @Test
+    void fetchFailsOnErrorStatus() {
+        server.createContext("/missing/p", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+
+        HttpStatusException e = assertThrows(HttpStatusException.class, () -> fetcher.fetch(baseURL + "/missing/p"));
+        assertEquals(404, e.getStatusCode());
+    }
+
+    @Test
+    void fetchPageReportsANotModifiedPageFromTheCache() throws IOException {
+        server.createContext("/lapte/p", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = PAGE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        PageCache cache = new PageCache(Files.createTempDirectory("page-cache"));
+        HttpClientPageFetcher cachingFetcher = new HttpClientPageFetcher(new AdaptiveHostLimiter(1000, 2, 1, 4, Duration.ofMillis(10)), cache);
+
+        FetchedPage first = cachingFetcher.fetchPage(baseURL + "/lapte/p");
+        FetchedPage second = cachingFetcher.fetchPage(baseURL + "/lapte/p");
+
+        assertFalse(first.isNotModified());
+        assertTrue(second.isNotModified());
+        assertEquals("Lapte Zuzu 1.5%", second.getDocument().select("span.name").text());
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
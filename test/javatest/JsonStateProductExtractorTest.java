@@ -0,0 +1,71 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.FastProductExtractor;
+import Proiect.MDS.web.shopScraping.JsonStateProductExtractor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonStateProductExtractorTest {
+    private static final String URL = "https://www.auchan.ro/mazare-extrafina-bonduelle-400-g/p";
+    private static final String CATEGORY_CLASS = "vtex-breadcrumb-1-x-link vtex-breadcrumb-1-x-link--productBreadcrumb vtex-breadcrumb-1-x-link--3 "
+            + "vtex-breadcrumb-1-x-link--productBreadcrumb--3 dib pv1 link ph2 c-muted-2 hover-c-link";
+    private static final String SPECIFICATION_CLASS = "vtex-product-specifications-1-x-specificationValue "
+            + "vtex-product-specifications-1-x-specificationValue--first vtex-product-specifications-1-x-specificationValue--last";
+    private static final String MARKUP = "<a class=\"" + CATEGORY_CLASS + "\">Conserve de legume</a>"
+            + "<h1><span class=\"vtex-store-components-3-x-productBrand--productPage\">Mazare extrafina Bonduelle 400 g</span></h1>"
+            + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span>7</span><span>,</span><span>50</span><span>lei</span></span>"
+            + "<div class=\"" + SPECIFICATION_CLASS + "\" data-specification-name=\"Greutate\" data-specification-value=\"0.4\"></div>"
+            + "<div class=\"" + SPECIFICATION_CLASS + "\" data-specification-name=\"Ingrediente\" data-specification-value=\"mazare, apa\"></div>";
+
+    private final JsonStateProductExtractor extractor = new JsonStateProductExtractor();
+
+    private static String state(String price) {
+        return "<template data-type=\"json\" data-varname=\"__STATE__\"><script>{"
+                // a related product comes first and has no specifications
+                + "\"Product:sp-9\":{\"productName\":\"Produs similar\",\"linkText\":\"produs-similar\",\"__typename\":\"Product\"},"
+                + "\"$Product:sp-9.items({\\\"filter\\\":\\\"ALL_AVAILABLE\\\"}).0.sellers.0.commertialOffer\":{\"Price\":1.99},"
+                + "\"Product:sp-1\":{\"productName\":\"Mazare extrafina Bonduelle 400 g\",\"linkText\":\"mazare-extrafina-bonduelle-400-g\","
+                + "\"categories\":{\"type\":\"json\",\"json\":[\"/Bacanie/Conserve/Conserve de legume/\",\"/Bacanie/Conserve/\"]},"
+                + "\"properties\":[{\"type\":\"id\",\"id\":\"Product:sp-1.properties.0\"},{\"type\":\"id\",\"id\":\"Product:sp-1.properties.1\"}],"
+                + "\"items({\\\"filter\\\":\\\"ALL_AVAILABLE\\\"})\":[{\"type\":\"id\",\"id\":\"Product:sp-1.items({\\\"filter\\\":\\\"ALL_AVAILABLE\\\"}).0\"}]},"
+                + "\"Product:sp-1.properties.0\":{\"name\":\"Greutate\",\"values\":{\"type\":\"json\",\"json\":[\"0.4\"]}},"
+                + "\"Product:sp-1.properties.1\":{\"name\":\"Ingrediente\",\"values\":{\"type\":\"json\",\"json\":[\"mazare, apa\"]}},"
+                + "\"Product:sp-1.items({\\\"filter\\\":\\\"ALL_AVAILABLE\\\"}).0\":{\"itemId\":\"1\",\"ean\":\"3083681068797\"},"
+                + "\"$Product:sp-1.items({\\\"filter\\\":\\\"ALL_AVAILABLE\\\"}).0.sellers.0.commertialOffer\":{\"Price\":" + price + ",\"ListPrice\":9.99}"
+                + "}</script></template>";
+    }
+
+    @Test
+    void readsTheProductOfThePageFromTheEmbeddedState() {
+        Document withMarkup = Jsoup.parse(MARKUP + state("7.5"), URL);
+        Optional<Product> expected = new FastProductExtractor().extract(withMarkup, URL);
+
+        assertEquals(expected.map(Product::toString), extractor.extract(withMarkup, URL).map(Product::toString));
+        // without the markup, only the state can give the product
+        Product product = extractor.extract(Jsoup.parse(state("7.5"), URL), URL).orElseThrow();
+        assertEquals(expected.map(Product::computeContentHash).orElseThrow(), product.computeContentHash());
+        assertEquals(new BigDecimal("7.50"), product.getPrice());
+        assertEquals("Conserve de legume", product.getCategory());
+        assertEquals("mazare, apa", product.getIngredients());
+    }
+
+    @Test
+    void pagesWithoutAUsableStateFallBackToTheMarkup() {
+        Optional<Product> expected = new FastProductExtractor().extract(Jsoup.parse(MARKUP, URL), URL);
+        assertTrue(expected.isPresent());
+
+        assertEquals(expected.map(Product::toString), extractor.extract(Jsoup.parse(MARKUP, URL), URL).map(Product::toString));
+        assertEquals(expected.map(Product::toString), extractor.extract(Jsoup.parse(MARKUP
+                + "<template data-varname=\"__STATE__\"><script>{\"Product:sp-1\":</script></template>", URL), URL).map(Product::toString));
+        assertEquals(expected.map(Product::toString), extractor.extract(Jsoup.parse(MARKUP + state("null"), URL), URL).map(Product::toString));
+        assertTrue(extractor.extract(Jsoup.parse("<p>Pagina nu exista</p>", URL), URL).isEmpty());
+    }
+}
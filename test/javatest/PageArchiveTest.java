@@ -0,0 +1,104 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.fetch.PageArchive;
+import Proiect.MDS.web.shopScraping.fetch.PageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.RecordingPageFetcher;
+import Proiect.MDS.web.shopScraping.fetch.ReplayPageFetcher;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageArchiveTest {
+    private static final String URL = "https://www.auchan.ro/lapte-zuzu-1-5-grasime-1-l/p";
+
+    @Test
+    void pagesSurviveReopeningAndLatestRecordWins() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        try (PageArchive archive = new PageArchive(directory)) {
+            archive.write(URL, "text/html; charset=UTF-8", "<p>5,49 lei</p>".getBytes(StandardCharsets.UTF_8));
+            archive.write("https://www.auchan.ro/sitemap.xml", "application/xml", new byte[]{1, 2, 3});
+            archive.write(URL, "text/html; charset=UTF-8", "<p>\u0162uic\u0103 4,99 lei</p>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (PageArchive archive = new PageArchive(directory)) {
+            assertEquals(2, archive.size());
+            PageArchive.ArchivedPage page = archive.read(URL).orElseThrow();
+            assertEquals("UTF-8", page.charset());
+            assertEquals("<p>\u0162uic\u0103 4,99 lei</p>", new String(page.body(), StandardCharsets.UTF_8));
+            assertArrayEquals(new byte[]{1, 2, 3}, archive.read("https://www.auchan.ro/sitemap.xml").orElseThrow().body());
+            assertFalse(archive.read("https://www.auchan.ro/missing/p").isPresent());
+        }
+    }
+
+    @Test
+    void replayServesRecordedPagesWithoutTheNetwork() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        AtomicInteger downloads = new AtomicInteger();
+        PageFetcher network = new PageFetcher() {
+            @Override
+            public Document fetch(String url) {
+                downloads.incrementAndGet();
+                return Jsoup.parse("<html><body><span class=\"name\">Lapte Zuzu 1.5%</span></body></html>", url);
+            }
+
+            @Override
+            public InputStream openResource(String url) {
+                downloads.incrementAndGet();
+                return new ByteArrayInputStream("<urlset/>".getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        try (PageArchive archive = new PageArchive(directory)) {
+            RecordingPageFetcher recorder = new RecordingPageFetcher(network, archive);
+            recorder.fetch(URL);
+            recorder.openResource("https://www.auchan.ro/sitemap.xml").close();
+        }
+
+        try (PageArchive archive = new PageArchive(directory)) {
+            ReplayPageFetcher replay = new ReplayPageFetcher(archive);
+            Document doc = replay.fetch(URL);
+            assertEquals("Lapte Zuzu 1.5%", doc.select("span.name").text());
+            assertEquals(URL, doc.location());
+            try (InputStream sitemap = replay.openResource("https://www.auchan.ro/sitemap.xml")) {
+                assertEquals("<urlset/>", new String(sitemap.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            HttpStatusException e = assertThrows(HttpStatusException.class, () -> replay.fetch("https://www.auchan.ro/missing/p"));
+            assertEquals(404, e.getStatusCode());
+        }
+        assertEquals(2, downloads.get());
+    }
+
+    @Test
+    void recordsAreIndividuallyGzippedWarcRecords() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        try (PageArchive archive = new PageArchive(directory)) {
+            archive.write(URL, "text/html; charset=UTF-8", "<p>a</p>".getBytes(StandardCharsets.UTF_8));
+            archive.write(URL + "?2", "text/html; charset=UTF-8", "<p>b</p>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // a multi-member gzip file decompresses to the concatenated records
+        String warc;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(directory.resolve("pages.warc.gz")))) {
+            warc = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(warc.startsWith("WARC/1.0\r\nWARC-Type: response\r\nWARC-Target-URI: " + URL + "\r\n"));
+        assertTrue(warc.contains("WARC-Target-URI: " + URL + "?2\r\n"));
+        assertEquals(2, Files.readAllLines(directory.resolve("pages.idx")).size());
+    }
+}
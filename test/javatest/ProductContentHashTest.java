@@ -0,0 +1,82 @@
+package javatest;
+
+import Proiect.MDS.web.database.Database;
+import Proiect.MDS.web.database.ProductTableOperations;
+import Proiect.MDS.web.models.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductContentHashTest {
+
+    private static Product.Builder milk() {
+        return new Product.Builder()
+                .name("Lapte Zuzu 1.5%")
+                .category("Lactate")
+                .price(new BigDecimal("8.5"))
+                .weight(new BigDecimal("1"))
+                .ingredients("lapte");
+    }
+
+    @Test
+    void sameContentGivesSameHashRegardlessOfDecimalScale() {
+        Product scraped = milk().build();
+        Product stored = milk().price(new BigDecimal("8.50")).weight(new BigDecimal("1.00")).id(42).build();
+
+        assertEquals(scraped.computeContentHash(), stored.computeContentHash());
+    }
+
+    @Test
+    void changedPriceChangesTheHash() {
+        assertNotEquals(milk().build().computeContentHash(), milk().price(new BigDecimal("8.99")).build().computeContentHash());
+    }
+
+    @Test
+    void textMovedBetweenFieldsChangesTheHash() {
+        Product first = milk().productType("lapte").ingredients(null).build();
+        Product second = milk().productType(null).ingredients("lapte").build();
+
+        assertNotEquals(first.computeContentHash(), second.computeContentHash());
+    }
+
+    @Test
+    void aPriceRefreshedAndBackToTheCrawledOneIsRewrittenByTheNextCrawl() throws SQLException {
+        String url = "jdbc:h2:mem:hash;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        ProductTableOperations pto = new ProductTableOperations(new Database(url, "sa", ""));
+        // finer than the two decimals the table keeps
+        Product scraped = milk().fats(new BigDecimal("1.525")).build();
+        pto.insertProduct(scraped);
+
+        // the refresh stores a promotional price
+        Product stored = pto.getAllProducts().get(0);
+        stored.setPrice(new BigDecimal("5.99"));
+        assertEquals(1, pto.updatePrices(List.of(stored)));
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT price, content_hash FROM products")) {
+            rs.next();
+            assertEquals(0, new BigDecimal("5.99").compareTo(rs.getBigDecimal("price")));
+            assertNull(rs.getString("content_hash"));
+        }
+
+        // the promotion ended: the page is the crawled one again, yet the stored row is not
+        Product refreshed = pto.getProductByName(scraped.getName());
+        assertNotEquals(scraped.computeContentHash(), refreshed.getContentHash());
+        scraped.setId(refreshed.getId());
+        pto.updateProduct(scraped);
+        Product rewritten = pto.getProductByName(scraped.getName());
+        assertEquals(0, new BigDecimal("8.5").compareTo(rewritten.getPrice()));
+        assertEquals(scraped.computeContentHash(), rewritten.getContentHash());
+    }
+}
@@ -0,0 +1,117 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.FastProductExtractor;
+import Proiect.MDS.web.shopScraping.ProductPageReader;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductPageReaderTest {
+    private static final String URL = "https://www.auchan.ro/mazare-extrafina-bonduelle-400-g/p";
+
+    /**
+     * Serves a page a few bytes at a time, like a slow network, and counts the bytes handed out.
+     */
+    private static final class TrickleStream extends InputStream {
+        private final byte[] data;
+        private int position;
+        private boolean closed;
+
+        private TrickleStream(String page) {
+            this.data = page.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, 7), data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static String productPage(String footer) {
+        return "<html><body><a class=\"vtex-breadcrumb-1-x-link\" href=\"/bacanie/d\">Bacanie</a>"
+                + "<h1><span class=\"vtex-store-components-3-x-productBrand--productPage\">Mazare extrafina</span></h1>"
+                + "<span class=\"vtex-product-price-1-x-currencyContainer--pdp\"><span>7</span><span>,</span><span>49</span><span>lei</span></span>"
+                + "<table class=\"vtex-product-specifications-1-x-specificationsTable\"><tr><td>"
+                + "<span class=\"vtex-product-specifications-1-x-specificationValue vtex-product-specifications-1-x-specificationValue--first "
+                + "vtex-product-specifications-1-x-specificationValue--last\" data-specification-name=\"Greutate\" data-specification-value=\"0.4\">0.4</span>"
+                + "</td></tr></table>" + footer + "</body></html>";
+    }
+
+    @Test
+    void readingStopsAtTheEndOfTheSpecifications() throws IOException {
+        String page = productPage("<footer>" + "<a href=\"/informatii\">Informatii</a>".repeat(2000) + "</footer>");
+        TrickleStream body = new TrickleStream(page);
+
+        Document blocks = new ProductPageReader().read(body, URL);
+
+        assertTrue(body.closed);
+        assertTrue(body.position < page.length() / 10, "read " + body.position + " of " + page.length() + " bytes");
+        assertTrue(blocks.select("footer").isEmpty());
+        FastProductExtractor extractor = new FastProductExtractor();
+        assertEquals(extractor.extract(Jsoup.parse(page, URL), URL).map(Product::toString),
+                extractor.extract(blocks, URL).map(Product::toString));
+    }
+
+    @Test
+    void pagesWithAnotherLayoutAreReadUpToTheMaximumSize() throws IOException {
+        String page = "<html><body>" + "<p>Oferta</p>".repeat(1000) + "</body></html>";
+
+        TrickleStream body = new TrickleStream(page);
+        assertEquals(1000, new ProductPageReader().read(body, URL).select("p").size());
+        assertEquals(page.length(), body.position);
+
+        TrickleStream limited = new TrickleStream(page);
+        new ProductPageReader(1024).read(limited, URL);
+        assertEquals(1024, limited.position);
+        assertTrue(limited.closed);
+    }
+
+    @Test
+    void streamingCrawlFindsEveryProduct() throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(60, 25, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            ProductScraper productScraper = new ProductScraper(bench.fetcher);
+            assertEquals(SyntheticShopServer.expectedProduct(3).computeContentHash(),
+                    productScraper.streamProductDetails(SyntheticShopServer.productUrl(3)).orElseThrow().computeContentHash());
+
+            XMLCrawler crawler = new XMLCrawler(new ShopScraper(), productScraper, bench.pto, null, null, bench.fetcher, bench.sink);
+            crawler.setStreamingExtraction(true);
+            crawler.getProductsAuchan();
+
+            Set<String> expected = IntStream.range(0, 60).mapToObj(i -> SyntheticShopServer.expectedProduct(i).getName())
+                    .collect(Collectors.toSet());
+            assertEquals(expected, bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+        }
+    }
+}
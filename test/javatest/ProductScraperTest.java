@@ -1,6 +1,7 @@
 package javatest;
 
 import Proiect.MDS.web.models.Product;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 import org.junit.jupiter.api.BeforeEach;
@@ -85,4 +86,25 @@ class ProductScraperTest {
 
         assertTrue(productOptional.isEmpty());
     }
+
+    @Test
+    void testGetProductDetailsFromParsedDocument() {
+        String urlProduct = "https://www.auchan.ro/suc-natural-de-mere-portocale-si-morcovi-olympus-1-5-l/p";
+        Document doc = Jsoup.parse("""
+                <a class="vtex-breadcrumb-1-x-link vtex-breadcrumb-1-x-link--productBreadcrumb vtex-breadcrumb-1-x-link--3 vtex-breadcrumb-1-x-link--productBreadcrumb--3 dib pv1 link ph2 c-muted-2 hover-c-link">Sucuri</a>
+                <span class="vtex-store-components-3-x-productBrand--productPage"><span>Suc natural Olympus 1.5 L</span></span>
+                <span class="vtex-product-price-1-x-currencyContainer--pdp"><span>12,49</span><span>lei</span></span>
+                <div class="vtex-product-specifications-1-x-specificationValue vtex-product-specifications-1-x-specificationValue--first vtex-product-specifications-1-x-specificationValue--last"
+                     data-specification-name="Greutate" data-specification-value="1.5"></div>
+                """, urlProduct);
+
+        Optional<Product> productOptional = productScraper.getProductDetails(doc, urlProduct);
+
+        assertTrue(productOptional.isPresent());
+        Product product = productOptional.get();
+        assertEquals("Sucuri", product.getCategory());
+        assertEquals("Suc natural Olympus 1.5 L", product.getName());
+        assertEquals(new BigDecimal("12.49"), product.getPrice());
+        assertEquals(new BigDecimal("1.5"), product.getWeight());
+    }
 }
@@ -0,0 +1,69 @@
+package javatest;
+
+import Proiect.MDS.web.models.CrawlUrl;
+import Proiect.MDS.web.models.Recipe;
+import Proiect.MDS.web.shopScraping.RecipeDemand;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecipeDemandTest {
+    private static final LocalDateTime CRAWLED = LocalDateTime.of(2023, 6, 15, 12, 0);
+
+    @Test
+    void ingredientsDemandEveryProductTheirPrefixMatches() {
+        List<CrawlUrl> crawlUrls = List.of(
+                crawled("https://www.auchan.ro/lapte-zuzu/p", "Lapte Zuzu 1.5% 1L"),
+                crawled("https://www.auchan.ro/lapte-napolact/p", "LAPTE Napolact 3.5% 1L"),
+                crawled("https://www.auchan.ro/ciocolata-cu-lapte/p", "Ciocolata cu lapte"),
+                crawled("https://www.auchan.ro/faina-alba/p", "Faina alba 1kg"),
+                crawled("https://www.auchan.ro/zahar/p", "Zahar 1kg"),
+                crawled("https://www.auchan.ro/not-a-product/p", null));
+        Recipe pancakes = new Recipe.Builder().products("Lapte, Faina,  Oua").build();
+
+        assertEquals(List.of("Lapte", "Faina", "Oua"), pancakes.ingredientTokens());
+        // the ingredient is a prefix of the name, like the lookup pricing the recipe
+        assertEquals(Set.of("https://www.auchan.ro/lapte-zuzu/p", "https://www.auchan.ro/lapte-napolact/p",
+                        "https://www.auchan.ro/faina-alba/p"),
+                RecipeDemand.demandedUrls(List.of(pancakes), crawlUrls));
+    }
+
+    @Test
+    void aDecimalCommaDoesNotSplitAnIngredient() {
+        List<CrawlUrl> crawlUrls = List.of(
+                crawled("https://www.auchan.ro/lapte-3-5/p", "Lapte 3,5% 1L"),
+                crawled("https://www.auchan.ro/lapte-1-5/p", "Lapte 1,5% 1L"),
+                crawled("https://www.auchan.ro/faina-alba/p", "Faina alba 1kg"));
+        Recipe recipe = new Recipe.Builder().products("Lapte 3,5%, Faina").build();
+
+        assertEquals(List.of("Lapte 3,5%", "Faina"), recipe.ingredientTokens());
+        assertEquals(Set.of("https://www.auchan.ro/lapte-3-5/p", "https://www.auchan.ro/faina-alba/p"),
+                RecipeDemand.demandedUrls(List.of(recipe), crawlUrls));
+    }
+
+    @Test
+    void ingredientsMatchNamesWithDiacriticsLikeTheDatabase() {
+        List<CrawlUrl> crawlUrls = List.of(
+                crawled("https://www.auchan.ro/faina-alba/p", "F\u0103in\u0103 alb\u0103 1kg"),
+                crawled("https://www.auchan.ro/oua/p", "OU\u0102 m\u0103rimea M 10 buc"),
+                crawled("https://www.auchan.ro/smantana/p", "Sm\u00e2nt\u00e2n\u0103 20% 200g"),
+                crawled("https://www.auchan.ro/sunca/p", "\u0218unc\u0103 presat\u0103"));
+        Recipe recipe = new Recipe.Builder().products("Faina, Oua, sm\u00e2ntana, sunca").build();
+
+        assertEquals(Set.of("https://www.auchan.ro/faina-alba/p", "https://www.auchan.ro/oua/p",
+                        "https://www.auchan.ro/smantana/p", "https://www.auchan.ro/sunca/p"),
+                RecipeDemand.demandedUrls(List.of(recipe), crawlUrls));
+    }
+
+    private static CrawlUrl crawled(String url, String productName) {
+        return new CrawlUrl.Builder()
+                .url(url)
+                .productName(productName)
+                .lastCrawled(CRAWLED)
+                .build();
+    }
+}
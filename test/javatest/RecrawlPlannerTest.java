@@ -0,0 +1,102 @@
+package javatest;
+
+import Proiect.MDS.web.models.CrawlUrl;
+import Proiect.MDS.web.shopScraping.RecrawlPlanner;
+import Proiect.MDS.web.shopScraping.SitemapEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecrawlPlannerTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 6, 15, 12, 0);
+
+    private final Map<String, CrawlUrl> knownUrls = Map.of(
+            "https://www.auchan.ro/fresh/p", crawled("https://www.auchan.ro/fresh/p", "2023-06-10T08:00", NOW.minusHours(2)),
+            "https://www.auchan.ro/changed/p", crawled("https://www.auchan.ro/changed/p", "2023-06-10T08:00", NOW.minusHours(3)),
+            "https://www.auchan.ro/stale/p", crawled("https://www.auchan.ro/stale/p", "2023-06-01T08:00", NOW.minusDays(9))
+    );
+    private final RecrawlPlanner planner = new RecrawlPlanner(knownUrls, Duration.ofDays(7), NOW);
+
+    @Test
+    void freshUrlsAreSkipped() {
+        assertFalse(planner.offer(entry("https://www.auchan.ro/fresh/p", "2023-06-10T08:00:00+02:00")));
+        assertEquals(1, planner.getSkipped());
+        assertNull(planner.poll());
+    }
+
+    @Test
+    void newChangedAndStaleUrlsAreScheduledInPriorityOrder() {
+        assertTrue(planner.offer(entry("https://www.auchan.ro/stale/p", "2023-06-01T08:00:00+02:00")));
+        assertTrue(planner.offer(entry("https://www.auchan.ro/changed/p", "2023-06-15T09:00:00+02:00")));
+        assertTrue(planner.offer(entry("https://www.auchan.ro/new/p", null)));
+
+        assertEquals(RecrawlPlanner.Reason.NEW, planner.poll().reason());
+        assertEquals(RecrawlPlanner.Reason.CHANGED, planner.poll().reason());
+        assertEquals(RecrawlPlanner.Reason.STALE, planner.poll().reason());
+    }
+
+    @Test
+    void staleUrlsAreOrderedByStaleness() {
+        RecrawlPlanner stalePlanner = new RecrawlPlanner(Map.of(
+                "https://www.auchan.ro/a/p", crawled("https://www.auchan.ro/a/p", null, NOW.minusDays(8)),
+                "https://www.auchan.ro/b/p", crawled("https://www.auchan.ro/b/p", null, NOW.minusDays(20))
+        ), Duration.ofDays(7), NOW);
+
+        stalePlanner.offer(entry("https://www.auchan.ro/a/p", null));
+        stalePlanner.offer(entry("https://www.auchan.ro/b/p", null));
+
+        assertEquals("https://www.auchan.ro/b/p", stalePlanner.poll().url());
+        assertEquals("https://www.auchan.ro/a/p", stalePlanner.poll().url());
+    }
+
+    @Test
+    void demandedUrlsHaveAShorterMaximumAge() {
+        RecrawlPlanner demandPlanner = new RecrawlPlanner(knownUrls, Duration.ofDays(7),
+                Set.of("https://www.auchan.ro/fresh/p", "https://www.auchan.ro/changed/p"), Duration.ofHours(1), NOW);
+
+        assertTrue(demandPlanner.offer(entry("https://www.auchan.ro/stale/p", "2023-06-01T08:00:00+02:00")));
+        // crawled two hours ago: fresh for the catalog, stale for a recipe
+        assertTrue(demandPlanner.offer(entry("https://www.auchan.ro/fresh/p", "2023-06-10T08:00:00+02:00")));
+        assertTrue(demandPlanner.offer(entry("https://www.auchan.ro/changed/p", "2023-06-15T09:00:00+02:00")));
+
+        assertEquals(1, demandPlanner.getDemanded());
+        assertEquals(RecrawlPlanner.Reason.CHANGED, demandPlanner.poll().reason());
+        assertEquals("https://www.auchan.ro/fresh/p", demandPlanner.poll().url());
+        assertEquals(RecrawlPlanner.Reason.STALE, demandPlanner.poll().reason());
+    }
+
+    @Test
+    void sitemapLocsAreMatchedOnTheirCanonicalForm() {
+        RecrawlPlanner demandPlanner = new RecrawlPlanner(knownUrls, Duration.ofDays(7),
+                Set.of("https://www.auchan.ro/fresh/p"), Duration.ofHours(1), NOW);
+
+        assertTrue(demandPlanner.offer(entry("HTTPS://www.Auchan.ro/Fresh/P/?utm_source=sitemap", "2023-06-10T08:00:00+02:00")));
+        assertFalse(demandPlanner.offer(entry("https://www.auchan.ro/changed/p/", "2023-06-10T08:00:00+02:00")));
+        assertFalse(demandPlanner.offer(entry("mailto:shop@auchan.ro", null)));
+
+        RecrawlPlanner.Candidate candidate = demandPlanner.poll();
+        assertEquals(RecrawlPlanner.Reason.DEMANDED, candidate.reason());
+        assertEquals("https://www.auchan.ro/fresh/p", candidate.url());
+        assertEquals(1, demandPlanner.getSkipped());
+    }
+
+    private static SitemapEntry entry(String url, String lastModified) {
+        return new SitemapEntry(url, SitemapEntry.parseLastModified(lastModified));
+    }
+
+    private static CrawlUrl crawled(String url, String sitemapLastModified, LocalDateTime lastCrawled) {
+        return new CrawlUrl.Builder()
+                .url(url)
+                .sitemapLastModified(sitemapLastModified == null ? null : LocalDateTime.parse(sitemapLastModified))
+                .lastCrawled(lastCrawled)
+                .build();
+    }
+}
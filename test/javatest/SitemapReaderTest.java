@@ -0,0 +1,85 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.SitemapEntry;
+import Proiect.MDS.web.shopScraping.SitemapReader;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SitemapReaderTest {
+    private static final String URLSET = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9" xmlns:image="http://www.google.com/schemas/sitemap-image/1.1">
+              <url>
+                <loc>https://www.auchan.ro/lapte-zuzu-1-5-l/p</loc>
+                <lastmod>2023-06-15T10:30:00+03:00</lastmod>
+                <image:image><image:loc>https://auchan.vteximg.com.br/arquivos/ids/1.jpg</image:loc></image:image>
+              </url>
+              <url>
+                <loc>https://www.auchan.ro/paine-feliata-400-g/p</loc>
+              </url>
+            </urlset>
+            """;
+
+    private final SitemapReader reader = new SitemapReader();
+
+    @Test
+    void readEmitsUrlEntriesWithLastModified() throws IOException, XMLStreamException {
+        List<SitemapEntry> entries = new ArrayList<>();
+
+        List<String> children = reader.read(stream(URLSET.getBytes(StandardCharsets.UTF_8)), entries::add);
+
+        assertTrue(children.isEmpty());
+        assertEquals(2, entries.size());
+        assertEquals("https://www.auchan.ro/lapte-zuzu-1-5-l/p", entries.get(0).loc());
+        assertEquals(OffsetDateTime.of(2023, 6, 15, 10, 30, 0, 0, ZoneOffset.ofHours(3)), entries.get(0).lastModified());
+        assertEquals("https://www.auchan.ro/paine-feliata-400-g/p", entries.get(1).loc());
+        assertNull(entries.get(1).lastModified());
+    }
+
+    @Test
+    void readDecompressesGzipContent() throws IOException, XMLStreamException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(URLSET.getBytes(StandardCharsets.UTF_8));
+        }
+        List<SitemapEntry> entries = new ArrayList<>();
+
+        reader.read(stream(compressed.toByteArray()), entries::add);
+
+        assertEquals(2, entries.size());
+    }
+
+    @Test
+    void readReturnsChildSitemapsOfAnIndex() throws IOException, XMLStreamException {
+        String index = """
+                <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <sitemap><loc>https://www.auchan.ro/sitemap/product-0.xml</loc><lastmod>2023-06-15</lastmod></sitemap>
+                  <sitemap><loc>https://www.auchan.ro/sitemap/product-1.xml.gz</loc></sitemap>
+                </sitemapindex>
+                """;
+        List<SitemapEntry> entries = new ArrayList<>();
+
+        List<String> children = reader.read(stream(index.getBytes(StandardCharsets.UTF_8)), entries::add);
+
+        assertTrue(entries.isEmpty());
+        assertEquals(List.of("https://www.auchan.ro/sitemap/product-0.xml", "https://www.auchan.ro/sitemap/product-1.xml.gz"), children);
+    }
+
+    private static ByteArrayInputStream stream(byte[] content) {
+        return new ByteArrayInputStream(content);
+    }
+}
@@ -0,0 +1,403 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded stand-in for the Auchan shop, used to load test the crawlers without touching the real site.
+ * <p>
+ * It generates {@code productCount} VTEX-style product pages with the breadcrumb, name, price and specification
+ * markup that {@code ShopScraper} selects, the four category pages the {@code ProductCrawler} starts from, and a
+ * sitemap index with {@code sitemap/product-N.xml} children for the {@code XMLCrawler}, and the paged VTEX search API
+ * of every department ({@code /api/catalog_system/pub/products/search/bacanie?_from=0&_to=49}) for the
+ * {@code CatalogApiCrawler}. Every response can be delayed by a fixed latency, and a share of the product pages fails
+ * with HTTP 500.
+ * <p>
+ * The pages and sitemaps link to the URLs of the real shop, so a crawler whose requests are pointed at this
+ * server through {@link #rewrite(String)} finds the same URLs as on the real site.
+ */
+class SyntheticShopServer implements AutoCloseable {
+    static final String SHOP_ORIGIN = "https://www.auchan.ro";
+    // category page of the ProductCrawler, department link checked by ShopScraper, category name
+    private static final String[][] CATEGORIES = {
+            {"/brutarie-cofetarie-gastro/c", "/brutarie,-cofetarie,-gastro/d", "Brutarie"},
+            {"/bacanie/c", "/bacanie/d", "Bacanie"},
+            {"/lactate-carne-mezeluri---peste/c", "/lactate,-carne,-mezeluri-&-peste/d", "Lactate"},
+            {"/fructe-si-legume/c", "/fructe-si-legume/d", "Fructe si legume"}};
+    private static final String BREADCRUMB_CLASS = "vtex-breadcrumb-1-x-link vtex-breadcrumb-1-x-link--productBreadcrumb "
+            + "vtex-breadcrumb-1-x-link--%1$d vtex-breadcrumb-1-x-link--productBreadcrumb--%1$d dib pv1 link ph2 c-muted-2 hover-c-link";
+    private static final String SPECIFICATION_CLASS = "vtex-product-specifications-1-x-specificationValue "
+            + "vtex-product-specifications-1-x-specificationValue--first vtex-product-specifications-1-x-specificationValue--last";
+    // VTEX routes the paths case-insensitively
+    private static final Pattern PRODUCT_PATH = Pattern.compile("/produs-sintetic-(\\d+)/p", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PRODUCT_SITEMAP_PATH = Pattern.compile("/sitemap/product-(\\d+)\\.xml");
+    private static final String SEARCH_PATH = "/api/catalog_system/pub/products/search";
+    private static final Pattern SEARCH_QUERY = Pattern.compile("_from=(\\d+)&_to=(\\d+)");
+    private static final int MAX_SEARCH_PAGE = 50;
+    private static final int RELATED_PRODUCTS = 3;
+
+    private final int productCount;
+    private final int productsPerSitemap;
+    private final Duration latency;
+    private final double errorRate;
+    private final Random random;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private volatile boolean linkVariants;
+    private volatile int stragglerInterval;
+    private volatile Duration stragglerDelay = Duration.ZERO;
+    private final Set<Integer> slowedProducts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts the server on a free port of the loopback interface.
+     *
+     * @param productCount       the number of product pages
+     * @param productsPerSitemap the number of URLs per {@code sitemap/product-N.xml}
+     * @param latency            the delay added to every response
+     * @param errorRate          the share of product page requests answered with HTTP 500, between 0 and 1
+     * @param seed               the seed of the error generator, so a run can be repeated
+     * @throws IOException if the server cannot be started
+     */
+    SyntheticShopServer(int productCount, int productsPerSitemap, Duration latency, double errorRate, long seed) throws IOException {
+        this.productCount = productCount;
+        this.productsPerSitemap = productsPerSitemap;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.random = new Random(seed);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return the origin of the server, e.g. {@code http://127.0.0.1:50123}
+     */
+    String getOrigin() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Points a URL of the real shop at this server.
+     *
+     * @param url a URL of the real shop, or of this server
+     * @return the same path on this server
+     */
+    String rewrite(String url) {
+        return rewrite(url, getOrigin());
+    }
+
+    /**
+     * Points a URL of the real shop at the server listening at {@code origin}, e.g. from another process.
+     *
+     * @param url    a URL of the real shop, or of the server
+     * @param origin the origin of the server
+     * @return the same path on the server
+     */
+    static String rewrite(String url, String origin) {
+        return url.startsWith(SHOP_ORIGIN) ? origin + url.substring(SHOP_ORIGIN.length()) : url;
+    }
+
+    /**
+     * Makes the category pages link every product a few more times, the way real listings do: with a fragment,
+     * with tracking parameters, with a trailing slash and in upper case. The variants lead to the same page.
+     *
+     * @param linkVariants true to add the variant links
+     */
+    void setLinkVariants(boolean linkVariants) {
+        this.linkVariants = linkVariants;
+    }
+
+    /**
+     * Makes the first request for every {@code stragglerInterval}-th product page much slower than the others, the
+     * long tail that an overloaded backend gives a real shop. Requesting the same page again is fast.
+     *
+     * @param stragglerInterval one product in this many is slow (the last of every group), or 0 for none
+     * @param stragglerDelay    the delay added to the first request of a slow product, on top of the latency
+     */
+    void setStragglers(int stragglerInterval, Duration stragglerDelay) {
+        this.stragglerInterval = stragglerInterval;
+        this.stragglerDelay = stragglerDelay;
+    }
+
+    /**
+     * @param index the index of the product, from 0
+     * @return true if the first request for the product page is slow
+     */
+    boolean isStraggler(int index) {
+        int interval = stragglerInterval;
+        return interval > 0 && index % interval == interval - 1;
+    }
+
+    /**
+     * @return the number of requests served, including the failed ones
+     */
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests answered with an injected error
+     */
+    int getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * @param index the index of the product, from 0
+     * @return the URL of the product page on the real shop
+     */
+    static String productUrl(int index) {
+        return SHOP_ORIGIN + productPath(index);
+    }
+
+    /**
+     * Builds the product the scrapers are expected to extract from a product page.
+     *
+     * @param index the index of the product, from 0
+     * @return the product shown on the page
+     */
+    static Product expectedProduct(int index) {
+        return new Product.Builder()
+                .name(productName(index))
+                .category(subcategoryName(index))
+                .price(new BigDecimal(priceUnits(index) + "." + priceCents(index)))
+                .productType(CATEGORIES[index % CATEGORIES.length][2])
+                .weight(new BigDecimal(weight(index)))
+                .ingredients("ingredient " + index)
+                .kcalPer100g(new BigDecimal(100 + index % 400))
+                .build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            sleep(latency);
+            String path = exchange.getRequestURI().getPath();
+            Matcher product = PRODUCT_PATH.matcher(path);
+            Matcher sitemap = PRODUCT_SITEMAP_PATH.matcher(path);
+            if (product.matches() && Integer.parseInt(product.group(1)) < productCount) {
+                if (isStraggler(Integer.parseInt(product.group(1))) && slowedProducts.add(Integer.parseInt(product.group(1)))) {
+                    sleep(stragglerDelay);
+                }
+                if (random.nextDouble() < errorRate) {
+                    errors.incrementAndGet();
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                send(exchange, "text/html; charset=UTF-8", productPage(Integer.parseInt(product.group(1))));
+            } else if (sitemap.matches()) {
+                send(exchange, "application/xml", productSitemap(Integer.parseInt(sitemap.group(1))));
+            } else if (path.equals("/sitemap.xml")) {
+                send(exchange, "application/xml", sitemapIndex());
+            } else if (path.startsWith(SEARCH_PATH) && categoryIndex(path.substring(SEARCH_PATH.length()) + "/c") >= 0) {
+                search(exchange, categoryIndex(path.substring(SEARCH_PATH.length()) + "/c"), exchange.getRequestURI().getQuery());
+            } else if (categoryIndex(path) >= 0) {
+                send(exchange, "text/html; charset=UTF-8", categoryPage(categoryIndex(path)));
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, String contentType, String body) throws IOException {
+        send(exchange, 200, contentType, body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String productPage(int index) {
+        String[] category = CATEGORIES[index % CATEGORIES.length];
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>")
+                .append(productName(index)).append("</title></head><body>")
+                .append("<div class=\"vtex-breadcrumb-1-x-container vtex-breadcrumb-1-x-container--productBreadcrumb\">")
+                .append(breadcrumb(1, category[1], category[2]))
+                .append(breadcrumb(2, category[1].replace("/d", "/raion/d"), "Raion"))
+                .append(breadcrumb(3, category[1].replace("/d", "/raion/" + (index % 10) + "/d"), subcategoryName(index)))
+                .append("</div><h1 class=\"vtex-store-components-3-x-productNameContainer\">")
+                .append("<span class=\"vtex-store-components-3-x-productBrand vtex-store-components-3-x-productBrand--productPage\">")
+                .append(productName(index)).append("</span></h1>")
+                .append("<span class=\"vtex-product-price-1-x-currencyContainer vtex-product-price-1-x-currencyContainer--pdp\">")
+                .append("<span class=\"vtex-product-price-1-x-currencyInteger\">").append(priceUnits(index)).append("</span>")
+                .append("<span class=\"vtex-product-price-1-x-currencyDecimal\">,</span>")
+                .append("<span class=\"vtex-product-price-1-x-currencyFraction\">").append(priceCents(index)).append("</span>")
+                .append("<span class=\"vtex-product-price-1-x-currencyLiteral\"> </span>")
+                .append("<span class=\"vtex-product-price-1-x-currencyCode\">lei</span></span>")
+                .append("<table class=\"vtex-product-specifications-1-x-specificationsTable\">")
+                .append(specification("Tip Produs", category[2]))
+                .append(specification("Greutate", weight(index)))
+                .append(specification("Ingrediente", "ingredient " + index))
+                .append(specification("Kcal pe 100g sau 100ml", String.valueOf(100 + index % 400)))
+                .append("</table><div class=\"vtex-shelf\">");
+        for (int related = 1; related <= RELATED_PRODUCTS; related++) {
+            int relatedIndex = (index + related) % productCount;
+            html.append("<a href=\"").append(productPath(relatedIndex)).append("\">").append(productName(relatedIndex)).append("</a>");
+        }
+        return html.append("</div></body></html>").toString();
+    }
+
+    private static String breadcrumb(int level, String href, String text) {
+        return "<a class=\"" + String.format(BREADCRUMB_CLASS, level) + "\" href=\"" + href + "\">" + text + "</a>";
+    }
+
+    private static String specification(String name, String value) {
+        return "<tr><td>" + name + "</td><td><span class=\"" + SPECIFICATION_CLASS + "\" data-specification-name=\"" + name
+                + "\" data-specification-value=\"" + value + "\">" + value + "</span></td></tr>";
+    }
+
+    /**
+     * Answers a page of the search API of a department like VTEX: at most {@value #MAX_SEARCH_PAGE} products,
+     * HTTP 206 with the total in the {@code resources} header, an empty array past the end.
+     */
+    private void search(HttpExchange exchange, int categoryIndex, String query) throws IOException {
+        Matcher range = SEARCH_QUERY.matcher(query == null ? "" : query);
+        if (!range.find()) {
+            send(exchange, 400, "application/json", "{\"error\":\"_from and _to are required\"}");
+            return;
+        }
+        int from = Integer.parseInt(range.group(1));
+        int to = Integer.parseInt(range.group(2));
+        if (to < from || to - from >= MAX_SEARCH_PAGE) {
+            send(exchange, 400, "application/json", "{\"error\":\"The maximum page size is 50\"}");
+            return;
+        }
+        int total = (productCount - categoryIndex + CATEGORIES.length - 1) / CATEGORIES.length;
+        StringBuilder json = new StringBuilder("[");
+        for (int position = from; position <= to && position < total; position++) {
+            if (position > from) {
+                json.append(',');
+            }
+            json.append(searchResult(categoryIndex + position * CATEGORIES.length));
+        }
+        exchange.getResponseHeaders().set("resources", from + "-" + to + "/" + total);
+        send(exchange, 206, "application/json; charset=utf-8", json.append(']').toString());
+    }
+
+    private static String searchResult(int index) {
+        String[] category = CATEGORIES[index % CATEGORIES.length];
+        String path = "/" + category[2] + "/Raion/" + subcategoryName(index) + "/";
+        // the API drops the trailing zeros of the price (7.5 for 7,50 lei)
+        String price = new BigDecimal(priceUnits(index) + "." + priceCents(index)).stripTrailingZeros().toPlainString();
+        return "{\"productId\":\"" + index + "\",\"productName\":\"" + productName(index) + "\","
+                + "\"linkText\":\"produs-sintetic-" + index + "\",\"link\":\"" + productUrl(index) + "\","
+                + "\"categories\":[\"" + path + "\",\"/" + category[2] + "/Raion/\",\"/" + category[2] + "/\"],"
+                + "\"allSpecifications\":[\"Tip Produs\",\"Greutate\",\"Ingrediente\",\"Kcal pe 100g sau 100ml\"],"
+                + "\"Tip Produs\":[\"" + category[2] + "\"],\"Greutate\":[\"" + weight(index) + "\"],"
+                + "\"Ingrediente\":[\"ingredient " + index + "\"],\"Kcal pe 100g sau 100ml\":[\"" + (100 + index % 400) + "\"],"
+                + "\"items\":[{\"itemId\":\"" + index + "\",\"sellers\":[{\"sellerId\":\"1\",\"sellerDefault\":true,"
+                + "\"commertialOffer\":{\"Price\":" + price + ",\"ListPrice\":" + price + ",\"AvailableQuantity\":100}}]}]}";
+    }
+
+    private String categoryPage(int categoryIndex) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>")
+                .append(CATEGORIES[categoryIndex][2]).append("</title></head><body><div class=\"vtex-search-result\">");
+        for (int index = categoryIndex; index < productCount; index += CATEGORIES.length) {
+            html.append("<a href=\"").append(productPath(index)).append("\">").append(productName(index)).append("</a>");
+            if (linkVariants) {
+                String path = productPath(index);
+                html.append("<a href=\"").append(path).append("#reviews\">Recenzii</a>")
+                        .append("<a href=\"").append(path).append("?utm_source=newsletter&amp;utm_medium=email\">Oferta</a>")
+                        .append("<a href=\"").append(SHOP_ORIGIN).append(path).append("/\">").append(productName(index)).append("</a>")
+                        .append("<a href=\"").append(path.toUpperCase()).append("\">").append(productName(index)).append("</a>");
+            }
+        }
+        return html.append("</div></body></html>").toString();
+    }
+
+    private String sitemapIndex() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">")
+                .append("<sitemap><loc>").append(SHOP_ORIGIN).append("/sitemap/category-0.xml</loc></sitemap>");
+        for (int sitemap = 0; sitemap * productsPerSitemap < productCount; sitemap++) {
+            xml.append("<sitemap><loc>").append(SHOP_ORIGIN).append("/sitemap/product-").append(sitemap).append(".xml</loc></sitemap>");
+        }
+        return xml.append("</sitemapindex>").toString();
+    }
+
+    private String productSitemap(int sitemap) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
+        int end = Math.min(productCount, (sitemap + 1) * productsPerSitemap);
+        for (int index = sitemap * productsPerSitemap; index < end; index++) {
+            xml.append("<url><loc>").append(productUrl(index)).append("</loc>")
+                    .append("<lastmod>2023-06-01T10:00:00+03:00</lastmod></url>");
+        }
+        return xml.append("</urlset>").toString();
+    }
+
+    private static int categoryIndex(String path) {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (CATEGORIES[i][0].equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String productPath(int index) {
+        return "/produs-sintetic-" + index + "/p";
+    }
+
+    private static String productName(int index) {
+        return "Produs sintetic " + index;
+    }
+
+    private static String subcategoryName(int index) {
+        return "Subcategorie " + (index % 10);
+    }
+
+    private static int priceUnits(int index) {
+        return 1 + index % 50;
+    }
+
+    private static String priceCents(int index) {
+        return String.format("%02d", index * 7 % 100);
+    }
+
+    private static String weight(int index) {
+        return (1 + index % 9) + ".5";
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
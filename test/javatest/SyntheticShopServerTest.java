@@ -0,0 +1,51 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticShopServerTest {
+
+    @Test
+    void productPagesMatchTheMarkupTheScrapersSelect() throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(10, 5, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            Product product = new ProductScraper(bench.fetcher).getProductDetails(SyntheticShopServer.productUrl(7)).orElseThrow();
+            Product expected = SyntheticShopServer.expectedProduct(7);
+
+            assertEquals(expected.getName(), product.getName());
+            assertEquals(expected.getCategory(), product.getCategory());
+            assertEquals(expected.getPrice(), product.getPrice());
+            assertEquals(expected.getWeight(), product.getWeight());
+            assertEquals(expected.computeContentHash(), product.computeContentHash());
+            assertTrue(ShopScraper.checkATagsForHref(bench.fetcher.fetch(SyntheticShopServer.productUrl(7))));
+        }
+    }
+
+    @Test
+    void sitemapCrawlFindsEveryProduct() throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(120, 50, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            new XMLCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, null, null, bench.fetcher, bench.sink)
+                    .getProductsAuchan();
+
+            Set<String> expected = IntStream.range(0, 120).mapToObj(i -> SyntheticShopServer.expectedProduct(i).getName())
+                    .collect(Collectors.toSet());
+            assertEquals(expected, bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+            // the index, three product sitemaps and 120 product pages; the category sitemap is skipped
+            assertEquals(124, server.getRequestCount());
+            assertEquals(124, bench.fetcher.getLatencies().length);
+        }
+    }
+}
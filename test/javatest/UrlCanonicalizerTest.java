@@ -0,0 +1,91 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.ConcurrentProductCrawler;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.UrlCanonicalizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static Proiect.MDS.web.shopScraping.UrlCanonicalizer.canonicalize;
+import static Proiect.MDS.web.shopScraping.UrlCanonicalizer.classify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlCanonicalizerTest {
+    private static final String PRODUCT = "https://www.auchan.ro/mazare-extrafina-bonduelle-400-g/p";
+
+    @Test
+    void variantsOfAProductPageHaveOneCanonicalForm() {
+        assertEquals(PRODUCT, canonicalize(PRODUCT));
+        assertEquals(PRODUCT, canonicalize(PRODUCT + "#"));
+        assertEquals(PRODUCT, canonicalize(PRODUCT + "#reviews"));
+        assertEquals(PRODUCT, canonicalize(PRODUCT + "/"));
+        assertEquals(PRODUCT, canonicalize(PRODUCT + "?utm_source=newsletter&utm_medium=email"));
+        assertEquals(PRODUCT, canonicalize(PRODUCT + "?skuId=61723"));
+        assertEquals(PRODUCT, canonicalize("HTTPS://WWW.Auchan.ro:443//Mazare-Extrafina-Bonduelle-400-G/P"));
+        assertEquals(PRODUCT, canonicalize("  " + PRODUCT + "\n"));
+    }
+
+    @Test
+    void otherPagesKeepTheirMeaningfulParameters() {
+        assertEquals("https://www.auchan.ro/bacanie/c?order=OrderByPriceASC&page=2",
+                canonicalize("https://www.auchan.ro/bacanie/c?page=2&gclid=abc&order=OrderByPriceASC&fbclid=def#top"));
+        assertEquals("https://www.auchan.ro/", canonicalize("https://www.auchan.ro"));
+        assertEquals("https://www.auchan.ro/", canonicalize("https://www.auchan.ro?utm_campaign=x"));
+        // outside the shop the path is case sensitive
+        assertEquals("http://example.com/Catalog/Page?a=1", canonicalize("http://Example.COM:80/Catalog/Page/?a=1"));
+        assertEquals("http://example.com:8080/", canonicalize("http://example.com:8080"));
+
+        assertNull(canonicalize("htp://malformed.url"));
+        assertNull(canonicalize("malformed"));
+        assertNull(canonicalize("mailto:contact@auchan.ro"));
+        assertNull(canonicalize("javascript:void(0)"));
+        assertNull(canonicalize("https:///p"));
+        assertNull(canonicalize("https://www.auchan.ro/lapte zuzu/p"));
+    }
+
+    @Test
+    void urlsAreClassifiedByTheirCanonicalPath() {
+        assertEquals(UrlCanonicalizer.Kind.PRODUCT, classify(PRODUCT));
+        assertEquals(UrlCanonicalizer.Kind.CATEGORY, classify(canonicalize("https://www.auchan.ro/bacanie/c?page=2")));
+        assertEquals(UrlCanonicalizer.Kind.CATEGORY, classify(canonicalize("https://www.auchan.ro/bacanie/conserve/d/")));
+        assertEquals(UrlCanonicalizer.Kind.OTHER, classify(canonicalize("https://www.auchan.ro/")));
+        assertEquals(UrlCanonicalizer.Kind.OTHER, classify(canonicalize("https://www.auchan.ro/promotii")));
+        assertEquals(UrlCanonicalizer.Kind.OTHER, classify(canonicalize("https://www.auchan.ro/lapte/pp")));
+        assertTrue(UrlCanonicalizer.isProductPage(PRODUCT + "#"));
+    }
+
+    @Test
+    void linkVariantsOnCategoryPagesAreFetchedOnce() throws IOException {
+        int products = 120;
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 25, Duration.ZERO, 0, 1)) {
+            server.setLinkVariants(true);
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            Set<String> rawLinks = new HashSet<>();
+            for (String category : new String[]{"/brutarie-cofetarie-gastro/c", "/bacanie/c", "/lactate-carne-mezeluri---peste/c", "/fructe-si-legume/c"}) {
+                bench.fetcher.fetch(SyntheticShopServer.SHOP_ORIGIN + category).select("a[href]")
+                        .forEach(link -> rawLinks.add(link.attr("abs:href")));
+            }
+            int before = server.getRequestCount();
+
+            new ConcurrentProductCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, bench.fetcher, bench.sink,
+                    8, null).getProductsAuchan();
+
+            // every product is linked five times, but only the four category pages and one page per product are fetched
+            assertEquals(5 * products, rawLinks.size());
+            assertEquals(4 + products, server.getRequestCount() - before);
+            assertEquals(IntStream.range(0, products).mapToObj(i -> SyntheticShopServer.expectedProduct(i).getName()).collect(Collectors.toSet()),
+                    bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+            assertEquals(products, bench.pto.getInsertCount());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package javatest;
+
+import Proiect.MDS.web.shopScraping.BloomFilterVisitedUrlSet;
+import Proiect.MDS.web.shopScraping.FingerprintVisitedUrlSet;
+import Proiect.MDS.web.shopScraping.VisitedUrlSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitedUrlSetTest {
+    private static final int URL_COUNT = 200_000;
+
+    @Test
+    void fingerprintSetIsExactAndGrows() {
+        VisitedUrlSet visited = new FingerprintVisitedUrlSet(16);
+
+        for (int i = 0; i < URL_COUNT; i++) {
+            assertTrue(visited.add(url(i)));
+        }
+        for (int i = 0; i < URL_COUNT; i++) {
+            assertFalse(visited.add(url(i)));
+            assertTrue(visited.contains(url(i)));
+        }
+
+        assertFalse(visited.contains(url(URL_COUNT)));
+        assertEquals(URL_COUNT, visited.size());
+        assertTrue(visited.memoryBytes() <= URL_COUNT * 16L * 2);
+    }
+
+    @Test
+    void fingerprintSetAcceptsEachURLOnceAcrossThreads() throws InterruptedException {
+        VisitedUrlSet visited = new FingerprintVisitedUrlSet();
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < URL_COUNT / 4; i++) {
+                    if (visited.add(url(i))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(URL_COUNT / 4, accepted.get());
+        assertEquals(URL_COUNT / 4, visited.size());
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndBoundedFalsePositives() {
+        BloomFilterVisitedUrlSet visited = new BloomFilterVisitedUrlSet(URL_COUNT, 0.01);
+
+        for (int i = 0; i < URL_COUNT; i++) {
+            visited.add(url(i));
+        }
+        int falsePositives = 0;
+        for (int i = URL_COUNT; i < 2 * URL_COUNT; i++) {
+            if (visited.contains(url(i))) {
+                falsePositives++;
+            }
+        }
+
+        for (int i = 0; i < URL_COUNT; i++) {
+            assertTrue(visited.contains(url(i)));
+        }
+        assertTrue(falsePositives < URL_COUNT * 0.02, "false positives: " + falsePositives);
+        assertTrue(visited.memoryBytes() < 300_000);
+    }
+
+    private static String url(int i) {
+        return "https://www.auchan.ro/produs-" + i + "/p";
+    }
+}
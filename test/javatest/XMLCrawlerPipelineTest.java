@@ -0,0 +1,120 @@
+package javatest;
+
+import Proiect.MDS.web.models.Product;
+import Proiect.MDS.web.shopScraping.FrontierJournal;
+import Proiect.MDS.web.shopScraping.PipelineStage;
+import Proiect.MDS.web.shopScraping.ProductScraper;
+import Proiect.MDS.web.shopScraping.ShopScraper;
+import Proiect.MDS.web.shopScraping.XMLCrawler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XMLCrawlerPipelineTest {
+
+    private static Set<String> expected(int products) {
+        return IntStream.range(0, products).mapToObj(i -> SyntheticShopServer.expectedProduct(i).getName()).collect(Collectors.toSet());
+    }
+
+    @Test
+    void everyStageSeesEveryProduct() throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(300, 50, Duration.ZERO, 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            XMLCrawler crawler = new XMLCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, null, null, bench.fetcher, bench.sink);
+            crawler.setPipeline(3, 8, 2, 1, 16);
+
+            crawler.getProductsAuchan();
+
+            assertEquals(expected(300), bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+            assertEquals(300, bench.pto.getInsertCount());
+            // the index, six product sitemaps and one request per product
+            assertEquals(1 + 6 + 300, server.getRequestCount());
+
+            List<PipelineStage<?, ?>> stages = crawler.getPipelineStages();
+            assertEquals(List.of("sitemap", "fetch", "parse", "persist"), stages.stream().map(PipelineStage::getName).toList());
+            assertEquals(List.of(6L, 300L, 300L, 300L), stages.stream().map(PipelineStage::getProcessed).toList());
+            assertEquals(List.of(300L, 300L, 300L, 0L), stages.stream().map(PipelineStage::getEmitted).toList());
+            stages.forEach(stage -> assertEquals(0, stage.getFailed(), stage.toString()));
+        }
+    }
+
+    @Test
+    void aSlowStageHoldsBackTheStagesBeforeIt() throws IOException {
+        try (SyntheticShopServer server = new SyntheticShopServer(120, 60, Duration.ofMillis(5), 0, 1)) {
+            CrawlerBenchmark.Run bench = new CrawlerBenchmark.Run(server);
+            XMLCrawler crawler = new XMLCrawler(new ShopScraper(), new ProductScraper(bench.fetcher), bench.pto, null, null, bench.fetcher, bench.sink);
+            crawler.setPipeline(2, 2, 2, 1, 4);
+
+            crawler.getProductsAuchan();
+
+            assertEquals(expected(120), bench.pto.getInserted().stream().map(Product::getName).collect(Collectors.toSet()));
+            List<PipelineStage<?, ?>> stages = crawler.getPipelineStages();
+            // the sitemaps list the URLs much faster than two fetchers download them
+            assertTrue(stages.get(0).getOutputBlockedNanos() > 0, stages.get(0).toString());
+            stages.forEach(stage -> assertTrue(stage.getMaxQueueDepth() <= 4, stage.toString()));
+        }
+    }
+
+    @Test
+    void anInterruptedCrawlKeepsItsJournalForTheNextRun() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("journal");
+        int products = 200;
+        try (SyntheticShopServer server = new SyntheticShopServer(products, 50, Duration.ofMillis(10), 0, 1)) {
+            CrawlerBenchmark.Run first = new CrawlerBenchmark.Run(server);
+            int completed;
+            try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+                XMLCrawler crawler = new XMLCrawler(new ShopScraper(), new ProductScraper(first.fetcher), first.pto, null, journal,
+                        first.fetcher, first.sink);
+                crawler.setPipeline(1, 2, 1, 1, 4);
+                Thread crawl = new Thread(crawler::getProductsAuchan);
+                crawl.start();
+                while (first.pto.getInsertCount() < 20) {
+                    Thread.sleep(5);
+                }
+                // the process is stopped, e.g. by a redeployment
+                crawl.interrupt();
+                crawl.join(10_000);
+                assertFalse(crawl.isAlive());
+
+                completed = journal.getCompletedURLs().size();
+                assertTrue(completed >= 20 && completed < products, "completed=" + completed);
+            }
+
+            CrawlerBenchmark.Run second = new CrawlerBenchmark.Run(server);
+            try (FrontierJournal journal = new FrontierJournal(directory, 1000, Duration.ofHours(1))) {
+                assertEquals(completed, journal.getCompletedURLs().size());
+                XMLCrawler crawler = new XMLCrawler(new ShopScraper(), new ProductScraper(second.fetcher), second.pto, null, journal,
+                        second.fetcher, second.sink);
+                crawler.getProductsAuchan();
+
+                // the next run fetches only the pages the interrupted one did not complete, then forgets them all
+                assertEquals(products - completed, second.pto.getInsertCount());
+                Set<String> crawled = new HashSet<>();
+                first.pto.getInserted().forEach(product -> crawled.add(product.getName()));
+                second.pto.getInserted().forEach(product -> crawled.add(product.getName()));
+                assertEquals(expected(products), crawled);
+                assertFalse(journal.hasState());
+            }
+        }
+    }
+
+    @Test
+    void everyStageNeedsAWorker() {
+        XMLCrawler crawler = new XMLCrawler(new ShopScraper(), null, null, null, null, null, null);
+        assertThrows(IllegalArgumentException.class, () -> crawler.setPipeline(1, 0, 1, 1, 16));
+        assertThrows(IllegalArgumentException.class, () -> crawler.setPipeline(1, 1, 1, 1, 0));
+    }
+}